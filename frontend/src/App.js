@@ -20,6 +20,24 @@ function App() {
     initializeAccounts();
   }, []);
 
+  // Push updates instead of polling; COALESCE keeps only the latest balance per client if we fall behind
+  useEffect(() => {
+    const source = new EventSource(`${API_BASE_URL}/trades/stream?overflow=COALESCE`);
+    source.addEventListener('trade', (event) => {
+      const trade = JSON.parse(event.data);
+      setTrades((current) => [trade, ...current].slice(0, 20));
+    });
+    source.addEventListener('balance', (event) => {
+      const change = JSON.parse(event.data);
+      setAccounts((current) => current.map((account) =>
+        account.clientId === change.clientId && (account.version ?? -1) < change.version
+          ? { ...account, balance: change.balance, version: change.version }
+          : account
+      ));
+    });
+    return () => source.close();
+  }, []);
+
   const initializeAccounts = async () => {
     try {
       await axios.post(`${API_BASE_URL}/accounts/initialize`);
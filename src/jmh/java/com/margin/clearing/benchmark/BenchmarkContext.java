@@ -0,0 +1,31 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.MarginClearingApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application without the web layer for benchmarks.
+ * Each context gets its own in-memory H2 database so parameter combinations don't share state.
+ * Properties are passed as command-line arguments so they override application.properties.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return new SpringApplicationBuilder(MarginClearingApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(Stream.concat(Stream.of("spring.datasource.url=jdbc:h2:mem:" + databaseName,
+                                        "logging.level.root=WARN",
+                                        "logging.level.com.margin.clearing=ERROR"), Arrays.stream(properties))
+                        .map(property -> "--" + property)
+                        .toArray(String[]::new));
+    }
+}
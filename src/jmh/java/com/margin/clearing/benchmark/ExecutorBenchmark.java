@@ -0,0 +1,79 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans a burst of processTrade calls out on the "taskExecutor" bean and waits for all of them,
+ * comparing the platform thread pool against virtual threads behind the connection gate.
+ * Bursts stay under the platform pool's 1100 in-flight limit so neither mode rejects work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000000.00");
+    private static final BigDecimal PRICE = new BigDecimal("150.00");
+    private static final int CLIENTS = 10;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String executor;
+
+    @Param({"100", "1000"})
+    public int burst;
+
+    private ConfigurableApplicationContext context;
+    private MarginService marginService;
+    private TradeRepository tradeRepository;
+    private ExecutorService taskExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("executor-" + executor + "-" + burst, "clearing.executor.mode=" + executor);
+        marginService = context.getBean(MarginService.class);
+        tradeRepository = context.getBean(TradeRepository.class);
+        taskExecutor = context.getBean("taskExecutor", ExecutorService.class);
+
+        List<Account> accounts = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            accounts.add(new Account("BENCH_" + i, INITIAL_BALANCE));
+        }
+        context.getBean(AccountRepository.class).saveAll(accounts);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTrades() {
+        tradeRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void processBurst() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[burst];
+        for (int i = 0; i < burst; i++) {
+            String clientId = "BENCH_" + (i % CLIENTS);
+            futures[i] = CompletableFuture.supplyAsync(
+                    () -> marginService.processTrade(clientId, "AAPL", 10, PRICE), taskExecutor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
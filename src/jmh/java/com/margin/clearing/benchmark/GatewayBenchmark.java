@@ -0,0 +1,85 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.gateway.GatewayAck;
+import com.margin.clearing.gateway.GatewayClient;
+import com.margin.clearing.gateway.TradeGateway;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trades sent over one binary gateway connection against in-memory H2, keeping
+ * {@code window} trades unacknowledged (1 = request/response, larger = pipelined)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayBenchmark {
+
+    private static final int TRADES = 1000;
+    private static final int CLIENTS = 10;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000000.00");
+    private static final BigDecimal PRICE = new BigDecimal("150.00");
+
+    @Param({"1", "64", "512"})
+    public int window;
+
+    private ConfigurableApplicationContext context;
+    private MarginService marginService;
+    private TradeRepository tradeRepository;
+    private GatewayClient client;
+    private long correlationId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start("gateway-" + window, "clearing.gateway.enabled=true", "clearing.gateway.port=0");
+        marginService = context.getBean(MarginService.class);
+        tradeRepository = context.getBean(TradeRepository.class);
+        List<Account> accounts = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            accounts.add(new Account("BENCH_" + i, INITIAL_BALANCE));
+        }
+        context.getBean(AccountRepository.class).saveAll(accounts);
+        marginService.resetLedgerState();
+        client = GatewayClient.connect("127.0.0.1", context.getBean(TradeGateway.class).getPort());
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTrades() {
+        tradeRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public GatewayAck sendTrades() throws IOException {
+        GatewayAck last = null;
+        for (int i = 0; i < TRADES; i++) {
+            client.submit(correlationId++, "BENCH_" + (i % CLIENTS), "AAPL", 10, PRICE);
+            if (i >= window - 1) {
+                last = client.receive();
+            }
+        }
+        for (int i = 0; i < window - 1; i++) {
+            last = client.receive();
+        }
+        return last;
+    }
+}
@@ -0,0 +1,57 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.money.MarginCalculator;
+import com.margin.clearing.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-trade margin formula: the original BigDecimal version,
+ * the fixed-point calculator, and the BigDecimal result MarginService.calculateMargin builds from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarginCalculationBenchmark {
+
+    private static final BigDecimal MARGIN_RATE = new BigDecimal("0.10");
+    private static final MarginCalculator CALCULATOR = new MarginCalculator(MARGIN_RATE);
+
+    private BigDecimal price;
+    private long priceTicks;
+    private int quantity;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        price = new BigDecimal("312.47");
+        priceTicks = Money.toPriceTicks(price);
+        quantity = 73;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalFormula() {
+        BigDecimal totalCost = price.multiply(new BigDecimal(quantity));
+        return totalCost.multiply(MARGIN_RATE).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public long fixedPointFromTicks() {
+        return CALCULATOR.marginCents(priceTicks, quantity);
+    }
+
+    @Benchmark
+    public long fixedPointFromBigDecimal() {
+        return CALCULATOR.marginCents(price, quantity);
+    }
+
+    @Benchmark
+    public BigDecimal fixedPointToBigDecimal() {
+        return Money.centsToBigDecimal(CALCULATOR.marginCents(price, quantity));
+    }
+}
@@ -0,0 +1,100 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end MarginService.processTrade against in-memory H2.
+ * Contention is controlled by the number of clients trades are spread over
+ * and by the number of benchmark threads.
+ * Balances are large enough that no trade is rejected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessTradeBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000000.00");
+    private static final BigDecimal PRICE = new BigDecimal("150.00");
+
+    @Param({"1", "10", "1000"})
+    public int clients;
+
+    @Param({"PESSIMISTIC", "SHARDED", "PIPELINE"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private MarginService marginService;
+    private TradeRepository tradeRepository;
+    private String[] clientIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("process-trade-" + mode + "-" + clients, "clearing.mode=" + mode);
+        marginService = context.getBean(MarginService.class);
+        tradeRepository = context.getBean(TradeRepository.class);
+
+        List<Account> accounts = new ArrayList<>(clients);
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "BENCH_" + i;
+            accounts.add(new Account(clientIds[i], INITIAL_BALANCE));
+        }
+        context.getBean(AccountRepository.class).saveAll(accounts);
+        marginService.resetLedgerState();
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTrades() {
+        marginService.awaitPersistence();
+        tradeRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Trade processRandomTrade() {
+        String clientId = clientIds[ThreadLocalRandom.current().nextInt(clientIds.length)];
+        return marginService.processTrade(clientId, "AAPL", 10, PRICE);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Trade processTrade_1Thread() {
+        return processRandomTrade();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Trade processTrade_4Threads() {
+        return processRandomTrade();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Trade processTrade_16Threads() {
+        return processRandomTrade();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Trade processTrade_64Threads() {
+        return processRandomTrade();
+    }
+}
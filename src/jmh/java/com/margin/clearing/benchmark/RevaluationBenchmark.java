@@ -0,0 +1,59 @@
+package com.margin.clearing.benchmark;
+
+import com.margin.clearing.risk.MarkToMarketEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full mark-to-market of accounts × 8 symbols over struct-of-arrays positions,
+ * on one thread (leafSize = accounts) versus fork/join on the common pool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RevaluationBenchmark {
+
+    private static final int SYMBOLS = 8;
+
+    @Param({"100000", "1000000"})
+    public int accounts;
+
+    @Param({"SEQUENTIAL", "FORK_JOIN"})
+    public String mode;
+
+    private MarkToMarketEngine engine;
+    private long[] balances;
+    private long[] quantity;
+    private long[] cost;
+    private long[] marks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        balances = new long[accounts];
+        quantity = new long[accounts * SYMBOLS];
+        cost = new long[accounts * SYMBOLS];
+        marks = new long[SYMBOLS];
+        for (int s = 0; s < SYMBOLS; s++) {
+            marks[s] = random.nextLong(100_000, 5_000_000);
+        }
+        for (int i = 0; i < quantity.length; i++) {
+            quantity[i] = random.nextLong(-500, 500);
+            cost[i] = Math.abs(quantity[i]) * random.nextLong(100_000, 5_000_000);
+        }
+        int leafSize = mode.equals("SEQUENTIAL") ? accounts : 4096;
+        engine = new MarkToMarketEngine(ForkJoinPool.commonPool(), new BigDecimal("0.10"), leafSize);
+    }
+
+    @Benchmark
+    public MarkToMarketEngine.Revaluation revalue() {
+        return engine.revalue(balances, quantity, cost, marks);
+    }
+}
@@ -0,0 +1,58 @@
+package com.margin.clearing.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.margin.clearing.entity.Trade;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of trades as done by TradeController,
+ * using the same ObjectMapper defaults Spring Boot configures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Trade trade;
+    private List<Trade> last20Trades;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        trade = newTrade(1);
+        last20Trades = new ArrayList<>(20);
+        for (int i = 0; i < 20; i++) {
+            last20Trades.add(newTrade(i + 1));
+        }
+    }
+
+    private static Trade newTrade(long id) {
+        return new Trade(id, "CLIENT_001", "AAPL", 42, new BigDecimal("187.35"),
+                new BigDecimal("786.87"), Trade.TradeStatus.CLEARED, LocalDateTime.now());
+    }
+
+    @Benchmark
+    public byte[] serializeTrade() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(trade);
+    }
+
+    @Benchmark
+    public byte[] serializeLast20Trades() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(last20Trades);
+    }
+}
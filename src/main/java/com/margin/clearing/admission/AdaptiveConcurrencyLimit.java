@@ -0,0 +1,78 @@
+package com.margin.clearing.admission;
+
+/**
+ * Concurrency limit steered by clearing latency (gradient style)
+ * <p>
+ * A long-term average of the latency is the baseline of what the engine does when it is not overloaded; a
+ * short-term average is what it does now. While the short-term latency stays within {@code tolerance} times the
+ * baseline, the limit grows by a queue allowance of sqrt(limit) per sample; once it drifts above, the limit is
+ * scaled down by the ratio (at most halved per sample). Samples taken while fewer than half the permits are in use
+ * say nothing about the limit and only update the averages.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("clearing.admission limits must satisfy 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("clearing.admission.tolerance must be at least 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Feeds one completed operation's latency, taken with {@code inFlight} operations running; returns the new limit
+     */
+    public synchronized int onSample(long rttNanos, int inFlight) {
+        double rtt = Math.max(1, rttNanos);
+        if (longRttNanos == 0) {
+            shortRttNanos = rtt;
+            longRttNanos = rtt;
+        } else {
+            shortRttNanos += (rtt - shortRttNanos) / SHORT_WINDOW;
+            longRttNanos += (rtt - longRttNanos) / LONG_WINDOW;
+        }
+        // After a slow period the baseline lags behind a recovered engine; let it catch up
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return getLimit();
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        return getLimit();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Recent latency in nanoseconds (0 before the first sample)
+     */
+    public synchronized long getShortRttNanos() {
+        return (long) shortRttNanos;
+    }
+
+    public synchronized long getLongRttNanos() {
+        return (long) longRttNanos;
+    }
+}
@@ -0,0 +1,294 @@
+package com.margin.clearing.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of trade clearing
+ * <p>
+ * At most {@link AdaptiveConcurrencyLimit#getLimit()} trades are cleared at once; the limit follows the latency
+ * of the trades admitted so far. Callers over the limit wait in a FIFO queue per client, and freed permits are
+ * handed to the waiting clients in turn, so one client flooding the intake delays its own trades rather than
+ * everyone's. A caller is turned away with {@link AdmissionRejectedException} when its client's queue or the
+ * total queue is full, when the expected wait already exceeds max-wait-ms, or when the wait runs out.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Permit UNLIMITED = new Permit(null, 0, false);
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimit limit;
+    private final int maxQueue;
+    private final int maxQueuePerClient;
+    private final long maxWaitMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ClientQueue> queues = new HashMap<>();
+    // Batches take turns with the clients but are kept out of the map, so no clientId can share their queue
+    private final ClientQueue batchQueue = new ClientQueue("batch callers");
+    private final ArrayDeque<ClientQueue> turns = new ArrayDeque<>();
+    private int inFlight;
+    private int queued;
+    private final Counter rejected;
+    private final Timer waitTimer;
+
+    public AdmissionControl(@Value("${clearing.admission.enabled:true}") boolean enabled,
+                            @Value("${clearing.admission.initial-limit:20}") int initialLimit,
+                            @Value("${clearing.admission.min-limit:4}") int minLimit,
+                            @Value("${clearing.admission.max-limit:200}") int maxLimit,
+                            @Value("${clearing.admission.tolerance:2.0}") double tolerance,
+                            @Value("${clearing.admission.max-queue:10000}") int maxQueue,
+                            @Value("${clearing.admission.max-queue-per-client:1000}") int maxQueuePerClient,
+                            @Value("${clearing.admission.max-wait-ms:2000}") long maxWaitMs,
+                            MeterRegistry meterRegistry) {
+        if (maxQueue < 0 || maxQueuePerClient < 0 || maxWaitMs <= 0) {
+            throw new IllegalArgumentException("clearing.admission queue sizes must not be negative and max-wait-ms must be positive");
+        }
+        this.enabled = enabled;
+        this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance);
+        this.maxQueue = maxQueue;
+        this.maxQueuePerClient = maxQueuePerClient;
+        this.maxWaitMs = maxWaitMs;
+        Gauge.builder("clearing.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Trades allowed to clear concurrently")
+                .register(meterRegistry);
+        Gauge.builder("clearing.admission.in-flight", this, AdmissionControl::getInFlight)
+                .description("Trades admitted and not yet cleared")
+                .register(meterRegistry);
+        Gauge.builder("clearing.admission.queued", this, AdmissionControl::getQueued)
+                .description("Callers waiting for admission")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("clearing.admission.rejected")
+                .description("Callers turned away by admission control")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("clearing.admission.wait")
+                .description("Time from arrival to admission, for callers that had to queue")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waits up to max-wait-ms for a slot to clear one of the client's trades; close the permit when it is cleared
+     */
+    public Permit admit(String clientId) {
+        return await(acquire(String.valueOf(clientId), true, true));
+    }
+
+    /**
+     * Waits up to max-wait-ms for a slot to clear a batch, queued with the other batches
+     * A batch's latency says little about a single trade's, so it is not fed to the limit.
+     */
+    public Permit admitBatch() {
+        return await(acquire(null, false, true));
+    }
+
+    /**
+     * Completes with a permit once the client's trade may clear, with no deadline on the wait
+     * For callers generating load themselves; they are still turned away when the queues are full.
+     */
+    public CompletableFuture<Permit> admitAsync(String clientId) {
+        return acquire(String.valueOf(clientId), true, false);
+    }
+
+    private static Permit await(CompletableFuture<Permit> admission) {
+        try {
+            return admission.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Admits or queues a caller on its client's queue, or on the batch queue when clientId is null
+     */
+    private CompletableFuture<Permit> acquire(String clientId, boolean sampled, boolean bounded) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(UNLIMITED);
+        }
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < limit.getLimit()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(this, System.nanoTime(), sampled));
+            }
+            ClientQueue queue = clientId == null ? batchQueue : queues.get(clientId);
+            if (queue != null && queue.waiters.size() >= maxQueuePerClient) {
+                throw reject("Too many trades queued for " + queue.key);
+            }
+            if (queued >= maxQueue) {
+                throw reject("Trade intake queue is full");
+            }
+            if (bounded && estimatedWaitNanos(queued + 1) > TimeUnit.MILLISECONDS.toNanos(maxWaitMs)) {
+                throw reject("Trade intake is overloaded");
+            }
+            if (queue == null) {
+                queue = new ClientQueue(clientId);
+                queues.put(clientId, queue);
+            }
+            if (queue.waiters.isEmpty()) {
+                turns.add(queue);
+            }
+            waiter = new Waiter(queue, sampled, System.nanoTime());
+            queue.waiters.add(waiter);
+            queued++;
+        } finally {
+            lock.unlock();
+        }
+        if (bounded) {
+            CompletableFuture.delayedExecutor(maxWaitMs, TimeUnit.MILLISECONDS).execute(() -> expire(waiter));
+        }
+        return waiter.future;
+    }
+
+    private void expire(Waiter waiter) {
+        AdmissionRejectedException rejection;
+        lock.lock();
+        try {
+            if (!waiter.queue.waiters.remove(waiter)) {
+                return;
+            }
+            queued--;
+            if (waiter.queue.waiters.isEmpty()) {
+                queues.remove(waiter.queue.key, waiter.queue);
+                turns.remove(waiter.queue);
+            }
+            rejection = reject("No clearing slot within " + maxWaitMs + "ms");
+        } finally {
+            lock.unlock();
+        }
+        waiter.future.completeExceptionally(rejection);
+    }
+
+    private void release(Permit permit) {
+        long now = System.nanoTime();
+        List<Waiter> granted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (permit.sampled) {
+                limit.onSample(now - permit.admittedAt, inFlight);
+            }
+            inFlight--;
+            while (inFlight < limit.getLimit() && !turns.isEmpty()) {
+                ClientQueue queue = turns.poll();
+                granted.add(queue.waiters.poll());
+                queued--;
+                inFlight++;
+                if (queue.waiters.isEmpty()) {
+                    queues.remove(queue.key, queue);
+                } else {
+                    turns.add(queue);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Waiter waiter : granted) {
+            waitTimer.record(now - waiter.arrivedAt, TimeUnit.NANOSECONDS);
+            waiter.future.complete(new Permit(this, now, waiter.sampled));
+        }
+    }
+
+    /**
+     * Rough time for {@code position} queued callers to be admitted at the current limit and latency
+     */
+    private long estimatedWaitNanos(int position) {
+        return (long) ((double) position / limit.getLimit() * limit.getShortRttNanos());
+    }
+
+    private AdmissionRejectedException reject(String reason) {
+        rejected.increment();
+        long retryAfterNanos = estimatedWaitNanos(queued + inFlight + 1);
+        long retryAfterSeconds = Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000);
+        return new AdmissionRejectedException(reason + " (" + inFlight + " in flight, limit " + limit.getLimit()
+                + ", " + queued + " queued)", retryAfterSeconds);
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A slot to clear trades in; closing it (once) frees the slot and, for single trades, feeds its latency to the limit
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final AdmissionControl owner;
+        private final long admittedAt;
+        private final boolean sampled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdmissionControl owner, long admittedAt, boolean sampled) {
+            this.owner = owner;
+            this.admittedAt = admittedAt;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void close() {
+            if (owner != null && released.compareAndSet(false, true)) {
+                owner.release(this);
+            }
+        }
+    }
+
+    private static final class ClientQueue {
+
+        private final String key;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        private ClientQueue(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Waiter {
+
+        private final ClientQueue queue;
+        private final boolean sampled;
+        private final long arrivedAt;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private Waiter(ClientQueue queue, boolean sampled, long arrivedAt) {
+            this.queue = queue;
+            this.sampled = sampled;
+            this.arrivedAt = arrivedAt;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.margin.clearing.admission;
+
+/**
+ * Trade intake is over its limit and the caller's queue is full or its wait ran out; retry after the hinted delay
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,10 +1,23 @@
 package com.margin.clearing.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 
+import javax.sql.DataSource;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -13,8 +26,16 @@ import java.util.concurrent.TimeUnit;
 @EnableAsync
 public class AsyncConfig {
     
+    private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
+    
     @Bean(name = "taskExecutor", destroyMethod = "shutdown")
-    public ExecutorService taskExecutor() {
+    public ExecutorService taskExecutor(@Value("${clearing.executor.mode:PLATFORM}") ExecutorMode mode,
+                                        MeterRegistry meterRegistry) {
+        log.info("Task executor mode: {}", mode);
+        if (mode == ExecutorMode.VIRTUAL) {
+            // No pool and no queue to overflow; concurrency against the database is bounded by the DataSource gate
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("async-virtual-", 0).factory());
+        }
         ThreadPoolExecutor executor = new ThreadPoolExecutor(
             50,  // corePoolSize
             100, // maximumPoolSize
@@ -22,11 +43,54 @@ public class AsyncConfig {
             new LinkedBlockingQueue<>(1000), // workQueue
             r -> {
                 Thread t = new Thread(r);
-                t.setName("async-executor-" + t.getId());
+                t.setName("async-executor-" + t.threadId());
                 t.setDaemon(false);
                 return t;
             }
         );
+        // executor.active, executor.queued, executor.pool.size, ... tagged name=taskExecutor
+        new ExecutorServiceMetrics(executor, "taskExecutor", Tags.empty()).bindTo(meterRegistry);
         return executor;
     }
+    
+    /**
+     * In VIRTUAL mode there is no pool or queue to watch; callers waiting on the connection gate are the backlog
+     */
+    @Bean
+    @ConditionalOnProperty(name = "clearing.executor.mode", havingValue = "VIRTUAL")
+    public MeterBinder connectionGateMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConnectionLimitingDataSource gate) {
+                Gauge.builder("clearing.connections.waiting", gate, ConnectionLimitingDataSource::getQueueLength)
+                        .description("Callers parked waiting for a connection permit")
+                        .register(registry);
+                Gauge.builder("clearing.connections.available", gate, ConnectionLimitingDataSource::getAvailablePermits)
+                        .description("Connection permits not in use")
+                        .register(registry);
+            }
+        };
+    }
+    
+    /**
+     * In VIRTUAL mode, wraps the DataSource so no more callers than the pool has connections
+     * are inside it at once (static so it is registered before the DataSource is created)
+     */
+    @Bean
+    @ConditionalOnProperty(name = "clearing.executor.mode", havingValue = "VIRTUAL")
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(
+            @Value("${clearing.executor.max-connections:0}") int maxConnections,
+            @Value("${clearing.executor.connection-wait-ms:30000}") long connectionWaitMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+                int permits = maxConnections > 0 ? maxConnections
+                        : bean instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+                log.info("Limiting DataSource '{}' to {} concurrent connections", beanName, permits);
+                return new ConnectionLimitingDataSource(dataSource, permits, connectionWaitMs);
+            }
+        };
+    }
 }
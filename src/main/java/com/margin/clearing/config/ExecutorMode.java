@@ -0,0 +1,11 @@
+package com.margin.clearing.config;
+
+/**
+ * Thread model behind the "taskExecutor" bean
+ */
+public enum ExecutorMode {
+    /** Fixed pool of platform threads with a bounded queue */
+    PLATFORM,
+    /** One virtual thread per task; DataSource access is gated by {@link ConnectionLimitingDataSource} */
+    VIRTUAL
+}
@@ -0,0 +1,28 @@
+package com.margin.clearing.config;
+
+import com.margin.clearing.gateway.TradeGateway;
+import com.margin.clearing.service.MarginService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "clearing.gateway.enabled", havingValue = "true")
+public class GatewayConfig {
+
+    /**
+     * Binary order entry; each batch read off a connection is cleared with MarginService.processTradeBatch
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public TradeGateway tradeGateway(MarginService marginService,
+                                     @Value("${clearing.gateway.host:127.0.0.1}") String host,
+                                     @Value("${clearing.gateway.port:9400}") int port,
+                                     @Value("${clearing.gateway.workers:4}") int workers,
+                                     @Value("${clearing.gateway.max-batch-size:256}") int maxBatchSize,
+                                     @Value("${clearing.gateway.max-in-flight:4096}") int maxInFlight,
+                                     @Value("${clearing.batch.max-size:1000}") int serviceMaxBatchSize) {
+        return new TradeGateway(marginService::processTradeBatch, host, port, workers,
+                Math.min(maxBatchSize, serviceMaxBatchSize), maxInFlight);
+    }
+}
@@ -0,0 +1,40 @@
+package com.margin.clearing.config;
+
+import com.margin.clearing.journal.FsyncPolicy;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.journal.TradeJournalDrainer;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.TradeOutcomeListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "clearing.journal.enabled", havingValue = "true")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    public TradeJournal tradeJournal(@Value("${clearing.journal.path:data/trade-journal.dat}") String path,
+                                     @Value("${clearing.journal.capacity:1048576}") long capacity,
+                                     @Value("${clearing.journal.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                                     @Value("${clearing.journal.fsync-interval-ms:10}") long fsyncIntervalMs) throws IOException {
+        return new TradeJournal(Path.of(path), capacity, fsyncPolicy, fsyncIntervalMs);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TradeJournalDrainer tradeJournalDrainer(TradeJournal tradeJournal, TradeRepository tradeRepository,
+                                                   PlatformTransactionManager transactionManager,
+                                                   List<TradeOutcomeListener> outcomeListeners,
+                                                   @Value("${clearing.journal.drain-batch-size:1000}") int batchSize,
+                                                   @Value("${clearing.journal.drain-idle-ms:5}") long idleSleepMs) {
+        return new TradeJournalDrainer(tradeJournal, tradeRepository, new TransactionTemplate(transactionManager),
+                outcomeListeners, batchSize, idleSleepMs);
+    }
+}
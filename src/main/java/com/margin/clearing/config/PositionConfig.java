@@ -0,0 +1,52 @@
+package com.margin.clearing.config;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.position.PositionBook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class PositionConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionConfig.class);
+
+    /**
+     * Position book, replayed once from the cleared trades already in the database, then from the journal records
+     * not drained into it yet (the drainer reports those through onTradesPersisted, which the book ignores)
+     * After that it is maintained by the clearing path (it is a TradeOutcomeListener) and never scans trades again.
+     * The drainer takes the book as a listener, so it cannot start draining before this replay is done.
+     */
+    @Bean
+    public PositionBook positionBook(JdbcTemplate jdbcTemplate, ObjectProvider<TradeJournal> tradeJournal,
+                                     @Value("${clearing.positions.initial-capacity:1024}") int initialCapacity) {
+        PositionBook book = new PositionBook(initialCapacity);
+        long[] replayed = new long[1];
+        jdbcTemplate.query("SELECT client_id, symbol, quantity, price FROM trades WHERE status = 'CLEARED' ORDER BY id", rs -> {
+            book.apply(rs.getString(1), rs.getString(2), rs.getInt(3), Money.toPriceTicks(rs.getBigDecimal(4)));
+            replayed[0]++;
+        });
+        TradeJournal journal = tradeJournal.getIfAvailable();
+        long journaled = 0;
+        if (journal != null) {
+            for (long seq = journal.getDrainedSeq() + 1; seq <= journal.getLastSeq(); seq++) {
+                if (!journal.isDiscarded(seq)) {
+                    Trade trade = journal.read(seq);
+                    if (trade.getStatus() == Trade.TradeStatus.CLEARED) {
+                        book.onTradeProcessed(trade);
+                        journaled++;
+                    }
+                }
+            }
+        }
+        log.info("Position book loaded from {} cleared trades and {} undrained journal records ({} positions)",
+                replayed[0], journaled, book.getPositionCount());
+        return book;
+    }
+}
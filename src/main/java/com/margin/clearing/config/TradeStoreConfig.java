@@ -0,0 +1,58 @@
+package com.margin.clearing.config;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.store.TradeStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@ConditionalOnProperty(name = "clearing.trade-store.enabled", havingValue = "true")
+public class TradeStoreConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeStoreConfig.class);
+
+    /**
+     * Off-heap trade store, loaded once from the trades already in the database in (createdAt, id) order
+     * After that it is appended to by the clearing path (it is a TradeOutcomeListener)
+     */
+    @Bean(destroyMethod = "close")
+    public TradeStore tradeStore(JdbcTemplate jdbcTemplate,
+                                 @Value("${clearing.trade-store.segment-records:65536}") int segmentRecords,
+                                 @Value("${clearing.trade-store.max-segments:0}") int maxSegments,
+                                 @Value("${clearing.trade-store.compress:true}") boolean compress) {
+        TradeStore store = new TradeStore(segmentRecords, maxSegments, compress);
+        long start = System.nanoTime();
+        jdbcTemplate.query("SELECT id, client_id, symbol, order_id, quantity, price, margin_required, status, created_at"
+                + " FROM trades ORDER BY created_at, id", rs -> {
+            store.append(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getInt(5),
+                    Money.toCents(rs.getBigDecimal(6)), Money.toCents(rs.getBigDecimal(7)),
+                    Trade.TradeStatus.valueOf(rs.getString(8)), rs.getTimestamp(9).toLocalDateTime());
+        });
+        log.info("Trade store loaded {} trades into {} segments in {}ms", store.getRecordCount(), store.getSegmentCount(),
+                (System.nanoTime() - start) / 1_000_000);
+        return store;
+    }
+
+    @Bean
+    public MeterBinder tradeStoreMetrics(TradeStore tradeStore) {
+        return registry -> {
+            Gauge.builder("clearing.trade-store.records", tradeStore, TradeStore::getRecordCount)
+                    .description("Trades held in the off-heap trade store")
+                    .register(registry);
+            Gauge.builder("clearing.trade-store.segments", tradeStore, TradeStore::getSegmentCount)
+                    .description("Trade store segments, including the one being appended to")
+                    .register(registry);
+            Gauge.builder("clearing.trade-store.bytes", tradeStore, TradeStore::getOffHeapBytes)
+                    .description("Direct memory held by trade store segments and the client index")
+                    .register(registry);
+        };
+    }
+}
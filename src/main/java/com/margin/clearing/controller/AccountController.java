@@ -1,11 +1,16 @@
 package com.margin.clearing.controller;
 
-import com.margin.clearing.entity.Account;
-import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.service.AccountProvisioningService;
+import com.margin.clearing.service.AccountProvisioningService.ProvisioningResult;
+import com.margin.clearing.service.AccountSnapshotCache;
+import com.margin.clearing.service.AccountSnapshotCache.AccountSnapshot;
 import com.margin.clearing.service.SimulationService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -13,39 +18,60 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:3000")
 public class AccountController {
     
-    private final AccountRepository accountRepository;
+    private final AccountSnapshotCache accountCache;
     private final SimulationService simulationService;
+    private final AccountProvisioningService provisioningService;
     
-    public AccountController(AccountRepository accountRepository, SimulationService simulationService) {
-        this.accountRepository = accountRepository;
+    public AccountController(AccountSnapshotCache accountCache, SimulationService simulationService,
+                             AccountProvisioningService provisioningService) {
+        this.accountCache = accountCache;
         this.simulationService = simulationService;
+        this.provisioningService = provisioningService;
     }
     
     /**
-     * Get all accounts
+     * Get all accounts (served from the account snapshot cache)
      */
     @GetMapping
-    public ResponseEntity<List<Account>> getAllAccounts() {
-        List<Account> accounts = accountRepository.findAll();
+    public ResponseEntity<List<AccountSnapshot>> getAllAccounts() {
+        List<AccountSnapshot> accounts = accountCache.getAll();
         return ResponseEntity.ok(accounts);
     }
     
     /**
-     * Get account by client ID
+     * Get account by client ID (served from the account snapshot cache)
      */
     @GetMapping("/{clientId}")
-    public ResponseEntity<Account> getAccount(@PathVariable String clientId) {
-        return accountRepository.findByClientId(clientId)
+    public ResponseEntity<AccountSnapshot> getAccount(@PathVariable String clientId) {
+        return accountCache.get(clientId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     /**
-     * Initialize dummy accounts for simulation
+     * Initialize dummy accounts for simulation (?clients=N, default 10)
      */
     @PostMapping("/initialize")
-    public ResponseEntity<String> initializeAccounts() {
-        simulationService.initializeAccounts();
-        return ResponseEntity.ok("Accounts initialized successfully");
+    public ResponseEntity<String> initializeAccounts(@RequestParam(defaultValue = "10") int clients) {
+        try {
+            simulationService.initializeAccounts(clients);
+            return ResponseEntity.ok("Accounts initialized successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error initializing accounts: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Bulk-provision accounts from a CSV body of "clientId,balance" lines, streamed without buffering
+     * e.g. curl --data-binary @accounts.csv -H 'Content-Type: text/csv' .../api/accounts/provision
+     */
+    @PostMapping(value = "/provision", consumes = {"text/csv", "text/plain"})
+    public ResponseEntity<?> provisionAccounts(HttpServletRequest request) throws IOException {
+        try {
+            ProvisioningResult result = provisioningService.provisionCsv(request.getReader());
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error provisioning accounts: " + e.getMessage());
+        }
     }
 }
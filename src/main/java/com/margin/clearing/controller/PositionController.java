@@ -0,0 +1,47 @@
+package com.margin.clearing.controller;
+
+import com.margin.clearing.position.PositionBook;
+import com.margin.clearing.position.PositionBook.Position;
+import com.margin.clearing.position.PositionBook.SymbolExposure;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/positions")
+@CrossOrigin(origins = "http://localhost:3000")
+public class PositionController {
+    
+    private final PositionBook positionBook;
+    
+    public PositionController(PositionBook positionBook) {
+        this.positionBook = positionBook;
+    }
+    
+    /**
+     * Get a client's open positions (served from the in-memory position book)
+     */
+    @GetMapping("/client/{clientId}")
+    public ResponseEntity<List<Position>> getClientPositions(@PathVariable String clientId) {
+        return ResponseEntity.ok(positionBook.positionsOf(clientId));
+    }
+    
+    /**
+     * Get open interest and net exposure for every traded symbol
+     */
+    @GetMapping("/symbols")
+    public ResponseEntity<List<SymbolExposure>> getSymbolExposures() {
+        return ResponseEntity.ok(positionBook.exposures());
+    }
+    
+    /**
+     * Get open interest and net exposure for one symbol
+     */
+    @GetMapping("/symbol/{symbol}")
+    public ResponseEntity<SymbolExposure> getSymbolExposure(@PathVariable String symbol) {
+        return positionBook.exposureOf(symbol)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
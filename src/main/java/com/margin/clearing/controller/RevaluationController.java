@@ -0,0 +1,59 @@
+package com.margin.clearing.controller;
+
+import com.margin.clearing.risk.PriceSnapshot;
+import com.margin.clearing.risk.RevaluationService;
+import com.margin.clearing.risk.RevaluationService.RevaluationResult;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/revaluation")
+@CrossOrigin(origins = "http://localhost:3000")
+public class RevaluationController {
+    
+    private final RevaluationService revaluationService;
+    
+    public RevaluationController(RevaluationService revaluationService) {
+        this.revaluationService = revaluationService;
+    }
+    
+    /**
+     * Update mark prices (JSON object of symbol to price) and revalue every account
+     */
+    @PostMapping("/prices")
+    public ResponseEntity<?> updatePrices(@RequestBody Map<String, BigDecimal> prices) {
+        try {
+            return ResponseEntity.ok(revaluationService.updatePricesAndRevalue(prices));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return ResponseEntity.badRequest().body("Error updating prices: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Revalue every account against the current marks
+     */
+    @PostMapping("/run")
+    public ResponseEntity<RevaluationResult> revalue() {
+        return ResponseEntity.ok(revaluationService.revalue());
+    }
+    
+    /**
+     * Get the result of the most recent revaluation
+     */
+    @GetMapping("/latest")
+    public ResponseEntity<RevaluationResult> getLatest() {
+        RevaluationResult latest = revaluationService.getLatest();
+        return latest == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(latest);
+    }
+    
+    /**
+     * Get the current mark prices, in ticks (1/10,000)
+     */
+    @GetMapping("/prices")
+    public ResponseEntity<PriceSnapshot> getPrices() {
+        return ResponseEntity.ok(revaluationService.getPrices());
+    }
+}
@@ -0,0 +1,41 @@
+package com.margin.clearing.controller;
+
+import com.margin.clearing.entity.SettlementRun;
+import com.margin.clearing.service.SettlementService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/settlement")
+@CrossOrigin(origins = "http://localhost:3000")
+public class SettlementController {
+    
+    private final SettlementService settlementService;
+    
+    public SettlementController(SettlementService settlementService) {
+        this.settlementService = settlementService;
+    }
+    
+    /**
+     * Run (or resume) end-of-day settlement, releasing margin of cleared trades
+     */
+    @PostMapping("/run")
+    public ResponseEntity<?> runSettlement() {
+        try {
+            return ResponseEntity.ok(settlementService.runSettlement());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error running settlement: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the most recent settlement run and its checkpoint
+     */
+    @GetMapping("/latest")
+    public ResponseEntity<SettlementRun> getLatestRun() {
+        return settlementService.getLatestRun()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,62 +1,118 @@
 package com.margin.clearing.controller;
 
+import com.margin.clearing.admission.AdmissionControl;
+import com.margin.clearing.admission.AdmissionRejectedException;
+import com.margin.clearing.dto.SimulationRequestDTO;
 import com.margin.clearing.dto.TradeRequestDTO;
 import com.margin.clearing.entity.Trade;
-import com.margin.clearing.repository.TradeRepository;
 import com.margin.clearing.service.MarginService;
+import com.margin.clearing.service.RecentTradesBuffer;
 import com.margin.clearing.service.SimulationService;
+import com.margin.clearing.service.TradeHistoryService;
+import com.margin.clearing.store.TradeStore;
+import com.margin.clearing.stream.OverflowPolicy;
+import com.margin.clearing.stream.TradeStreamBroadcaster;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/trades")
 @CrossOrigin(origins = "http://localhost:3000")
 public class TradeController {
     
-    private final TradeRepository tradeRepository;
+    private final TradeHistoryService tradeHistoryService;
     private final SimulationService simulationService;
     private final MarginService marginService;
+    private final RecentTradesBuffer recentTrades;
+    private final TradeStore tradeStore;
+    private final TradeStreamBroadcaster tradeStream;
+    private final AdmissionControl admissionControl;
+    private final long streamTimeoutMs;
     
-    public TradeController(TradeRepository tradeRepository, SimulationService simulationService, MarginService marginService) {
-        this.tradeRepository = tradeRepository;
+    public TradeController(TradeHistoryService tradeHistoryService, SimulationService simulationService, MarginService marginService,
+                           RecentTradesBuffer recentTrades, ObjectProvider<TradeStore> tradeStore,
+                           TradeStreamBroadcaster tradeStream, AdmissionControl admissionControl,
+                           @Value("${clearing.stream.timeout-ms:0}") long streamTimeoutMs) {
+        this.tradeHistoryService = tradeHistoryService;
         this.simulationService = simulationService;
         this.marginService = marginService;
+        this.recentTrades = recentTrades;
+        this.tradeStore = tradeStore.getIfAvailable();
+        this.tradeStream = tradeStream;
+        this.admissionControl = admissionControl;
+        this.streamTimeoutMs = streamTimeoutMs;
     }
     
     /**
-     * Get the last 20 trades
+     * Get the last 20 trades (or ?limit=N, up to clearing.recent-trades.capacity)
+     * Served from the in-memory recent-trades buffer, or the off-heap trade store when enabled; no DB access.
+     * A limit below 1 is a bad request
      */
     @GetMapping
-    public ResponseEntity<List<Trade>> getLast20Trades() {
-        List<Trade> trades = tradeRepository.findLast20Trades();
+    public ResponseEntity<List<Trade>> getLast20Trades(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Trade> trades = tradeStore != null
+                ? tradeStore.latest(Math.min(limit, recentTrades.getCapacity()))
+                : recentTrades.latest(limit);
         return ResponseEntity.ok(trades);
     }
     
     /**
-     * Get trades by client ID
+     * Stream "trade" and "balance" events as they are processed (Server-Sent Events)
+     * Optional ?clientId=A&clientId=B filter; ?overflow=DROP_OLDEST|DROP_NEWEST|COALESCE for slow consumers
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTrades(@RequestParam(required = false) List<String> clientId,
+                                   @RequestParam(defaultValue = "DROP_OLDEST") OverflowPolicy overflow) {
+        Set<String> clientIds = clientId == null ? Set.of() : Set.copyOf(clientId);
+        return tradeStream.subscribe(clientIds, overflow, streamTimeoutMs);
+    }
+    
+    /**
+     * Get trades by client ID, newest first, one page at a time
+     * ?limit=N sets the page size; pass the returned nextCursor as ?cursor= for the next page
      */
     @GetMapping("/client/{clientId}")
-    public ResponseEntity<List<Trade>> getTradesByClient(@PathVariable String clientId) {
-        List<Trade> trades = tradeRepository.findByClientIdOrderByCreatedAtDesc(clientId);
-        return ResponseEntity.ok(trades);
+    public ResponseEntity<?> getTradesByClient(@PathVariable String clientId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(tradeHistoryService.getTrades(clientId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error fetching trades: " + e.getMessage());
+        }
     }
     
     /**
      * Create a new trade (manual trade creation)
+     * With an orderId, a retried request returns the original trade instead of clearing it again
+     * 429 with Retry-After when admission control turns the trade away
      */
     @PostMapping
     public ResponseEntity<?> createTrade(@RequestBody TradeRequestDTO tradeRequest) {
-        try {
+        try (AdmissionControl.Permit permit = admissionControl.admit(tradeRequest.getClientId())) {
             Trade trade = marginService.processTrade(
+                    tradeRequest.getOrderId(),
                     tradeRequest.getClientId(),
                     tradeRequest.getSymbol(),
                     tradeRequest.getQuantity(),
                     tradeRequest.getPrice()
             );
             return ResponseEntity.ok(trade);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Error processing trade: " + e.getMessage());
@@ -64,11 +120,41 @@ public class TradeController {
     }
     
     /**
-     * Run the 1,000 trade simulation
+     * Submit a batch of trades (one transaction, one lock per account)
+     * Returns a CLEARED/REJECTED result per trade in request order; 429 with Retry-After when admission control
+     * turns the batch away
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createTrades(@RequestBody List<TradeRequestDTO> tradeRequests) {
+        try (AdmissionControl.Permit permit = admissionControl.admitBatch()) {
+            List<MarginService.BatchTradeResult> results = marginService.processTradeBatch(tradeRequests);
+            return ResponseEntity.ok(results);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error processing trade batch: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Run the trade simulation (1,000 unthrottled trades over 10 clients without a body)
      */
     @PostMapping("/simulate")
-    public ResponseEntity<SimulationService.SimulationResult> runSimulation() {
-        SimulationService.SimulationResult result = simulationService.runSimulation();
-        return ResponseEntity.ok(result);
+    public ResponseEntity<?> runSimulation(@RequestBody(required = false) SimulationRequestDTO profile) {
+        try {
+            SimulationService.SimulationResult result = simulationService.runSimulation(
+                    profile != null ? profile : new SimulationRequestDTO());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error running simulation: " + e.getMessage());
+        }
+    }
+    
+    private static ResponseEntity<?> tooManyRequests(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body("Trade intake overloaded: " + e.getMessage());
     }
 }
@@ -0,0 +1,80 @@
+package com.margin.clearing.dto;
+
+/**
+ * Load profile for POST /api/trades/simulate; every field is optional
+ */
+public class SimulationRequestDTO {
+    /** Accounts CLIENT_001..CLIENT_n trades are drawn from */
+    private int clients = 10;
+    /** Upper bound on trades issued */
+    private int trades = 1000;
+    /** Distinct symbols trades are drawn from */
+    private int symbols = 8;
+    /** Open-loop arrival rate; 0 issues every trade at once */
+    private double ratePerSecond = 0;
+    /** Zipf exponent for hot accounts and symbols; 0 is uniform */
+    private double zipfExponent = 0;
+    /** Stop issuing after this many seconds even if trades remain; 0 means no limit */
+    private double durationSeconds = 0;
+    /** Width of each throughput time-series sample */
+    private long sampleIntervalMs = 100;
+
+    public SimulationRequestDTO() {
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public void setClients(int clients) {
+        this.clients = clients;
+    }
+
+    public int getTrades() {
+        return trades;
+    }
+
+    public void setTrades(int trades) {
+        this.trades = trades;
+    }
+
+    public int getSymbols() {
+        return symbols;
+    }
+
+    public void setSymbols(int symbols) {
+        this.symbols = symbols;
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public void setZipfExponent(double zipfExponent) {
+        this.zipfExponent = zipfExponent;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public long getSampleIntervalMs() {
+        return sampleIntervalMs;
+    }
+
+    public void setSampleIntervalMs(long sampleIntervalMs) {
+        this.sampleIntervalMs = sampleIntervalMs;
+    }
+}
@@ -3,6 +3,8 @@ package com.margin.clearing.dto;
 import java.math.BigDecimal;
 
 public class TradeRequestDTO {
+    // Optional idempotency key: resubmitting the same orderId returns the original trade
+    private String orderId;
     private String clientId;
     private String symbol;
     private Integer quantity;
@@ -18,6 +20,14 @@ public class TradeRequestDTO {
         this.price = price;
     }
 
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
     public String getClientId() {
         return clientId;
     }
@@ -0,0 +1,204 @@
+package com.margin.clearing.engine;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.TradeOutcomeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists ledger results on a single background thread.
+ * Trades are skipped when a trade journal is given (they go through the journal instead);
+ * the journal records of each batch are released once its balances are committed.
+ * Writes are applied in the order they were enqueued, so the last balance
+ * written for a client is always the newest one.
+ * Keyed trades stay visible through {@link #findUnwritten} until their batch is written.
+ */
+class LedgerWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerWriteBehind.class);
+
+    private final TradeRepository tradeRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final TradeJournal tradeJournal;
+    private final List<TradeOutcomeListener> outcomeListeners;
+    private final BlockingQueue<LedgerWrite> queue = new LinkedBlockingQueue<>();
+    // Keyed trades enqueued but not yet written (only without a journal, which indexes its own)
+    private final Map<String, Trade> unwrittenOrders = new ConcurrentHashMap<>();
+    private final Object flushMonitor = new Object();
+    private final Thread writer;
+    private long pending;
+    private volatile boolean running = true;
+
+    LedgerWriteBehind(TradeRepository tradeRepository, AccountRepository accountRepository,
+                      TransactionTemplate transactionTemplate, int batchSize, TradeJournal tradeJournal,
+                      List<TradeOutcomeListener> outcomeListeners) {
+        this.tradeRepository = tradeRepository;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.tradeJournal = tradeJournal;
+        this.outcomeListeners = outcomeListeners;
+        this.writer = new Thread(this::run, "ledger-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a cleared trade together with the client's balance and version after it
+     * (journalSeq: its journal record, or -1)
+     */
+    void enqueueCleared(Trade trade, long balanceAfterCents, long version, long journalSeq) {
+        enqueue(new LedgerWrite(trade, true, balanceAfterCents, version, journalSeq));
+    }
+
+    /**
+     * Queues a rejected trade; the balance is unchanged
+     */
+    void enqueueRejected(Trade trade, long journalSeq) {
+        enqueue(new LedgerWrite(trade, false, 0L, 0L, journalSeq));
+    }
+
+    private void enqueue(LedgerWrite write) {
+        synchronized (flushMonitor) {
+            pending++;
+        }
+        if (tradeJournal == null && write.trade().getOrderId() != null) {
+            unwrittenOrders.put(write.trade().getOrderId(), write.trade());
+        }
+        queue.add(write);
+    }
+
+    /**
+     * Trade with this orderId that is queued or being written, if any
+     */
+    Optional<Trade> findUnwritten(String orderId) {
+        return Optional.ofNullable(unwrittenOrders.get(orderId));
+    }
+
+    /**
+     * Blocks until everything enqueued so far has been written
+     */
+    void flush() {
+        synchronized (flushMonitor) {
+            while (pending > 0) {
+                try {
+                    flushMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains the queue and stops the writer thread
+     */
+    void close() {
+        flush();
+        running = false;
+        writer.interrupt();
+    }
+
+    private void run() {
+        List<LedgerWrite> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                LedgerWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to persist {} ledger writes: {}", batch.size(), e.getMessage());
+            } finally {
+                release(batch);
+                written(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<LedgerWrite> batch) {
+        List<Trade> trades = new ArrayList<>(batch.size());
+        Map<String, LedgerWrite> balances = new LinkedHashMap<>();
+        for (LedgerWrite write : batch) {
+            trades.add(write.trade());
+            if (write.debited()) {
+                balances.put(write.trade().getClientId(), write);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (tradeJournal == null) {
+                tradeRepository.saveAll(trades);
+            }
+            balances.forEach((clientId, write) -> accountRepository.updateBalanceAndVersion(
+                    clientId, Money.centsToBigDecimal(write.balanceAfterCents()), write.version()));
+        });
+        if (tradeJournal == null) {
+            notifyPersisted(trades);
+        }
+    }
+
+    private void notifyPersisted(List<Trade> trades) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onTradesPersisted(trades);
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private void release(List<LedgerWrite> batch) {
+        if (tradeJournal == null) {
+            for (LedgerWrite write : batch) {
+                if (write.trade().getOrderId() != null) {
+                    unwrittenOrders.remove(write.trade().getOrderId(), write.trade());
+                }
+            }
+            return;
+        }
+        for (LedgerWrite write : batch) {
+            if (write.journalSeq() >= 0) {
+                tradeJournal.release(write.journalSeq());
+            }
+        }
+    }
+
+    private void written(int count) {
+        if (count == 0) {
+            return;
+        }
+        synchronized (flushMonitor) {
+            pending -= count;
+            if (pending == 0) {
+                flushMonitor.notifyAll();
+            }
+        }
+    }
+
+    private record LedgerWrite(Trade trade, boolean debited, long balanceAfterCents, long version, long journalSeq) {}
+}
@@ -0,0 +1,27 @@
+package com.margin.clearing.engine;
+
+/**
+ * How an idle TradePipeline stage (or a producer facing a full ring) waits for work
+ * (property: clearing.pipeline.wait-strategy)
+ */
+public enum PipelineWaitStrategy {
+    /**
+     * Spins; lowest latency, burns a core per stage thread
+     */
+    BUSY_SPIN,
+
+    /**
+     * Spins briefly, then yields the CPU between checks
+     */
+    YIELDING,
+
+    /**
+     * Spins, yields, then parks for 100 µs between checks
+     */
+    SLEEPING,
+
+    /**
+     * Spins briefly, then blocks until another stage signals progress
+     */
+    BLOCKING
+}
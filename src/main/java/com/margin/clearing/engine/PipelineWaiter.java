@@ -0,0 +1,64 @@
+package com.margin.clearing.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Idles pipeline threads according to a PipelineWaitStrategy.
+ * Callers re-check their condition after every {@link #idle} and count their attempts;
+ * progress is announced with {@link #signal()}, which only costs anything for BLOCKING.
+ * A blocked thread also re-checks every millisecond, so a signal racing with it going
+ * to sleep delays it at most that long.
+ */
+final class PipelineWaiter {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000;
+
+    private final PipelineWaitStrategy strategy;
+    private final Object monitor = new Object();
+    private volatile boolean signalNeeded;
+
+    PipelineWaiter(PipelineWaitStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    void idle(int attempt) {
+        if (strategy == PipelineWaitStrategy.BUSY_SPIN || attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+            return;
+        }
+        switch (strategy) {
+            case YIELDING -> Thread.yield();
+            case SLEEPING -> {
+                if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(SLEEP_NANOS);
+                }
+            }
+            case BLOCKING -> block();
+            default -> Thread.onSpinWait();
+        }
+    }
+
+    void signal() {
+        if (signalNeeded) {
+            synchronized (monitor) {
+                signalNeeded = false;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    private void block() {
+        synchronized (monitor) {
+            signalNeeded = true;
+            try {
+                monitor.wait(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.margin.clearing.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Sequence counter of one pipeline stage, padded onto its own cache line so stages advancing
+ * neighbouring sequences don't false-share. Starts at -1 (nothing processed).
+ */
+final class Sequence extends SequenceValue {
+
+    @SuppressWarnings("unused")
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    Sequence() {
+        value = -1;
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long sequence) {
+        value = sequence;
+    }
+
+    boolean compareAndSet(long expected, long sequence) {
+        return VALUE.compareAndSet(this, expected, sequence);
+    }
+}
+
+class SequencePadding {
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequencePadding {
+    protected volatile long value;
+}
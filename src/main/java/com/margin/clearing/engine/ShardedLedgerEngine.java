@@ -0,0 +1,195 @@
+package com.margin.clearing.engine;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.TradeOutcomeListener;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory clearing engine used when clearing.mode=SHARDED.
+ * Accounts are partitioned by clientId hash across shards. Each shard is owned by
+ * exactly one thread, so balances are checked and debited without any locking.
+ * Trades and balances reach the database asynchronously through LedgerWriteBehind.
+ * When the trade journal is enabled, trades are journaled on the shard thread before they
+ * are acknowledged and the write-behind only carries balances.
+ * Balance changes are published to TradeOutcomeListeners from the shard thread, so they are
+ * delivered in order per account; the version is the loaded account version plus one per debit.
+ */
+@Component
+@ConditionalOnProperty(name = "clearing.mode", havingValue = "SHARDED")
+public class ShardedLedgerEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedLedgerEngine.class);
+
+    private final AccountRepository accountRepository;
+    private final ExecutorService[] shards;
+    private final List<Map<String, LedgerAccount>> shardAccounts;
+    private final LedgerWriteBehind writeBehind;
+    private final TradeJournal tradeJournal;
+    private final List<TradeOutcomeListener> outcomeListeners;
+
+    public ShardedLedgerEngine(AccountRepository accountRepository, TradeRepository tradeRepository,
+                               PlatformTransactionManager transactionManager,
+                               ObjectProvider<TradeJournal> tradeJournal,
+                               List<TradeOutcomeListener> outcomeListeners,
+                               @Value("${clearing.sharded.shards:4}") int shardCount,
+                               @Value("${clearing.sharded.persist-batch-size:500}") int persistBatchSize) {
+        this.accountRepository = accountRepository;
+        this.shards = new ExecutorService[shardCount];
+        this.shardAccounts = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            String name = "ledger-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+            shardAccounts.add(new HashMap<>());
+        }
+        this.tradeJournal = tradeJournal.getIfAvailable();
+        this.outcomeListeners = outcomeListeners;
+        this.writeBehind = new LedgerWriteBehind(tradeRepository, accountRepository,
+                new TransactionTemplate(transactionManager), persistBatchSize, this.tradeJournal, outcomeListeners);
+        log.info("Sharded ledger started with {} shards", shardCount);
+    }
+
+    /**
+     * Clears a PENDING trade on the shard that owns its client.
+     * The trade is returned CLEARED or REJECTED; it is persisted later.
+     */
+    public CompletableFuture<Trade> submit(Trade trade) {
+        int shard = shardFor(trade.getClientId());
+        return CompletableFuture.supplyAsync(() -> clear(shard, trade), shards[shard]);
+    }
+
+    /**
+     * Trade cleared with this orderId that is still waiting to be written, if any
+     */
+    public Optional<Trade> findUnwritten(String orderId) {
+        return writeBehind.findUnwritten(orderId);
+    }
+
+    /**
+     * Blocks until every trade cleared so far has been written to the database
+     */
+    public void flush() {
+        writeBehind.flush();
+    }
+
+    /**
+     * Drops all in-memory balances so they are reloaded from the database.
+     * Needed whenever accounts are created or changed outside this engine.
+     */
+    public void reset() {
+        writeBehind.flush();
+        CompletableFuture<?>[] cleared = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            Map<String, LedgerAccount> accounts = shardAccounts.get(i);
+            cleared[i] = CompletableFuture.runAsync(accounts::clear, shards[i]);
+        }
+        CompletableFuture.allOf(cleared).join();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        for (ExecutorService shard : shards) {
+            shard.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        writeBehind.close();
+    }
+
+    private int shardFor(String clientId) {
+        return Math.floorMod(clientId.hashCode(), shards.length);
+    }
+
+    /**
+     * Runs on the shard thread only
+     */
+    private Trade clear(int shard, Trade trade) {
+        String clientId = trade.getClientId();
+        LedgerAccount account = shardAccounts.get(shard).computeIfAbsent(clientId, this::load);
+        long marginCents = trade.getMarginRequiredCents();
+
+        if (account.balanceCents < marginCents) {
+            trade.setStatus(Trade.TradeStatus.REJECTED);
+            writeBehind.enqueueRejected(trade, journal(trade, null));
+            log.warn("Trade rejected for client {}: Insufficient margin. Required: {}, Available: {}",
+                    clientId, trade.getMarginRequired(), Money.centsToBigDecimal(account.balanceCents));
+            return trade;
+        }
+
+        account.balanceCents = Math.subtractExact(account.balanceCents, marginCents);
+        account.version++;
+        trade.setStatus(Trade.TradeStatus.CLEARED);
+        writeBehind.enqueueCleared(trade, account.balanceCents, account.version, journal(trade, account));
+        notifyBalance(clientId, account);
+        return trade;
+    }
+
+    private void notifyBalance(String clientId, LedgerAccount account) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onBalanceChanged(clientId, account.balanceCents, account.version);
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Journals the trade, with the account's new balance if it was debited; returns the journal sequence
+     * (held until the write-behind commits it) or -1 without a journal
+     */
+    private long journal(Trade trade, LedgerAccount debited) {
+        if (tradeJournal == null) {
+            return -1;
+        }
+        return debited == null
+                ? tradeJournal.append(trade)
+                : tradeJournal.append(trade, debited.balanceCents, debited.version);
+    }
+
+    private LedgerAccount load(String clientId) {
+        Account account = accountRepository.findByClientId(clientId)
+                .orElseThrow(() -> new RuntimeException("Account not found: " + clientId));
+        return new LedgerAccount(account.getBalanceCents(), account.getVersion() == null ? 0 : account.getVersion());
+    }
+
+    /**
+     * Shard-confined balance holder
+     */
+    private static final class LedgerAccount {
+        private long balanceCents;
+        private long version;
+
+        private LedgerAccount(long balanceCents, long version) {
+            this.balanceCents = balanceCents;
+            this.version = version;
+        }
+    }
+}
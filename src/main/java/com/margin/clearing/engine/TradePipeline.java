@@ -0,0 +1,484 @@
+package com.margin.clearing.engine;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.MarginCalculator;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import com.margin.clearing.service.TradeOutcomeListener;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Staged clearing engine used when clearing.mode=PIPELINE, modelled on the LMAX Disruptor.
+ * <p>
+ * Trades are published into a pre-allocated ring of reusable slots and pass four sequenced stages,
+ * each on its own thread and each consuming everything that is ready as one batch:
+ * <ol>
+ *   <li>validate: rejects malformed requests, computes the margin and picks the risk shard</li>
+ *   <li>risk: one thread per shard checks and debits in-memory balances, so every account has a single writer</li>
+ *   <li>persist: writes up to {@code persistBatchSize} trades and the resulting balances in one transaction</li>
+ *   <li>publish: notifies balance listeners in sequence order, completes the callers' futures and frees the slots</li>
+ * </ol>
+ * A trade is acknowledged only after it is persisted (or journaled). Producers block while the ring is full.
+ * Balances are loaded from the database the first time a shard sees an account; {@link #reset()} drops them.
+ * A failed persist batch drops them too, and fails every later trade already risk-checked against them.
+ */
+@Component
+@ConditionalOnProperty(name = "clearing.mode", havingValue = "PIPELINE")
+public class TradePipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TradePipeline.class);
+    private static final MarginCalculator MARGIN_CALCULATOR = new MarginCalculator(MarginService.MARGIN_RATE);
+
+    private final TradeSlot[] ring;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+    private final Sequence cursor = new Sequence();
+    private final Sequence validated = new Sequence();
+    private final Sequence[] risked;
+    private final Sequence persisted = new Sequence();
+    private final Sequence completed = new Sequence();
+    private final PipelineWaiter waiter;
+    private final List<Map<String, ShardAccount>> shardAccounts;
+    private final AccountRepository accountRepository;
+    private final TradeRepository tradeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TradeJournal tradeJournal;
+    private final List<TradeOutcomeListener> outcomeListeners;
+    private final int persistBatchSize;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong resetEpoch = new AtomicLong();
+    // Epoch started by the last failed persist batch; owned by the persist thread
+    private long failedEpoch;
+    private volatile boolean running = true;
+
+    public TradePipeline(AccountRepository accountRepository, TradeRepository tradeRepository,
+                         PlatformTransactionManager transactionManager,
+                         ObjectProvider<TradeJournal> tradeJournal,
+                         List<TradeOutcomeListener> outcomeListeners,
+                         @Value("${clearing.pipeline.ring-size:4096}") int ringSize,
+                         @Value("${clearing.pipeline.shards:4}") int shardCount,
+                         @Value("${clearing.pipeline.persist-batch-size:500}") int persistBatchSize,
+                         @Value("${clearing.pipeline.wait-strategy:SLEEPING}") PipelineWaitStrategy waitStrategy) {
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Pipeline ring size must be a power of two: " + ringSize);
+        }
+        if (shardCount < 1 || persistBatchSize < 1) {
+            throw new IllegalArgumentException("Pipeline shards and persist batch size must be positive");
+        }
+        this.accountRepository = accountRepository;
+        this.tradeRepository = tradeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tradeJournal = tradeJournal.getIfAvailable();
+        this.outcomeListeners = outcomeListeners;
+        this.persistBatchSize = persistBatchSize;
+        this.waiter = new PipelineWaiter(waitStrategy);
+
+        this.ring = new TradeSlot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new TradeSlot();
+        }
+        this.mask = ringSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(ringSize);
+        this.published = new AtomicIntegerArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            published.set(i, -1);
+        }
+
+        this.risked = new Sequence[shardCount];
+        this.shardAccounts = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            risked[i] = new Sequence();
+            shardAccounts.add(new HashMap<>());
+        }
+
+        startStage("trade-pipeline-validate", validated, () -> highestPublished(validated.get() + 1, cursor.get()),
+                ringSize, this::validate);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            long[] seenEpoch = {0};
+            startStage("trade-pipeline-risk-" + shard, risked[shard], validated::get, ringSize, (from, to) -> {
+                if (seenEpoch[0] != resetEpoch.get()) {
+                    seenEpoch[0] = resetEpoch.get();
+                    shardAccounts.get(shard).clear();
+                }
+                checkRisk(shard, seenEpoch[0], from, to);
+            });
+        }
+        startStage("trade-pipeline-persist", persisted, this::minimumRisked, persistBatchSize, this::persist);
+        startStage("trade-pipeline-publish", completed, persisted::get, ringSize, this::complete);
+        log.info("Trade pipeline started: ring {} slots, {} risk shards, {} wait strategy", ringSize, shardCount, waitStrategy);
+    }
+
+    /**
+     * Publishes a trade request into the ring, blocking while the ring is full.
+     * The future completes with the CLEARED or REJECTED trade once it is persisted, or exceptionally
+     * if the request is invalid or the account does not exist.
+     */
+    public CompletableFuture<Trade> publish(String clientId, String symbol, Integer quantity, BigDecimal price) {
+        return publish(null, clientId, symbol, quantity, price);
+    }
+
+    /**
+     * publish for a trade carrying the client's idempotency key (may be null)
+     */
+    public CompletableFuture<Trade> publish(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        CompletableFuture<Trade> future = new CompletableFuture<>();
+        long sequence = claim();
+        TradeSlot slot = ring[(int) sequence & mask];
+        slot.orderId = orderId;
+        slot.clientId = clientId;
+        slot.symbol = symbol;
+        slot.quantity = quantity;
+        slot.price = price;
+        slot.future = future;
+        published.set((int) sequence & mask, (int) (sequence >>> indexShift));
+        waiter.signal();
+        return future;
+    }
+
+    /**
+     * Drops all in-memory balances so they are reloaded from the database.
+     * Waits until trades already published have been acknowledged.
+     */
+    public void reset() {
+        for (int attempt = 0; running && completed.get() < cursor.get(); attempt++) {
+            waiter.idle(attempt);
+        }
+        resetEpoch.incrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        for (long sequence = completed.get() + 1; sequence <= cursor.get(); sequence++) {
+            TradeSlot slot = ring[(int) sequence & mask];
+            if (slot.future != null) {
+                slot.future.completeExceptionally(new IllegalStateException("Trade pipeline stopped"));
+            }
+        }
+    }
+
+    private long claim() {
+        for (int attempt = 0; ; ) {
+            if (!running) {
+                throw new IllegalStateException("Trade pipeline stopped");
+            }
+            long current = cursor.get();
+            long next = current + 1;
+            if (next - ring.length > completed.get()) {
+                // Ring is full: the slot is still held by a trade that hasn't been acknowledged
+                waiter.idle(attempt++);
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Highest sequence up to {@code upTo} whose slot, and every slot before it from {@code from}, has been published
+     */
+    private long highestPublished(long from, long upTo) {
+        for (long sequence = from; sequence <= upTo; sequence++) {
+            if (published.get((int) sequence & mask) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return upTo;
+    }
+
+    private long minimumRisked() {
+        long minimum = Long.MAX_VALUE;
+        for (Sequence sequence : risked) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+
+    private void startStage(String name, Sequence sequence, LongSupplier available, int maxBatch, BatchHandler handler) {
+        Thread thread = new Thread(() -> runStage(name, sequence, available, maxBatch, handler), name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Stage loop: waits until the upstream stage has released sequences, handles them as one batch, then advances
+     */
+    private void runStage(String name, Sequence sequence, LongSupplier available, int maxBatch, BatchHandler handler) {
+        int attempt = 0;
+        while (running) {
+            long next = sequence.get() + 1;
+            long ready = available.getAsLong();
+            if (ready < next) {
+                waiter.idle(attempt++);
+                continue;
+            }
+            attempt = 0;
+            long to = Math.min(ready, next + maxBatch - 1);
+            try {
+                handler.handle(next, to);
+            } catch (RuntimeException e) {
+                log.error("Pipeline stage {} failed on sequences {}..{}: {}", name, next, to, e.getMessage());
+            }
+            sequence.set(to);
+            waiter.signal();
+        }
+    }
+
+    private void validate(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            TradeSlot slot = ring[(int) sequence & mask];
+            if (slot.clientId == null || slot.symbol == null || slot.quantity == null || slot.price == null
+                    || slot.quantity <= 0 || slot.price.signum() <= 0) {
+                slot.fail("Invalid trade request: clientId, symbol, positive quantity and positive price are required");
+                continue;
+            }
+            try {
+                slot.marginCents = MARGIN_CALCULATOR.marginCents(slot.price, slot.quantity);
+            } catch (ArithmeticException e) {
+                slot.fail("Invalid trade request: margin overflows");
+                continue;
+            }
+            slot.shard = Math.floorMod(slot.clientId.hashCode(), risked.length);
+        }
+    }
+
+    /**
+     * Runs on the shard's thread only; {@code epoch} is the one the shard's balances were loaded in
+     */
+    private void checkRisk(int shard, long epoch, long from, long to) {
+        Map<String, ShardAccount> accounts = shardAccounts.get(shard);
+        for (long sequence = from; sequence <= to; sequence++) {
+            TradeSlot slot = ring[(int) sequence & mask];
+            if (slot.shard != shard) {
+                continue;
+            }
+            slot.riskEpoch = epoch;
+            ShardAccount account = accounts.get(slot.clientId);
+            if (account == null) {
+                try {
+                    account = load(slot.clientId);
+                } catch (RuntimeException e) {
+                    slot.fail("Account could not be loaded: " + e.getMessage());
+                    continue;
+                }
+                if (account == null) {
+                    slot.fail("Account not found: " + slot.clientId);
+                    continue;
+                }
+                accounts.put(slot.clientId, account);
+            }
+            if (account.balanceCents < slot.marginCents) {
+                slot.status = Trade.TradeStatus.REJECTED;
+                log.warn("Trade rejected for client {}: Insufficient margin. Required: {}, Available: {}",
+                        slot.clientId, Money.centsToBigDecimal(slot.marginCents), Money.centsToBigDecimal(account.balanceCents));
+                continue;
+            }
+            account.balanceCents = Math.subtractExact(account.balanceCents, slot.marginCents);
+            account.version++;
+            slot.status = Trade.TradeStatus.CLEARED;
+            slot.balanceAfterCents = account.balanceCents;
+            slot.version = account.version;
+        }
+    }
+
+    private ShardAccount load(String clientId) {
+        return accountRepository.findByClientId(clientId)
+                .map(account -> new ShardAccount(account.getBalanceCents(), account.getVersion() == null ? 0 : account.getVersion()))
+                .orElse(null);
+    }
+
+    /**
+     * Writes the batch's trades and each debited client's latest balance in one transaction.
+     * On failure the batch's trades are failed and every shard reloads its balances from the database.
+     * Trades risk-checked before that reload are failed too: their balances include the rolled-back debits,
+     * and once any shard has reloaded, persisting them would overwrite balances it no longer accounts for.
+     */
+    private void persist(long from, long to) {
+        List<TradeSlot> slots = new ArrayList<>((int) (to - from + 1));
+        Map<String, TradeSlot> balances = new LinkedHashMap<>();
+        for (long sequence = from; sequence <= to; sequence++) {
+            TradeSlot slot = ring[(int) sequence & mask];
+            if (slot.error != null) {
+                continue;
+            }
+            if (slot.status == null) {
+                // Its risk batch failed before reaching it
+                slot.fail("Trade was not risk-checked");
+                continue;
+            }
+            if (slot.riskEpoch < failedEpoch) {
+                slot.fail("Trade was risk-checked against balances rolled back by an earlier failed batch");
+                continue;
+            }
+            slot.trade = slot.toTrade();
+            slots.add(slot);
+            if (slot.status == Trade.TradeStatus.CLEARED) {
+                balances.put(slot.clientId, slot);
+            }
+        }
+        if (slots.isEmpty()) {
+            return;
+        }
+        List<Long> journaled = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (tradeJournal == null) {
+                    tradeRepository.saveAll(slots.stream().map(slot -> slot.trade).toList());
+                } else {
+                    // Every record is held, rejected ones without a balance (version 0), until the transaction ends
+                    for (TradeSlot slot : slots) {
+                        journaled.add(slot.status == Trade.TradeStatus.CLEARED
+                                ? tradeJournal.append(slot.trade, slot.balanceAfterCents, slot.version)
+                                : tradeJournal.append(slot.trade, 0L, 0L));
+                    }
+                }
+                balances.forEach((clientId, slot) -> accountRepository.updateBalanceAndVersion(
+                        clientId, Money.centsToBigDecimal(slot.balanceAfterCents), slot.version));
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to persist {} pipeline trades: {}", slots.size(), e.getMessage());
+            // Journaled inside the rolled-back transaction; void the records before the drainer can reach them
+            for (long seq : journaled) {
+                tradeJournal.discard(seq);
+            }
+            for (long sequence = from; sequence <= to; sequence++) {
+                TradeSlot slot = ring[(int) sequence & mask];
+                if (slot.error == null) {
+                    slot.fail("Trade could not be persisted: " + e.getMessage());
+                }
+            }
+            failedEpoch = resetEpoch.incrementAndGet();
+        } finally {
+            for (long seq : journaled) {
+                tradeJournal.release(seq);
+            }
+        }
+    }
+
+    private void complete(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            TradeSlot slot = ring[(int) sequence & mask];
+            CompletableFuture<Trade> future = slot.future;
+            if (slot.error != null) {
+                future.completeExceptionally(new RuntimeException(slot.error));
+            } else {
+                if (slot.status == Trade.TradeStatus.CLEARED) {
+                    notifyBalance(slot.clientId, slot.balanceAfterCents, slot.version);
+                }
+                future.complete(slot.trade);
+            }
+            slot.clear();
+        }
+    }
+
+    private void notifyBalance(String clientId, long balanceCents, long version) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onBalanceChanged(clientId, balanceCents, version);
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler {
+        void handle(long from, long to);
+    }
+
+    /**
+     * Reusable ring entry. Each field is written by one stage and read by later ones;
+     * the stage sequences order those accesses.
+     */
+    private static final class TradeSlot {
+        private String orderId;
+        private String clientId;
+        private String symbol;
+        private Integer quantity;
+        private BigDecimal price;
+        private CompletableFuture<Trade> future;
+        private long marginCents;
+        private int shard = -1;
+        private Trade.TradeStatus status;
+        private long balanceAfterCents;
+        private long version;
+        private long riskEpoch;
+        private Trade trade;
+        private String error;
+
+        private void fail(String message) {
+            error = message;
+            shard = -1;
+        }
+
+        private Trade toTrade() {
+            Trade result = new Trade();
+            result.setOrderId(orderId);
+            result.setClientId(clientId);
+            result.setSymbol(symbol);
+            result.setQuantity(quantity);
+            result.setPrice(price);
+            result.setMarginRequiredCents(marginCents);
+            result.setStatus(status);
+            return result;
+        }
+
+        private void clear() {
+            orderId = null;
+            clientId = null;
+            symbol = null;
+            quantity = null;
+            price = null;
+            future = null;
+            marginCents = 0;
+            shard = -1;
+            status = null;
+            balanceAfterCents = 0;
+            version = 0;
+            riskEpoch = 0;
+            trade = null;
+            error = null;
+        }
+    }
+
+    /**
+     * Shard-confined balance holder
+     */
+    private static final class ShardAccount {
+        private long balanceCents;
+        private long version;
+
+        private ShardAccount(long balanceCents, long version) {
+            this.balanceCents = balanceCents;
+            this.version = version;
+        }
+    }
+}
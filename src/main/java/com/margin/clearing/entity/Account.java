@@ -1,5 +1,7 @@
 package com.margin.clearing.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.margin.clearing.money.Money;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
@@ -9,13 +11,19 @@ import java.math.BigDecimal;
 public class Account {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true)
     private String clientId;
     
-    @Column(nullable = false, precision = 19, scale = 2)
+    // Hot-path balance; the column is mapped through getBalance()/setBalance()
+    @Transient
+    private long balanceCents;
+    
+    // BigDecimal view of balanceCents, materialized only at the JPA/JSON boundary
+    @Transient
     private BigDecimal balance;
     
     @Version
@@ -28,13 +36,13 @@ public class Account {
     public Account(Long id, String clientId, BigDecimal balance, Long version) {
         this.id = id;
         this.clientId = clientId;
-        this.balance = balance;
+        setBalance(balance);
         this.version = version;
     }
     
     public Account(String clientId, BigDecimal balance) {
         this.clientId = clientId;
-        this.balance = balance;
+        setBalance(balance);
     }
     
     // Getters and Setters
@@ -54,12 +62,28 @@ public class Account {
         this.clientId = clientId;
     }
     
+    @Access(AccessType.PROPERTY)
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
     public BigDecimal getBalance() {
+        if (balance == null) {
+            balance = Money.centsToBigDecimal(balanceCents);
+        }
         return balance;
     }
     
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
+        this.balanceCents = balance == null ? 0L : Money.toCents(balance);
+    }
+    
+    @JsonIgnore
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+    
+    public void setBalanceCents(long balanceCents) {
+        this.balanceCents = balanceCents;
+        this.balance = null;
     }
     
     public Long getVersion() {
@@ -0,0 +1,87 @@
+package com.margin.clearing.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Per-client result of one settled chunk: trades settled and margin released back to the balance
+ * A client trading across several chunks of a run gets one record per chunk
+ */
+@Entity
+@Table(name = "settlement_records", indexes = @Index(name = "idx_settlement_records_run_client", columnList = "runId, clientId"))
+public class SettlementRecord {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_record_seq")
+    @SequenceGenerator(name = "settlement_record_seq", sequenceName = "settlement_records_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long runId;
+    
+    @Column(nullable = false)
+    private String clientId;
+    
+    @Column(nullable = false)
+    private Integer tradeCount;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal notional;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal marginReleased;
+    
+    @Column(nullable = false)
+    private Long lastTradeId;
+    
+    @Column(nullable = false)
+    private LocalDateTime settledAt;
+    
+    public SettlementRecord() {
+    }
+    
+    public SettlementRecord(Long runId, String clientId, Integer tradeCount, BigDecimal notional,
+                            BigDecimal marginReleased, Long lastTradeId, LocalDateTime settledAt) {
+        this.runId = runId;
+        this.clientId = clientId;
+        this.tradeCount = tradeCount;
+        this.notional = notional;
+        this.marginReleased = marginReleased;
+        this.lastTradeId = lastTradeId;
+        this.settledAt = settledAt;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getRunId() {
+        return runId;
+    }
+    
+    public String getClientId() {
+        return clientId;
+    }
+    
+    public Integer getTradeCount() {
+        return tradeCount;
+    }
+    
+    public BigDecimal getNotional() {
+        return notional;
+    }
+    
+    public BigDecimal getMarginReleased() {
+        return marginReleased;
+    }
+    
+    public Long getLastTradeId() {
+        return lastTradeId;
+    }
+    
+    public LocalDateTime getSettledAt() {
+        return settledAt;
+    }
+}
@@ -0,0 +1,112 @@
+package com.margin.clearing.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One end-of-day settlement run and its progress
+ * The run settles the CLEARED trades with id &lt;= upToTradeId that no run has settled yet. Each trade is marked
+ * with the run in the same transaction that releases its margin, so a restarted run continues exactly where it
+ * stopped, and a trade that commits below upToTradeId after the run read it is left for the next run.
+ * lastSettledTradeId is the highest trade id settled so far, for reporting.
+ */
+@Entity
+@Table(name = "settlement_runs")
+public class SettlementRun {
+    
+    public enum Status {
+        RUNNING, FAILED, COMPLETED
+    }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_run_seq")
+    @SequenceGenerator(name = "settlement_run_seq", sequenceName = "settlement_runs_seq", allocationSize = 1)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+    
+    @Column(nullable = false)
+    private Long upToTradeId;
+    
+    @Column(nullable = false)
+    private Long lastSettledTradeId;
+    
+    @Column(nullable = false)
+    private Long tradesSettled;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal marginReleased;
+    
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+    
+    private LocalDateTime completedAt;
+    
+    public SettlementRun() {
+    }
+    
+    public SettlementRun(long fromTradeId, long upToTradeId) {
+        this.status = Status.RUNNING;
+        this.lastSettledTradeId = fromTradeId;
+        this.upToTradeId = upToTradeId;
+        this.tradesSettled = 0L;
+        this.marginReleased = BigDecimal.ZERO.setScale(2);
+        this.startedAt = LocalDateTime.now();
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public Long getUpToTradeId() {
+        return upToTradeId;
+    }
+    
+    public Long getLastSettledTradeId() {
+        return lastSettledTradeId;
+    }
+    
+    public void setLastSettledTradeId(Long lastSettledTradeId) {
+        this.lastSettledTradeId = lastSettledTradeId;
+    }
+    
+    public Long getTradesSettled() {
+        return tradesSettled;
+    }
+    
+    public void setTradesSettled(Long tradesSettled) {
+        this.tradesSettled = tradesSettled;
+    }
+    
+    public BigDecimal getMarginReleased() {
+        return marginReleased;
+    }
+    
+    public void setMarginReleased(BigDecimal marginReleased) {
+        this.marginReleased = marginReleased;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
@@ -1,16 +1,27 @@
 package com.margin.clearing.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.margin.clearing.money.Money;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "trades", indexes = @Index(name = "idx_client_id", columnList = "clientId"))
+// Matches the (createdAt DESC, id DESC) keyset order of client history pages; settlement scans unsettled trades by id
+@Table(name = "trades", indexes = {
+        @Index(name = "idx_trades_client_created_id", columnList = "clientId, createdAt DESC, id DESC"),
+        @Index(name = "idx_trades_settlement_run_id", columnList = "settlementRunId, id")},
+        uniqueConstraints = @UniqueConstraint(name = "uk_trades_order_id", columnNames = "orderId"))
 public class Trade {
     
+    // In UTF-8 bytes, so an accepted orderId also fits the column and the off-heap trade store's fixed records
+    public static final int MAX_ORDER_ID_LENGTH = 64;
+    
+    // Sequence ids keep JDBC insert batching on (Hibernate disables it for IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_seq")
+    @SequenceGenerator(name = "trade_seq", sequenceName = "trades_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -19,13 +30,22 @@ public class Trade {
     @Column(nullable = false)
     private String symbol;
     
+    // Client-supplied idempotency key; retries carrying the same orderId return this trade instead of clearing again
+    @Column(length = MAX_ORDER_ID_LENGTH)
+    private String orderId;
+    
     @Column(nullable = false)
     private Integer quantity;
     
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal price;
     
-    @Column(nullable = false, precision = 19, scale = 2)
+    // Hot-path margin; the column is mapped through getMarginRequired()/setMarginRequired()
+    @Transient
+    private long marginRequiredCents;
+    
+    // BigDecimal view of marginRequiredCents, materialized only at the JPA/JSON boundary
+    @Transient
     private BigDecimal marginRequired;
     
     @Enumerated(EnumType.STRING)
@@ -35,9 +55,16 @@ public class Trade {
     @Column(nullable = false)
     private LocalDateTime createdAt;
     
+    // Settlement run that released this trade's margin; set only by settlement, in the transaction that releases it
+    @Column(updatable = false)
+    private Long settlementRunId;
+    
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Journaled trades keep the time they were cleared, not the time they were drained
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
     }
     
     // Constructors
@@ -51,7 +78,7 @@ public class Trade {
         this.symbol = symbol;
         this.quantity = quantity;
         this.price = price;
-        this.marginRequired = marginRequired;
+        setMarginRequired(marginRequired);
         this.status = status;
         this.createdAt = createdAt;
     }
@@ -81,6 +108,14 @@ public class Trade {
         this.symbol = symbol;
     }
     
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+    
     public Integer getQuantity() {
         return quantity;
     }
@@ -97,12 +132,28 @@ public class Trade {
         this.price = price;
     }
     
+    @Access(AccessType.PROPERTY)
+    @Column(name = "margin_required", nullable = false, precision = 19, scale = 2)
     public BigDecimal getMarginRequired() {
+        if (marginRequired == null) {
+            marginRequired = Money.centsToBigDecimal(marginRequiredCents);
+        }
         return marginRequired;
     }
     
     public void setMarginRequired(BigDecimal marginRequired) {
         this.marginRequired = marginRequired;
+        this.marginRequiredCents = marginRequired == null ? 0L : Money.toCents(marginRequired);
+    }
+    
+    @JsonIgnore
+    public long getMarginRequiredCents() {
+        return marginRequiredCents;
+    }
+    
+    public void setMarginRequiredCents(long marginRequiredCents) {
+        this.marginRequiredCents = marginRequiredCents;
+        this.marginRequired = null;
     }
     
     public TradeStatus getStatus() {
@@ -121,6 +172,11 @@ public class Trade {
         this.createdAt = createdAt;
     }
     
+    @JsonIgnore
+    public Long getSettlementRunId() {
+        return settlementRunId;
+    }
+    
     public enum TradeStatus {
         PENDING,
         CLEARED,
@@ -0,0 +1,18 @@
+package com.margin.clearing.gateway;
+
+/**
+ * Binary acknowledgement of one gateway trade, matched to its request by correlation id
+ *
+ * @param tradeId     id of the persisted trade, 0 when the request never became a trade
+ * @param marginCents margin required by the trade, 0 on ERROR
+ */
+public record GatewayAck(long correlationId, Status status, long tradeId, long marginCents) {
+
+    public enum Status {
+        CLEARED,
+        /** Insufficient margin */
+        REJECTED,
+        /** Malformed message, unknown account or clearing failure */
+        ERROR
+    }
+}
@@ -0,0 +1,82 @@
+package com.margin.clearing.gateway;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking loopback client for the trade gateway, for tests and benchmarks.
+ * <p>
+ * {@link #submit} only buffers; requests go out when the buffer fills, on {@link #flush()} or
+ * before {@link #receive()} blocks. Keep fewer trades unacknowledged than the gateway's
+ * {@code clearing.gateway.max-in-flight}, otherwise both sides can end up blocked writing.
+ * Not thread-safe.
+ */
+public class GatewayClient implements Closeable {
+
+    private static final int WRITE_BUFFER_REQUESTS = 256;
+    private static final int READ_BUFFER_ACKS = 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(GatewayProtocol.REQUEST_SIZE * WRITE_BUFFER_REQUESTS);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(GatewayProtocol.ACK_SIZE * READ_BUFFER_ACKS);
+
+    private GatewayClient(SocketChannel channel) {
+        this.channel = channel;
+        in.flip();
+    }
+
+    public static GatewayClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.connect(new InetSocketAddress(host, port));
+        return new GatewayClient(channel);
+    }
+
+    /**
+     * Queues a trade request; the ack carries the same correlation id
+     * @throws IllegalArgumentException if clientId or symbol is empty, too long or not ASCII
+     */
+    public void submit(long correlationId, String clientId, String symbol, int quantity, BigDecimal price) throws IOException {
+        if (out.remaining() < GatewayProtocol.REQUEST_SIZE) {
+            flush();
+        }
+        GatewayProtocol.encodeRequest(out, correlationId, clientId, symbol, quantity, price);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Blocks for the next ack, flushing queued requests first
+     */
+    public GatewayAck receive() throws IOException {
+        if (out.position() > 0) {
+            flush();
+        }
+        while (in.remaining() < GatewayProtocol.ACK_SIZE) {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Gateway closed the connection");
+            }
+        }
+        return GatewayProtocol.decodeAck(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
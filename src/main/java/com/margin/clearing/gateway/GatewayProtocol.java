@@ -0,0 +1,130 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.money.Money;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary messages of the order-entry gateway (big-endian, no framing beyond the fixed size).
+ * <p>
+ * Trade request, {@value #REQUEST_SIZE} bytes:
+ * correlation id (8), price in ticks of 10^-4 (8), quantity (4), client id length (1), symbol length (1),
+ * reserved (2), client id US-ASCII padded to {@value #MAX_CLIENT_ID_LENGTH}, symbol padded to {@value #MAX_SYMBOL_LENGTH}.
+ * <p>
+ * Ack, {@value #ACK_SIZE} bytes: correlation id (8), trade id (8), margin in cents (8), status ordinal (1), reserved (7).
+ */
+final class GatewayProtocol {
+
+    static final int REQUEST_SIZE = 72;
+    static final int ACK_SIZE = 32;
+    static final int MAX_CLIENT_ID_LENGTH = 32;
+    static final int MAX_SYMBOL_LENGTH = 16;
+
+    // Request offsets
+    private static final int Q_CORRELATION_ID = 0;
+    private static final int Q_PRICE_TICKS = 8;
+    private static final int Q_QUANTITY = 16;
+    private static final int Q_CLIENT_ID_LENGTH = 20;
+    private static final int Q_SYMBOL_LENGTH = 21;
+    private static final int Q_CLIENT_ID = 24;
+    private static final int Q_SYMBOL = Q_CLIENT_ID + MAX_CLIENT_ID_LENGTH;
+
+    // Ack offsets
+    private static final int A_CORRELATION_ID = 0;
+    private static final int A_TRADE_ID = 8;
+    private static final int A_MARGIN_CENTS = 16;
+    private static final int A_STATUS = 24;
+
+    private static final GatewayAck.Status[] STATUSES = GatewayAck.Status.values();
+
+    private GatewayProtocol() {
+    }
+
+    /**
+     * A decoded request; {@code request} is null when the message is malformed
+     */
+    record DecodedRequest(long correlationId, TradeRequestDTO request) {
+    }
+
+    static void encodeRequest(ByteBuffer out, long correlationId, String clientId, String symbol, int quantity, BigDecimal price) {
+        byte[] client = ascii(clientId, MAX_CLIENT_ID_LENGTH, "clientId");
+        byte[] sym = ascii(symbol, MAX_SYMBOL_LENGTH, "symbol");
+        int start = out.position();
+        out.putLong(start + Q_CORRELATION_ID, correlationId);
+        out.putLong(start + Q_PRICE_TICKS, Money.toPriceTicks(price));
+        out.putInt(start + Q_QUANTITY, quantity);
+        out.put(start + Q_CLIENT_ID_LENGTH, (byte) client.length);
+        out.put(start + Q_SYMBOL_LENGTH, (byte) sym.length);
+        out.putShort(start + Q_SYMBOL_LENGTH + 1, (short) 0);
+        out.put(start + Q_CLIENT_ID, client);
+        pad(out, start + Q_CLIENT_ID + client.length, MAX_CLIENT_ID_LENGTH - client.length);
+        out.put(start + Q_SYMBOL, sym);
+        pad(out, start + Q_SYMBOL + sym.length, MAX_SYMBOL_LENGTH - sym.length);
+        out.position(start + REQUEST_SIZE);
+    }
+
+    /**
+     * Decodes the request at the buffer's position and advances past it.
+     * Lengths out of range and non-positive quantities or prices yield a malformed request.
+     */
+    static DecodedRequest decodeRequest(ByteBuffer in) {
+        int start = in.position();
+        in.position(start + REQUEST_SIZE);
+        long correlationId = in.getLong(start + Q_CORRELATION_ID);
+        long priceTicks = in.getLong(start + Q_PRICE_TICKS);
+        int quantity = in.getInt(start + Q_QUANTITY);
+        int clientIdLength = in.get(start + Q_CLIENT_ID_LENGTH);
+        int symbolLength = in.get(start + Q_SYMBOL_LENGTH);
+        if (clientIdLength < 1 || clientIdLength > MAX_CLIENT_ID_LENGTH
+                || symbolLength < 1 || symbolLength > MAX_SYMBOL_LENGTH
+                || quantity <= 0 || priceTicks <= 0) {
+            return new DecodedRequest(correlationId, null);
+        }
+        TradeRequestDTO request = new TradeRequestDTO(
+                readAscii(in, start + Q_CLIENT_ID, clientIdLength),
+                readAscii(in, start + Q_SYMBOL, symbolLength),
+                quantity,
+                Money.ticksToBigDecimal(priceTicks));
+        return new DecodedRequest(correlationId, request);
+    }
+
+    static void encodeAck(ByteBuffer out, long correlationId, GatewayAck.Status status, long tradeId, long marginCents) {
+        int start = out.position();
+        out.putLong(start + A_CORRELATION_ID, correlationId);
+        out.putLong(start + A_TRADE_ID, tradeId);
+        out.putLong(start + A_MARGIN_CENTS, marginCents);
+        out.put(start + A_STATUS, (byte) status.ordinal());
+        pad(out, start + A_STATUS + 1, ACK_SIZE - A_STATUS - 1);
+        out.position(start + ACK_SIZE);
+    }
+
+    static GatewayAck decodeAck(ByteBuffer in) {
+        int start = in.position();
+        in.position(start + ACK_SIZE);
+        return new GatewayAck(in.getLong(start + A_CORRELATION_ID), STATUSES[in.get(start + A_STATUS)],
+                in.getLong(start + A_TRADE_ID), in.getLong(start + A_MARGIN_CENTS));
+    }
+
+    private static byte[] ascii(String value, int maxLength, String field) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > maxLength) {
+            throw new IllegalArgumentException(field + " must be 1.." + maxLength + " ASCII characters: " + value);
+        }
+        return bytes;
+    }
+
+    private static String readAscii(ByteBuffer in, int offset, int length) {
+        byte[] bytes = new byte[length];
+        in.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void pad(ByteBuffer out, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            out.put(offset + i, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.service.MarginService.BatchTradeResult;
+
+import java.util.List;
+
+/**
+ * Clears the trades decoded from one read of a gateway connection, returning one result per request in order.
+ * A {@code null} request stands for a malformed message and must come back rejected.
+ */
+@FunctionalInterface
+public interface TradeBatchHandler {
+
+    List<BatchTradeResult> clear(List<TradeRequestDTO> requests);
+}
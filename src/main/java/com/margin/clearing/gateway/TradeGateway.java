@@ -0,0 +1,330 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.service.MarginService.BatchTradeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Low-latency TCP order entry that bypasses Spring MVC and JSON.
+ * <p>
+ * One selector thread owns every connection and its direct buffers; it decodes fixed-size
+ * {@link GatewayProtocol} requests and writes binary acks. Clients may pipeline many trades per
+ * connection. Whatever has arrived while a connection's previous batch was clearing is handed to a
+ * worker as the next batch (up to {@code maxBatchSize}), so a busy connection clears many trades per
+ * transaction and its trades are cleared in the order they were sent.
+ * <p>
+ * A connection stops being read once {@code maxInFlight} of its trades are unacknowledged, pushing
+ * backpressure onto the client's TCP window instead of buffering without bound.
+ */
+public class TradeGateway implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeGateway.class);
+
+    private static final int READ_BUFFER_REQUESTS = 1024;
+
+    private final TradeBatchHandler handler;
+    private final InetSocketAddress address;
+    private final int maxBatchSize;
+    private final int maxInFlight;
+    private final ExecutorService workers;
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private final List<Connection> connections = new ArrayList<>();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile int port;
+
+    public TradeGateway(TradeBatchHandler handler, String host, int port, int workerThreads, int maxBatchSize, int maxInFlight) {
+        if (maxBatchSize < 1 || maxInFlight < 1 || workerThreads < 1) {
+            throw new IllegalArgumentException("Gateway workers, batch size and in-flight limit must be positive");
+        }
+        this.handler = handler;
+        this.address = new InetSocketAddress(host, port);
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread t = new Thread(r, "trade-gateway-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+        running = true;
+        selectorThread = new Thread(this::run, "trade-gateway-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Trade gateway listening on {}:{}", address.getHostString(), port);
+    }
+
+    /**
+     * Bound port; useful when configured with port 0
+     */
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error closing trade gateway: {}", e.getMessage());
+        }
+        log.info("Trade gateway on port {} stopped", port);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                drainCompletions();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        log.debug("Gateway connection {} failed: {}", connection.remote, e.getMessage());
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                log.error("Trade gateway selector stopped", e);
+            }
+        } finally {
+            new ArrayList<>(connections).forEach(Connection::close);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+        log.debug("Gateway connection from {}", connection.remote);
+    }
+
+    private void drainCompletions() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            Connection connection = completion.connection();
+            try {
+                connection.complete(completion);
+            } catch (IOException e) {
+                log.debug("Gateway connection {} failed: {}", connection.remote, e.getMessage());
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Results of a cleared batch, handed from a worker back to the selector thread (null results: the batch failed)
+     */
+    private record Completion(Connection connection, long[] correlationIds, List<BatchTradeResult> results) {
+    }
+
+    /**
+     * Per-connection state; only touched by the selector thread
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final String remote;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(GatewayProtocol.REQUEST_SIZE * READ_BUFFER_REQUESTS);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(GatewayProtocol.ACK_SIZE * (maxInFlight + READ_BUFFER_REQUESTS));
+        private final List<GatewayProtocol.DecodedRequest> pending = new ArrayList<>();
+        private SelectionKey key;
+        private int inFlight;
+        private boolean closed;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remote = String.valueOf(channel.getRemoteAddress());
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= GatewayProtocol.REQUEST_SIZE) {
+                pending.add(GatewayProtocol.decodeRequest(in));
+            }
+            in.compact();
+            dispatch();
+            updateInterest();
+        }
+
+        void write() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            updateInterest();
+        }
+
+        void complete(Completion completion) throws IOException {
+            inFlight = 0;
+            if (closed) {
+                return;
+            }
+            long[] correlationIds = completion.correlationIds();
+            for (int i = 0; i < correlationIds.length; i++) {
+                if (completion.results() == null) {
+                    GatewayProtocol.encodeAck(out, correlationIds[i], GatewayAck.Status.ERROR, 0, 0);
+                } else {
+                    encodeResult(correlationIds[i], completion.results().get(i));
+                }
+            }
+            write();
+            dispatch();
+            updateInterest();
+        }
+
+        private void encodeResult(long correlationId, BatchTradeResult result) {
+            GatewayAck.Status status;
+            if (result.status() == Trade.TradeStatus.CLEARED) {
+                status = GatewayAck.Status.CLEARED;
+            } else if (result.error()) {
+                status = GatewayAck.Status.ERROR;
+            } else {
+                status = GatewayAck.Status.REJECTED;
+            }
+            long tradeId = result.tradeId() == null ? 0 : result.tradeId();
+            long marginCents = result.marginRequired() == null ? 0 : Money.toCents(result.marginRequired());
+            GatewayProtocol.encodeAck(out, correlationId, status, tradeId, marginCents);
+        }
+
+        /**
+         * Hands everything decoded so far (up to maxBatchSize) to a worker, unless a batch is already clearing
+         */
+        private void dispatch() {
+            if (inFlight > 0 || pending.isEmpty()) {
+                return;
+            }
+            List<GatewayProtocol.DecodedRequest> batch = pending.subList(0, Math.min(maxBatchSize, pending.size()));
+            long[] correlationIds = new long[batch.size()];
+            List<TradeRequestDTO> requests = new ArrayList<>(batch.size());
+            for (int i = 0; i < correlationIds.length; i++) {
+                correlationIds[i] = batch.get(i).correlationId();
+                requests.add(batch.get(i).request());
+            }
+            batch.clear();
+            inFlight = correlationIds.length;
+            try {
+                workers.execute(() -> clear(correlationIds, requests));
+            } catch (RejectedExecutionException e) {
+                // Gateway is shutting down
+                inFlight = 0;
+            }
+        }
+
+        private void clear(long[] correlationIds, List<TradeRequestDTO> requests) {
+            Completion completion;
+            try {
+                completion = new Completion(this, correlationIds, handler.clear(requests));
+            } catch (RuntimeException e) {
+                log.warn("Gateway batch of {} trades failed: {}", correlationIds.length, e.getMessage());
+                completion = new Completion(this, correlationIds, null);
+            }
+            completions.add(completion);
+            selector.wakeup();
+        }
+
+        private void updateInterest() {
+            if (closed) {
+                return;
+            }
+            int unacknowledged = pending.size() + inFlight + out.position() / GatewayProtocol.ACK_SIZE;
+            int ops = unacknowledged < maxInFlight ? SelectionKey.OP_READ : 0;
+            if (out.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing gateway connection {}: {}", remote, e.getMessage());
+            }
+            log.debug("Gateway connection {} closed", remote);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.margin.clearing.journal;
+
+/**
+ * When journal appends are forced to disk (property: clearing.journal.fsync)
+ */
+public enum FsyncPolicy {
+    /**
+     * Force every record before the trade is acknowledged
+     */
+    ALWAYS,
+
+    /**
+     * Force dirty pages every clearing.journal.fsync-interval-ms
+     */
+    INTERVAL,
+
+    /**
+     * Leave write-back to the OS; survives a process crash, not a power loss
+     */
+    NEVER
+}
@@ -0,0 +1,521 @@
+package com.margin.clearing.journal;
+
+import com.margin.clearing.entity.Trade;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only trade journal on a memory-mapped file with fixed-size records.
+ * <p>
+ * Every trade gets a sequence number; record {@code seq} lives in slot {@code (seq - 1) % capacity}.
+ * The header stores the last sequence drained into the database. A slot is only reused once the
+ * record in it has been drained, so appends block (backpressure) when the drainer falls a full
+ * journal behind. Callers inside a database transaction wait with {@link #awaitSpace} before it starts and
+ * append with {@link #appendNow}, which fails instead of blocking while row locks are held. On open, records after the drained sequence are recovered and drained again.
+ * <p>
+ * Layout: 4 KiB header, then {@code capacity} records of {@value #RECORD_SIZE} bytes, each
+ * closed by a CRC32C so a torn write ends recovery instead of producing a bad trade.
+ * <p>
+ * Records may carry the client's balance and account version after the trade, so account snapshots
+ * can be brought forward by replaying the journal ({@link #forEachBalance}). Such records are held
+ * until the caller {@link #release releases} them, i.e. once their balance is committed to the database;
+ * {@link #getSnapshotHorizon()} never passes a held record, and neither does the drainer. A record whose
+ * transaction rolled back is {@link #discard discarded} before it is released, so it is neither drained nor
+ * replayed. With {@link #retainAfter} slots are not reused until a snapshot covers them either.
+ * <p>
+ * Undrained records are indexed by orderId ({@link #findUndrained}), so an idempotent retry can match a trade
+ * that is acknowledged but not yet in the trades table.
+ */
+public class TradeJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeJournal.class);
+
+    static final int HEADER_SIZE = 4096;
+    static final int RECORD_SIZE = 256;
+    static final int MAX_CLIENT_ID_LENGTH = 32;
+    static final int MAX_SYMBOL_LENGTH = 16;
+    static final int MAX_ORDER_ID_LENGTH = 64;
+
+    private static final int MAGIC = 0x544A4E4C; // "TJNL"
+    // 2 added balance and account version, 3 the order id, 4 the discarded flag; older records have zeros there
+    private static final int FORMAT_VERSION = 4;
+
+    // Header offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_DRAINED_SEQ = 20;
+
+    // Record offsets
+    private static final int R_SEQ = 0;
+    private static final int R_CREATED_AT = 8;
+    private static final int R_QUANTITY = 16;
+    private static final int R_STATUS = 20;
+    private static final int R_PRICE_SCALE = 21;
+    private static final int R_CLIENT_ID_LENGTH = 22;
+    private static final int R_SYMBOL_LENGTH = 23;
+    private static final int R_PRICE_UNSCALED = 24;
+    private static final int R_MARGIN_CENTS = 32;
+    private static final int R_CLIENT_ID = 40;
+    private static final int R_SYMBOL = R_CLIENT_ID + MAX_CLIENT_ID_LENGTH;
+    private static final int R_BALANCE_AFTER_CENTS = R_SYMBOL + MAX_SYMBOL_LENGTH;
+    private static final int R_ACCOUNT_VERSION = R_BALANCE_AFTER_CENTS + 8;
+    private static final int R_ORDER_ID_LENGTH = R_ACCOUNT_VERSION + 8;
+    private static final int R_ORDER_ID = R_ORDER_ID_LENGTH + 1;
+    private static final int R_DISCARDED = R_ORDER_ID + MAX_ORDER_ID_LENGTH;
+    private static final int R_CRC = RECORD_SIZE - 4;
+
+    private static final Trade.TradeStatus[] STATUSES = Trade.TradeStatus.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer crcView;
+    private final CRC32C crc = new CRC32C();
+    private final long capacity;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService fsyncScheduler;
+
+    // Sequences appended with a balance whose database transaction hasn't finished
+    private final ConcurrentSkipListSet<Long> held = new ConcurrentSkipListSet<>();
+    // Sequence of the undrained, not discarded record per orderId
+    private final Map<String, Long> undrainedOrders = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private long nextSeq;
+    private volatile long lastSeq;
+    private volatile long drainedSeq;
+    private long retainedSeq = Long.MAX_VALUE;
+
+    public TradeJournal(Path path, long capacity, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        boolean exists = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long journalCapacity = exists ? readCapacity(channel) : capacity;
+        long size = HEADER_SIZE + journalCapacity * RECORD_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal capacity " + journalCapacity + " exceeds a single 2 GiB mapping");
+        }
+        this.capacity = journalCapacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.crcView = buffer.duplicate();
+
+        if (exists) {
+            recover();
+        } else {
+            writeHeader();
+        }
+        if (exists && journalCapacity != capacity) {
+            log.warn("Journal {} keeps its existing capacity of {} records (configured {})", path, journalCapacity, capacity);
+        }
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.fsyncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "trade-journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            fsyncScheduler.scheduleWithFixedDelay(buffer::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.fsyncScheduler = null;
+        }
+    }
+
+    /**
+     * Appends a CLEARED or REJECTED trade without balance information and returns its sequence number.
+     * Blocks while the journal is full of undrained records.
+     * The trade's createdAt is set here if missing so it survives draining.
+     */
+    public synchronized long append(Trade trade) {
+        return write(trade, 0L, 0L, true);
+    }
+
+    /**
+     * Appends a trade together with its client's balance and account version once the trade is applied.
+     * The record is held until {@link #release} is called for it, which the caller must do once the
+     * balance is committed (or rolled back).
+     */
+    public synchronized long append(Trade trade, long balanceAfterCents, long accountVersion) {
+        long seq = write(trade, balanceAfterCents, accountVersion, true);
+        held.add(seq);
+        return seq;
+    }
+
+    /**
+     * Like {@link #append(Trade, long, long)}, but fails instead of blocking when the journal is full
+     * @throws IllegalStateException if no slot is free
+     */
+    public synchronized long appendNow(Trade trade, long balanceAfterCents, long accountVersion) {
+        long seq = write(trade, balanceAfterCents, accountVersion, false);
+        held.add(seq);
+        return seq;
+    }
+
+    /**
+     * Blocks until {@code records} appends (at most the capacity) would find free slots
+     */
+    public synchronized void awaitSpace(int records) {
+        awaitFreeSlots((int) Math.min(records, capacity));
+    }
+
+    /**
+     * Stops holding back the snapshot horizon for a record appended with a balance
+     */
+    public void release(long seq) {
+        held.remove(seq);
+    }
+
+    /**
+     * Marks a held record void because the transaction that wrote it rolled back; call before {@link #release}
+     * The drainer skips it and {@link #forEachBalance} does not replay it.
+     */
+    public synchronized void discard(long seq) {
+        int offset = offset(seq);
+        if (buffer.getLong(offset + R_SEQ) != seq) {
+            throw new IllegalStateException("Journal slot for sequence " + seq + " has been reused");
+        }
+        buffer.put(offset + R_DISCARDED, (byte) 1);
+        buffer.putInt(offset + R_CRC, checksum(offset));
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force(offset, RECORD_SIZE);
+        }
+        unindexOrder(seq, offset);
+    }
+
+    /**
+     * True if the record at {@code seq} was discarded after a rollback
+     */
+    public boolean isDiscarded(long seq) {
+        return buffer.get(offset(seq) + R_DISCARDED) != 0;
+    }
+
+    /**
+     * Trade journaled with this orderId that has not been drained into the database yet, if any
+     * Discarded records don't match. The trade has no id; the drainer assigns it when inserting.
+     */
+    public synchronized Optional<Trade> findUndrained(String orderId) {
+        Long seq = undrainedOrders.get(orderId);
+        return seq == null ? Optional.empty() : Optional.of(read(seq));
+    }
+
+    /**
+     * Highest sequence whose record, and every record before it, has been released:
+     * an account snapshot read after this call reflects every balance up to it
+     */
+    public synchronized long getSnapshotHorizon() {
+        Long oldestHeld = held.ceiling(0L);
+        return oldestHeld == null ? lastSeq : oldestHeld - 1;
+    }
+
+    /**
+     * Keeps every record after {@code seq} (the latest snapshot's horizon) from being reused, even once drained
+     */
+    public synchronized void retainAfter(long seq) {
+        retainedSeq = seq;
+        notifyAll();
+    }
+
+    private long write(Trade trade, long balanceAfterCents, long accountVersion, boolean block) {
+        String clientId = trade.getClientId();
+        String symbol = trade.getSymbol();
+        checkAscii(clientId, MAX_CLIENT_ID_LENGTH, "clientId");
+        checkAscii(symbol, MAX_SYMBOL_LENGTH, "symbol");
+        String orderId = trade.getOrderId();
+        if (orderId != null) {
+            checkAscii(orderId, MAX_ORDER_ID_LENGTH, "orderId");
+        }
+        BigDecimal price = trade.getPrice();
+        long priceUnscaled = price.unscaledValue().longValueExact();
+        if (trade.getCreatedAt() == null) {
+            trade.setCreatedAt(LocalDateTime.now());
+        }
+
+        if (block) {
+            awaitFreeSlots(1);
+        } else if (!hasFreeSlots(1)) {
+            throw new IllegalStateException("Trade journal is full: " + capacity + " records not yet drained or snapshotted");
+        }
+        // Read after waiting: wait() lets other appenders take the sequence we would have seen before
+        long seq = nextSeq;
+        int offset = offset(seq);
+
+        buffer.putLong(offset + R_CREATED_AT, toEpochNanos(trade.getCreatedAt()));
+        buffer.putInt(offset + R_QUANTITY, trade.getQuantity());
+        buffer.put(offset + R_STATUS, (byte) trade.getStatus().ordinal());
+        buffer.put(offset + R_PRICE_SCALE, (byte) price.scale());
+        buffer.put(offset + R_CLIENT_ID_LENGTH, (byte) clientId.length());
+        buffer.put(offset + R_SYMBOL_LENGTH, (byte) symbol.length());
+        buffer.putLong(offset + R_PRICE_UNSCALED, priceUnscaled);
+        buffer.putLong(offset + R_MARGIN_CENTS, trade.getMarginRequiredCents());
+        buffer.putLong(offset + R_BALANCE_AFTER_CENTS, balanceAfterCents);
+        buffer.putLong(offset + R_ACCOUNT_VERSION, accountVersion);
+        putAscii(offset + R_CLIENT_ID, clientId);
+        putAscii(offset + R_SYMBOL, symbol);
+        // 0 means no order id, so the byte read back from older records is correct too
+        buffer.put(offset + R_ORDER_ID_LENGTH, (byte) (orderId == null ? 0 : orderId.length()));
+        if (orderId != null) {
+            putAscii(offset + R_ORDER_ID, orderId);
+        }
+        buffer.put(offset + R_DISCARDED, (byte) 0);
+        buffer.putLong(offset + R_SEQ, seq);
+        buffer.putInt(offset + R_CRC, checksum(offset));
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force(offset, RECORD_SIZE);
+        }
+        nextSeq = seq + 1;
+        lastSeq = seq;
+        if (orderId != null) {
+            undrainedOrders.put(orderId, seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Reads a journaled, not yet reused record back into a new (unsaved) Trade
+     */
+    public Trade read(long seq) {
+        int offset = offset(seq);
+        if (buffer.getLong(offset + R_SEQ) != seq) {
+            throw new IllegalStateException("Journal slot for sequence " + seq + " has been reused");
+        }
+        Trade trade = new Trade();
+        trade.setClientId(getAscii(offset + R_CLIENT_ID, buffer.get(offset + R_CLIENT_ID_LENGTH)));
+        trade.setSymbol(getAscii(offset + R_SYMBOL, buffer.get(offset + R_SYMBOL_LENGTH)));
+        int orderIdLength = buffer.get(offset + R_ORDER_ID_LENGTH);
+        trade.setOrderId(orderIdLength == 0 ? null : getAscii(offset + R_ORDER_ID, orderIdLength));
+        trade.setQuantity(buffer.getInt(offset + R_QUANTITY));
+        trade.setPrice(BigDecimal.valueOf(buffer.getLong(offset + R_PRICE_UNSCALED), buffer.get(offset + R_PRICE_SCALE)));
+        trade.setMarginRequiredCents(buffer.getLong(offset + R_MARGIN_CENTS));
+        trade.setStatus(STATUSES[buffer.get(offset + R_STATUS)]);
+        trade.setCreatedAt(fromEpochNanos(buffer.getLong(offset + R_CREATED_AT)));
+        return trade;
+    }
+
+    /**
+     * Visits the balance of every record after {@code afterSeq}, in sequence order.
+     * Records appended without a balance, and discarded records, are skipped.
+     * @throws IllegalStateException if a record after {@code afterSeq} has already been reused
+     */
+    public void forEachBalance(long afterSeq, BalanceVisitor visitor) {
+        long last = lastSeq;
+        for (long seq = afterSeq + 1; seq <= last; seq++) {
+            int offset = offset(seq);
+            if (buffer.getLong(offset + R_SEQ) != seq || buffer.getInt(offset + R_CRC) != checksum(offset)) {
+                throw new IllegalStateException("Journal no longer holds sequence " + seq + " needed for replay");
+            }
+            long version = buffer.getLong(offset + R_ACCOUNT_VERSION);
+            if (version != 0 && buffer.get(offset + R_DISCARDED) == 0) {
+                visitor.visit(getAscii(offset + R_CLIENT_ID, buffer.get(offset + R_CLIENT_ID_LENGTH)),
+                        buffer.getLong(offset + R_BALANCE_AFTER_CENTS), version);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface BalanceVisitor {
+        void visit(String clientId, long balanceCents, long accountVersion);
+    }
+
+    /**
+     * Records that every sequence up to {@code seq} is in the database, freeing their slots
+     */
+    public synchronized void markDrained(long seq) {
+        if (seq <= drainedSeq) {
+            return;
+        }
+        for (long drained = drainedSeq + 1; drained <= seq; drained++) {
+            unindexOrder(drained, offset(drained));
+        }
+        buffer.putLong(H_DRAINED_SEQ, seq);
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            buffer.force(0, HEADER_SIZE);
+        }
+        drainedSeq = seq;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until everything appended so far has been drained
+     */
+    public synchronized void awaitDrained() {
+        long target = lastSeq;
+        while (drainedSeq < target) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces every appended record to disk regardless of the fsync policy
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public long getDrainedSeq() {
+        return drainedSeq;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fsyncScheduler != null) {
+            fsyncScheduler.shutdown();
+        }
+        buffer.force();
+        channel.close();
+    }
+
+    private boolean hasFreeSlots(int records) {
+        return nextSeq + records - 1 - Math.min(drainedSeq, retainedSeq) <= capacity;
+    }
+
+    private void awaitFreeSlots(int records) {
+        while (!hasFreeSlots(records)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for journal space", e);
+            }
+        }
+    }
+
+    private void recover() {
+        int version = buffer.getInt(H_VERSION);
+        if (buffer.getInt(H_MAGIC) != MAGIC || version < 1 || version > FORMAT_VERSION
+                || buffer.getInt(H_RECORD_SIZE) != RECORD_SIZE) {
+            throw new IllegalStateException("Not a trade journal (or unsupported format): " + path);
+        }
+        buffer.putInt(H_VERSION, FORMAT_VERSION);
+        long drained = buffer.getLong(H_DRAINED_SEQ);
+        long last = drained;
+        // Undrained records are contiguous after the drained sequence; stop at the first gap or torn record
+        for (long seq = drained + 1; seq <= drained + capacity; seq++) {
+            int offset = offset(seq);
+            if (buffer.getLong(offset + R_SEQ) != seq || buffer.getInt(offset + R_CRC) != checksum(offset)) {
+                break;
+            }
+            last = seq;
+            int orderIdLength = buffer.get(offset + R_ORDER_ID_LENGTH);
+            if (orderIdLength > 0 && buffer.get(offset + R_DISCARDED) == 0) {
+                undrainedOrders.put(getAscii(offset + R_ORDER_ID, orderIdLength), seq);
+            }
+        }
+        drainedSeq = drained;
+        lastSeq = last;
+        nextSeq = last + 1;
+        if (last > drained) {
+            log.info("Recovered {} undrained trades from journal {} (sequences {}..{})", last - drained, path, drained + 1, last);
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, FORMAT_VERSION);
+        buffer.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        buffer.putLong(H_CAPACITY, capacity);
+        buffer.putLong(H_DRAINED_SEQ, 0L);
+        buffer.force(0, HEADER_SIZE);
+        drainedSeq = 0L;
+        lastSeq = 0L;
+        nextSeq = 1L;
+    }
+
+    private static long readCapacity(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(H_DRAINED_SEQ);
+        channel.read(header, 0);
+        return header.getLong(H_CAPACITY);
+    }
+
+    private void unindexOrder(long seq, int offset) {
+        int orderIdLength = buffer.get(offset + R_ORDER_ID_LENGTH);
+        if (orderIdLength > 0) {
+            undrainedOrders.remove(getAscii(offset + R_ORDER_ID, orderIdLength), seq);
+        }
+    }
+
+    private int offset(long seq) {
+        return (int) (HEADER_SIZE + ((seq - 1) % capacity) * RECORD_SIZE);
+    }
+
+    private int checksum(int offset) {
+        synchronized (crc) {
+            crc.reset();
+            crcView.limit(offset + R_CRC).position(offset);
+            crc.update(crcView);
+            return (int) crc.getValue();
+        }
+    }
+
+    private void putAscii(int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put(offset + i, (byte) value.charAt(i));
+        }
+    }
+
+    private String getAscii(int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get(offset + i);
+        }
+        return new String(chars);
+    }
+
+    private static void checkAscii(String value, int maxLength, String field) {
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(field + " longer than " + maxLength + " characters cannot be journaled: " + value);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) {
+                throw new IllegalArgumentException(field + " must be ASCII to be journaled: " + value);
+            }
+        }
+    }
+
+    private static long toEpochNanos(LocalDateTime time) {
+        return Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), time.getNano());
+    }
+
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,138 @@
+package com.margin.clearing.journal;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.TradeOutcomeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Background thread that bulk-loads journaled trades into the trades table.
+ * Each batch is saved in one transaction and only then marked drained, so delivery is
+ * at-least-once: a crash between commit and checkpoint re-inserts that batch on restart.
+ * Trades whose orderId is already in the trades table, or earlier in the batch, are skipped rather than
+ * failing the batch on uk_trades_order_id; only trades without an orderId can be inserted twice.
+ */
+public class TradeJournalDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeJournalDrainer.class);
+
+    private final TradeJournal journal;
+    private final TradeRepository tradeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final List<TradeOutcomeListener> outcomeListeners;
+    private final int batchSize;
+    private final long idleSleepMs;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public TradeJournalDrainer(TradeJournal journal, TradeRepository tradeRepository,
+                               TransactionTemplate transactionTemplate, List<TradeOutcomeListener> outcomeListeners,
+                               int batchSize, long idleSleepMs) {
+        this.journal = journal;
+        this.tradeRepository = tradeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.outcomeListeners = outcomeListeners;
+        this.batchSize = batchSize;
+        this.idleSleepMs = idleSleepMs;
+        this.drainer = new Thread(this::run, "trade-journal-drainer");
+        this.drainer.setDaemon(true);
+    }
+
+    public void start() {
+        drainer.start();
+    }
+
+    /**
+     * Drains what is left and stops the drainer thread
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        drainer.join();
+        while (drainOnce() > 0) {
+            // keep draining until the journal is empty
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (drainOnce() == 0) {
+                    Thread.sleep(idleSleepMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to drain trade journal: {}", e.getMessage());
+                try {
+                    Thread.sleep(idleSleepMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the next batch of undrained records; returns how many records were drained
+     * Stops before records whose transaction hasn't finished, and skips records discarded after a rollback.
+     */
+    int drainOnce() {
+        long from = journal.getDrainedSeq() + 1;
+        long to = Math.min(journal.getSnapshotHorizon(), from + batchSize - 1);
+        if (to < from) {
+            return 0;
+        }
+        List<Trade> trades = new ArrayList<>((int) (to - from + 1));
+        Set<String> orderIds = new HashSet<>();
+        int duplicates = 0;
+        for (long seq = from; seq <= to; seq++) {
+            if (journal.isDiscarded(seq)) {
+                continue;
+            }
+            Trade trade = journal.read(seq);
+            if (trade.getOrderId() != null && !orderIds.add(trade.getOrderId())) {
+                duplicates++;
+                continue;
+            }
+            trades.add(trade);
+        }
+        List<Trade> saved = trades.isEmpty() ? List.of() : transactionTemplate.execute(status ->
+                tradeRepository.saveAll(orderIds.isEmpty() ? trades : withoutSavedOrders(trades, orderIds)));
+        duplicates += trades.size() - saved.size();
+        if (duplicates > 0) {
+            log.warn("Skipped {} journaled trades whose orderId was already saved (sequences {}..{})", duplicates, from, to);
+        }
+        journal.markDrained(to);
+        if (!saved.isEmpty()) {
+            notifyPersisted(saved);
+        }
+        return (int) (to - from + 1);
+    }
+
+    private void notifyPersisted(List<Trade> saved) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onTradesPersisted(saved);
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private List<Trade> withoutSavedOrders(List<Trade> trades, Set<String> orderIds) {
+        Set<String> saved = new HashSet<>(tradeRepository.findOrderIdsIn(orderIds));
+        if (saved.isEmpty()) {
+            return trades;
+        }
+        return trades.stream().filter(trade -> trade.getOrderId() == null || !saved.contains(trade.getOrderId())).toList();
+    }
+}
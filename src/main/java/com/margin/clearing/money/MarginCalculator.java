@@ -0,0 +1,59 @@
+package com.margin.clearing.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Allocation-free margin calculation on fixed-point longs.
+ * Formula: Margin = (Price × Quantity) × rate, rounded HALF_UP to cents,
+ * which gives exactly the same result as the BigDecimal formula.
+ */
+public final class MarginCalculator {
+
+    // price ticks (10^-4) × rate (10^-4) → cents (10^-2)
+    private static final long TICKS_RATE_TO_CENTS = 1_000_000L;
+
+    private final BigDecimal rate;
+    private final long rateTicks;
+
+    /**
+     * @param rate margin rate with at most 4 decimals, e.g. 0.10
+     */
+    public MarginCalculator(BigDecimal rate) {
+        this.rate = rate;
+        this.rateTicks = Money.toPriceTicks(rate);
+    }
+
+    public BigDecimal getRate() {
+        return rate;
+    }
+
+    /**
+     * Margin in cents for a price in ticks
+     * @throws ArithmeticException if the intermediate product overflows a long
+     */
+    public long marginCents(long priceTicks, int quantity) {
+        long scaled = Math.multiplyExact(Math.multiplyExact(priceTicks, (long) quantity), rateTicks);
+        return Money.divideHalfUp(scaled, TICKS_RATE_TO_CENTS);
+    }
+
+    /**
+     * Margin in cents for a boundary price.
+     * Uses the fixed-point path whenever the price fits in ticks and the product fits in a long,
+     * otherwise falls back to exact BigDecimal arithmetic.
+     */
+    public long marginCents(BigDecimal price, int quantity) {
+        if (price.scale() <= Money.PRICE_SCALE) {
+            try {
+                return marginCents(Money.toPriceTicks(price), quantity);
+            } catch (ArithmeticException overflow) {
+                // fall through to the exact path
+            }
+        }
+        return Money.toCents(exactMargin(price, quantity));
+    }
+
+    private BigDecimal exactMargin(BigDecimal price, int quantity) {
+        return price.multiply(BigDecimal.valueOf(quantity)).multiply(rate).setScale(Money.AMOUNT_SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,54 @@
+package com.margin.clearing.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money held in a plain long.
+ * Amounts (balances, margin) are scaled by 10^2 (cents), prices by 10^4 (ticks).
+ * All arithmetic is overflow-checked and throws ArithmeticException instead of wrapping.
+ * BigDecimal is only produced or consumed by the conversion methods.
+ */
+public final class Money {
+
+    public static final int AMOUNT_SCALE = 2;
+    public static final int PRICE_SCALE = 4;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding HALF_UP like the scale-2 DB columns
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a price to ticks; throws ArithmeticException if it has more than 4 decimals
+     */
+    public static long toPriceTicks(BigDecimal price) {
+        return price.setScale(PRICE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal centsToBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, AMOUNT_SCALE);
+    }
+
+    public static BigDecimal ticksToBigDecimal(long ticks) {
+        return BigDecimal.valueOf(ticks, PRICE_SCALE);
+    }
+
+    /**
+     * Divides by a positive divisor rounding HALF_UP (ties away from zero),
+     * matching BigDecimal's RoundingMode.HALF_UP
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
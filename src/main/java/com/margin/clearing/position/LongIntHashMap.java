@@ -0,0 +1,87 @@
+package com.margin.clearing.position;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long → int map with linear probing and no boxing
+ * Keys must be non-negative (-1 marks a free slot); there is no removal, which the position book never needs.
+ */
+class LongIntHashMap {
+
+    private static final long FREE = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    LongIntHashMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    /**
+     * Returns the value for {@code key}, or -1 if absent
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must be non-negative: " + key);
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            if (keys[i] == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size >= resizeAt) {
+                    rehash();
+                }
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
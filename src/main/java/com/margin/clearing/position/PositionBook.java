@@ -0,0 +1,270 @@
+package com.margin.clearing.position;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.service.TradeOutcomeListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Net position per (client, symbol), updated in O(1) from every cleared trade
+ * Clients and symbols are interned to int ids; a position is a slot in parallel primitive arrays, found through
+ * a long-keyed map of (clientId &lt;&lt; 32 | symbolId). Per-symbol open interest is kept alongside, so neither
+ * client nor symbol queries touch the trades table. Cost basis is held in price ticks × quantity.
+ */
+public class PositionBook implements TradeOutcomeListener {
+
+    private final SymbolTable clients = new SymbolTable();
+    private final SymbolTable symbols = new SymbolTable();
+    private final LongIntHashMap slotIndex;
+
+    // Per position slot
+    private int[] slotClient;
+    private int[] slotSymbol;
+    private long[] netQuantity;
+    private long[] costTicks;
+    private int slotCount;
+
+    // Per client id: slots of that client's positions
+    private int[][] clientSlots = new int[16][];
+    private int[] clientSlotCount = new int[16];
+
+    // Per symbol id
+    private long[] symbolOpenInterest = new long[16];
+    private long[] symbolNetQuantity = new long[16];
+    private long[] symbolCostTicks = new long[16];
+    private int[] symbolOpenPositions = new int[16];
+    private long[] symbolLastPriceTicks = new long[16];
+
+    public PositionBook(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("clearing.positions.initial-capacity must be positive");
+        }
+        slotIndex = new LongIntHashMap(initialCapacity);
+        slotClient = new int[initialCapacity];
+        slotSymbol = new int[initialCapacity];
+        netQuantity = new long[initialCapacity];
+        costTicks = new long[initialCapacity];
+    }
+
+    /**
+     * Applies a cleared trade at its price rounded HALF_UP to the trades.price column's scale,
+     * so the live book agrees with one replayed from the table
+     */
+    @Override
+    public void onTradeProcessed(Trade trade) {
+        if (trade.getStatus() == Trade.TradeStatus.CLEARED) {
+            long priceTicks = Money.toPriceTicks(trade.getPrice().setScale(Money.AMOUNT_SCALE, RoundingMode.HALF_UP));
+            apply(trade.getClientId(), trade.getSymbol(), trade.getQuantity(), priceTicks);
+        }
+    }
+
+    /**
+     * Adds a fill of {@code quantity} (negative for sells) at {@code priceTicks} to the client's position
+     * Adding to a position raises its cost at the fill price; reducing it keeps the average price;
+     * crossing through zero restarts the average at the fill price.
+     */
+    public synchronized void apply(String clientId, String symbol, long quantity, long priceTicks) {
+        if (quantity == 0) {
+            return;
+        }
+        int client = clients.intern(clientId);
+        int sym = symbols.intern(symbol);
+        int slot = slotOf(client, sym);
+
+        long oldNet = netQuantity[slot];
+        long oldCost = costTicks[slot];
+        long newNet = Math.addExact(oldNet, quantity);
+        long newCost;
+        if (oldNet == 0 || Long.signum(oldNet) == Long.signum(quantity)) {
+            newCost = Math.addExact(oldCost, Math.multiplyExact(Math.abs(quantity), priceTicks));
+        } else if (newNet == 0) {
+            newCost = 0;
+        } else if (Long.signum(newNet) == Long.signum(oldNet)) {
+            newCost = Math.multiplyExact(Money.divideHalfUp(oldCost, Math.abs(oldNet)), Math.abs(newNet));
+        } else {
+            newCost = Math.multiplyExact(Math.abs(newNet), priceTicks);
+        }
+        netQuantity[slot] = newNet;
+        costTicks[slot] = newCost;
+
+        symbolOpenInterest[sym] += Math.abs(newNet) - Math.abs(oldNet);
+        symbolNetQuantity[sym] += quantity;
+        symbolCostTicks[sym] += newCost - oldCost;
+        symbolOpenPositions[sym] += (newNet != 0 ? 1 : 0) - (oldNet != 0 ? 1 : 0);
+        symbolLastPriceTicks[sym] = priceTicks;
+    }
+
+    /**
+     * Open positions of a client, in the order the client first traded each symbol
+     */
+    public synchronized List<Position> positionsOf(String clientId) {
+        int client = clients.find(clientId);
+        if (client < 0) {
+            return List.of();
+        }
+        List<Position> positions = new ArrayList<>(clientSlotCount[client]);
+        for (int i = 0; i < clientSlotCount[client]; i++) {
+            int slot = clientSlots[client][i];
+            if (netQuantity[slot] != 0) {
+                positions.add(position(slot));
+            }
+        }
+        return positions;
+    }
+
+    public synchronized Optional<SymbolExposure> exposureOf(String symbol) {
+        int sym = symbols.find(symbol);
+        return sym < 0 ? Optional.empty() : Optional.of(exposure(sym));
+    }
+
+    /**
+     * Exposure of every symbol ever traded
+     */
+    public synchronized List<SymbolExposure> exposures() {
+        List<SymbolExposure> exposures = new ArrayList<>(symbols.size());
+        for (int sym = 0; sym < symbols.size(); sym++) {
+            exposures.add(exposure(sym));
+        }
+        return exposures;
+    }
+
+    /**
+     * Copies the book into a dense client × symbol layout for bulk revaluation
+     * Row {@code c} holds client c's quantity and cost basis for every symbol, zero where it has no position.
+     */
+    public synchronized Snapshot snapshot() {
+        int clientCount = clients.size();
+        int symbolCount = symbols.size();
+        String[] clientIds = new String[clientCount];
+        for (int c = 0; c < clientCount; c++) {
+            clientIds[c] = clients.name(c);
+        }
+        String[] symbolNames = new String[symbolCount];
+        for (int sym = 0; sym < symbolCount; sym++) {
+            symbolNames[sym] = symbols.name(sym);
+        }
+        long[] quantity = new long[Math.multiplyExact(clientCount, symbolCount)];
+        long[] cost = new long[quantity.length];
+        for (int slot = 0; slot < slotCount; slot++) {
+            int cell = slotClient[slot] * symbolCount + slotSymbol[slot];
+            quantity[cell] = netQuantity[slot];
+            cost[cell] = costTicks[slot];
+        }
+        return new Snapshot(clientIds, symbolNames, quantity, cost, Arrays.copyOf(symbolLastPriceTicks, symbolCount));
+    }
+
+    public synchronized int getPositionCount() {
+        return slotCount;
+    }
+
+    private int slotOf(int client, int sym) {
+        long key = ((long) client << 32) | sym;
+        int slot = slotIndex.get(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        slot = slotCount++;
+        if (slot == netQuantity.length) {
+            int capacity = slot << 1;
+            slotClient = Arrays.copyOf(slotClient, capacity);
+            slotSymbol = Arrays.copyOf(slotSymbol, capacity);
+            netQuantity = Arrays.copyOf(netQuantity, capacity);
+            costTicks = Arrays.copyOf(costTicks, capacity);
+        }
+        slotClient[slot] = client;
+        slotSymbol[slot] = sym;
+        slotIndex.put(key, slot);
+        addClientSlot(client, slot);
+        ensureSymbolCapacity(sym);
+        return slot;
+    }
+
+    private void addClientSlot(int client, int slot) {
+        if (client == clientSlots.length) {
+            clientSlots = Arrays.copyOf(clientSlots, client << 1);
+            clientSlotCount = Arrays.copyOf(clientSlotCount, client << 1);
+        }
+        int[] slots = clientSlots[client];
+        int count = clientSlotCount[client];
+        if (slots == null) {
+            slots = clientSlots[client] = new int[4];
+        } else if (count == slots.length) {
+            slots = clientSlots[client] = Arrays.copyOf(slots, count << 1);
+        }
+        slots[count] = slot;
+        clientSlotCount[client] = count + 1;
+    }
+
+    private void ensureSymbolCapacity(int sym) {
+        if (sym == symbolOpenInterest.length) {
+            int capacity = sym << 1;
+            symbolOpenInterest = Arrays.copyOf(symbolOpenInterest, capacity);
+            symbolNetQuantity = Arrays.copyOf(symbolNetQuantity, capacity);
+            symbolCostTicks = Arrays.copyOf(symbolCostTicks, capacity);
+            symbolOpenPositions = Arrays.copyOf(symbolOpenPositions, capacity);
+            symbolLastPriceTicks = Arrays.copyOf(symbolLastPriceTicks, capacity);
+        }
+    }
+
+    private Position position(int slot) {
+        long net = netQuantity[slot];
+        long cost = costTicks[slot];
+        return new Position(
+                clients.name(slotClient[slot]),
+                symbols.name(slotSymbol[slot]),
+                net,
+                Money.ticksToBigDecimal(Money.divideHalfUp(cost, Math.abs(net))),
+                ticksToAmount(Long.signum(net) * cost));
+    }
+
+    private SymbolExposure exposure(int sym) {
+        return new SymbolExposure(symbols.name(sym), symbolOpenInterest[sym], symbolNetQuantity[sym],
+                ticksToAmount(symbolCostTicks[sym]), symbolOpenPositions[sym]);
+    }
+
+    // ticks × quantity → cents
+    private static BigDecimal ticksToAmount(long ticks) {
+        return Money.centsToBigDecimal(Money.divideHalfUp(ticks, 100));
+    }
+
+    /**
+     * A client's net position in one symbol; notional is signed (negative when short) at the average price
+     */
+    public record Position(
+            String clientId,
+            String symbol,
+            long netQuantity,
+            BigDecimal averagePrice,
+            BigDecimal notional
+    ) {}
+
+    /**
+     * Struct-of-arrays copy of the book: quantity and costTicks are row-major [client × symbols.length + symbol],
+     * lastPriceTicks is the most recent fill price per symbol
+     */
+    public record Snapshot(
+            String[] clientIds,
+            String[] symbols,
+            long[] quantity,
+            long[] costTicks,
+            long[] lastPriceTicks
+    ) {}
+
+    /**
+     * All clients' positions in one symbol: open interest is the sum of |net quantity|,
+     * gross notional the sum of position cost bases
+     */
+    public record SymbolExposure(
+            String symbol,
+            long openInterest,
+            long netQuantity,
+            BigDecimal grossNotional,
+            int openPositions
+    ) {}
+}
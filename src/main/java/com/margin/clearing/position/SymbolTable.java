@@ -0,0 +1,46 @@
+package com.margin.clearing.position;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns strings (symbols, client ids) to dense int ids 0, 1, 2, ... so they can index arrays
+ * Not thread-safe; guarded by its owner.
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Returns the id of {@code name}, assigning the next id on first sight
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int next = names.size();
+        ids.put(name, next);
+        names.add(name);
+        return next;
+    }
+
+    /**
+     * Returns the id of {@code name}, or -1 if it was never interned
+     */
+    public int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
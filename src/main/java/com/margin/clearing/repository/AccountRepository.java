@@ -3,11 +3,13 @@ package com.margin.clearing.repository;
 import com.margin.clearing.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +20,13 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.clientId = :clientId")
     Optional<Account> findByClientIdWithLock(@Param("clientId") String clientId);
+
+    /**
+     * Writes a balance computed by an in-memory ledger together with the version it assigned,
+     * so versions in the database match those journaled and published for the account
+     */
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance, a.version = :version WHERE a.clientId = :clientId")
+    int updateBalanceAndVersion(@Param("clientId") String clientId, @Param("balance") BigDecimal balance,
+                                @Param("version") long version);
 }
@@ -0,0 +1,13 @@
+package com.margin.clearing.repository;
+
+import com.margin.clearing.entity.SettlementRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SettlementRecordRepository extends JpaRepository<SettlementRecord, Long> {
+    
+    List<SettlementRecord> findByRunIdAndClientId(Long runId, String clientId);
+}
@@ -0,0 +1,13 @@
+package com.margin.clearing.repository;
+
+import com.margin.clearing.entity.SettlementRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SettlementRunRepository extends JpaRepository<SettlementRun, Long> {
+    
+    Optional<SettlementRun> findFirstByOrderByIdDesc();
+}
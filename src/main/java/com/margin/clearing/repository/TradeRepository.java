@@ -1,17 +1,62 @@
 package com.margin.clearing.repository;
 
 import com.margin.clearing.entity.Trade;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface TradeRepository extends JpaRepository<Trade, Long> {
     
-    @Query(value = "SELECT * FROM trades ORDER BY created_at DESC LIMIT 20", nativeQuery = true)
-    List<Trade> findLast20Trades();
+    /**
+     * Trade submitted with this idempotency key, through the uk_trades_order_id index
+     */
+    Optional<Trade> findByOrderId(String orderId);
+    
+    /**
+     * Which of these idempotency keys are already taken
+     */
+    @Query("SELECT t.orderId FROM Trade t WHERE t.orderId IN :orderIds")
+    List<String> findOrderIdsIn(@Param("orderIds") Collection<String> orderIds);
+    
+    /**
+     * Newest trades of a client, read in order from idx_trades_client_created_id
+     * clientId leads the ORDER BY (a no-op under the equality filter) so H2 matches the sort to the index
+     * and stops after {@code limit} rows instead of sorting every trade of the client
+     */
+    @Query("SELECT t FROM Trade t WHERE t.clientId = :clientId ORDER BY t.clientId, t.createdAt DESC, t.id DESC")
+    List<Trade> findLatestByClientId(@Param("clientId") String clientId, Limit limit);
+    
+    /**
+     * Keyset page: trades strictly older than (createdAt, id) in (createdAt DESC, id DESC) order
+     * The createdAt <= bound lets the index seek straight to the cursor, so deep pages cost the same as the first
+     */
+    @Query("SELECT t FROM Trade t WHERE t.clientId = :clientId AND t.createdAt <= :createdAt"
+            + " AND (t.createdAt < :createdAt OR t.id < :id) ORDER BY t.clientId, t.createdAt DESC, t.id DESC")
+    List<Trade> findByClientIdBefore(@Param("clientId") String clientId, @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id, Limit limit);
+    
+    /**
+     * Streams trades of one status not settled yet with id &lt;= upToId, in id order, fetching 1000 rows per round trip
+     * Must be consumed inside a transaction; callers detach each trade so the persistence context stays empty
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT t FROM Trade t WHERE t.settlementRunId IS NULL AND t.status = :status AND t.id <= :upToId ORDER BY t.id")
+    Stream<Trade> streamUnsettled(@Param("status") Trade.TradeStatus status, @Param("upToId") Long upToId);
     
-    List<Trade> findByClientIdOrderByCreatedAtDesc(String clientId);
+    @Query("SELECT MAX(t.id) FROM Trade t WHERE t.status = :status")
+    Optional<Long> findMaxIdByStatus(@Param("status") Trade.TradeStatus status);
 }
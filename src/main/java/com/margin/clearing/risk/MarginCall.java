@@ -0,0 +1,16 @@
+package com.margin.clearing.risk;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Raised when an account's equity (cash balance + unrealized P&amp;L at the marks) falls below its
+ * maintenance requirement; shortfall is the amount needed to restore it
+ */
+public record MarginCall(
+        String clientId,
+        BigDecimal equity,
+        BigDecimal requirement,
+        BigDecimal shortfall,
+        Instant pricesAsOf
+) {}
@@ -0,0 +1,10 @@
+package com.margin.clearing.risk;
+
+/**
+ * Receives margin calls from each revaluation run
+ * Called on the revaluation thread once the run is complete, so implementations must be cheap
+ */
+public interface MarginCallListener {
+
+    void onMarginCall(MarginCall call);
+}
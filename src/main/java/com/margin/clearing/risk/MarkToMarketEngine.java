@@ -0,0 +1,131 @@
+package com.margin.clearing.risk;
+
+import com.margin.clearing.money.Money;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Revalues every account against a vector of marks with fork/join over struct-of-arrays inputs
+ * Account a's positions are the row [a × symbolCount, (a + 1) × symbolCount) of the quantity and cost arrays,
+ * so each leaf task streams through contiguous memory with no per-account objects.
+ * Equity = cash balance + unrealized P&amp;L; requirement = maintenance rate × gross market value.
+ */
+public class MarkToMarketEngine {
+
+    // price ticks (10^-4) × rate (10^-4) → cents (10^-2)
+    private static final long TICKS_RATE_TO_CENTS = 1_000_000L;
+    // price ticks (10^-4) → cents (10^-2)
+    private static final long TICKS_TO_CENTS = 100L;
+
+    private final ForkJoinPool pool;
+    private final long maintenanceRateTicks;
+    private final int leafSize;
+
+    /**
+     * @param leafSize accounts revalued sequentially by one task
+     */
+    public MarkToMarketEngine(ForkJoinPool pool, BigDecimal maintenanceRate, int leafSize) {
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("leafSize must be positive");
+        }
+        this.pool = pool;
+        this.maintenanceRateTicks = Money.toPriceTicks(maintenanceRate);
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Revalues all accounts; markTicks[s] is the price of symbol s
+     * Values are exact for quantities × prices up to ~10^14 ticks per account row
+     */
+    public Revaluation revalue(long[] balanceCents, long[] quantity, long[] costTicks, long[] markTicks) {
+        int accounts = balanceCents.length;
+        int symbols = markTicks.length;
+        if (quantity.length != (long) accounts * symbols || costTicks.length != quantity.length) {
+            throw new IllegalArgumentException("Position arrays must be accounts × symbols long");
+        }
+        long start = System.nanoTime();
+        long[] equityCents = new long[accounts];
+        long[] requirementCents = new long[accounts];
+        pool.invoke(new Slice(balanceCents, quantity, costTicks, markTicks, equityCents, requirementCents, 0, accounts));
+
+        int[] calls = new int[16];
+        int callCount = 0;
+        for (int a = 0; a < accounts; a++) {
+            if (equityCents[a] < requirementCents[a]) {
+                if (callCount == calls.length) {
+                    calls = Arrays.copyOf(calls, callCount << 1);
+                }
+                calls[callCount++] = a;
+            }
+        }
+        return new Revaluation(equityCents, requirementCents, Arrays.copyOf(calls, callCount), System.nanoTime() - start);
+    }
+
+    private final class Slice extends RecursiveAction {
+        private final long[] balanceCents;
+        private final long[] quantity;
+        private final long[] costTicks;
+        private final long[] markTicks;
+        private final long[] equityCents;
+        private final long[] requirementCents;
+        private final int from;
+        private final int to;
+
+        Slice(long[] balanceCents, long[] quantity, long[] costTicks, long[] markTicks,
+              long[] equityCents, long[] requirementCents, int from, int to) {
+            this.balanceCents = balanceCents;
+            this.quantity = quantity;
+            this.costTicks = costTicks;
+            this.markTicks = markTicks;
+            this.equityCents = equityCents;
+            this.requirementCents = requirementCents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                revalueRange();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(balanceCents, quantity, costTicks, markTicks, equityCents, requirementCents, from, mid),
+                    new Slice(balanceCents, quantity, costTicks, markTicks, equityCents, requirementCents, mid, to));
+        }
+
+        private void revalueRange() {
+            int symbols = markTicks.length;
+            for (int a = from; a < to; a++) {
+                int row = a * symbols;
+                long pnlTicks = 0;
+                long grossTicks = 0;
+                for (int s = 0; s < symbols; s++) {
+                    long q = quantity[row + s];
+                    if (q == 0) {
+                        continue;
+                    }
+                    long value = q * markTicks[s];
+                    long cost = costTicks[row + s];
+                    pnlTicks += q > 0 ? value - cost : value + cost;
+                    grossTicks += Math.abs(value);
+                }
+                equityCents[a] = balanceCents[a] + Money.divideHalfUp(pnlTicks, TICKS_TO_CENTS);
+                requirementCents[a] = Money.divideHalfUp(grossTicks * maintenanceRateTicks, TICKS_RATE_TO_CENTS);
+            }
+        }
+    }
+
+    /**
+     * Per-account equity and requirement in cents, and the indexes of accounts below their requirement
+     */
+    public record Revaluation(
+            long[] equityCents,
+            long[] requirementCents,
+            int[] marginCallAccounts,
+            long elapsedNanos
+    ) {}
+}
@@ -0,0 +1,74 @@
+package com.margin.clearing.risk;
+
+import com.margin.clearing.money.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of mark prices, in ticks, taken at one instant
+ */
+public record PriceSnapshot(Map<String, Long> ticksBySymbol, Instant asOf) {
+
+    public PriceSnapshot {
+        ticksBySymbol = Map.copyOf(ticksBySymbol);
+    }
+
+    public static PriceSnapshot empty() {
+        return new PriceSnapshot(Map.of(), Instant.EPOCH);
+    }
+
+    public static PriceSnapshot of(Map<String, BigDecimal> prices) {
+        Map<String, Long> ticks = new HashMap<>();
+        prices.forEach((symbol, price) -> ticks.put(symbol, toMarkTicks(symbol, price)));
+        return new PriceSnapshot(ticks, Instant.now());
+    }
+
+    /**
+     * Reads "symbol,price" lines; blank lines and a "symbol,price" header are skipped
+     */
+    public static PriceSnapshot fromCsv(Reader csv) throws IOException {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comma = line.indexOf(',');
+            if (line.isBlank() || line.substring(comma + 1).trim().equalsIgnoreCase("price")) {
+                continue;
+            }
+            if (comma <= 0) {
+                throw new IllegalArgumentException("Expected symbol,price but got: " + line);
+            }
+            prices.put(line.substring(0, comma).trim(), new BigDecimal(line.substring(comma + 1).trim()));
+        }
+        return of(prices);
+    }
+
+    /**
+     * Mark for the symbol, or {@code fallbackTicks} if the snapshot has none
+     */
+    public long ticksOr(String symbol, long fallbackTicks) {
+        return ticksBySymbol.getOrDefault(symbol, fallbackTicks);
+    }
+
+    /**
+     * A copy with the given prices replacing (or adding to) these ones
+     */
+    public PriceSnapshot merge(PriceSnapshot update) {
+        Map<String, Long> merged = new HashMap<>(ticksBySymbol);
+        merged.putAll(update.ticksBySymbol());
+        return new PriceSnapshot(merged, update.asOf());
+    }
+
+    private static long toMarkTicks(String symbol, BigDecimal price) {
+        if (price == null || price.signum() <= 0) {
+            throw new IllegalArgumentException("Price for " + symbol + " must be positive");
+        }
+        return Money.toPriceTicks(price);
+    }
+}
@@ -0,0 +1,31 @@
+package com.margin.clearing.risk;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Local stand-in for a market data feed: each tick moves every price by a normally distributed
+ * relative step of {@code volatility} (e.g. 0.01 = 1%), never below one tick
+ */
+public class RandomWalkPriceFeed {
+
+    private final double volatility;
+    private final RandomGenerator random;
+
+    public RandomWalkPriceFeed(double volatility, RandomGenerator random) {
+        if (volatility < 0) {
+            throw new IllegalArgumentException("clearing.revaluation.feed-volatility must not be negative");
+        }
+        this.volatility = volatility;
+        this.random = random;
+    }
+
+    public PriceSnapshot next(PriceSnapshot previous) {
+        Map<String, Long> next = new HashMap<>();
+        previous.ticksBySymbol().forEach((symbol, ticks) ->
+                next.put(symbol, Math.max(1, Math.round(ticks * (1 + volatility * random.nextGaussian())))));
+        return new PriceSnapshot(next, Instant.now());
+    }
+}
@@ -0,0 +1,217 @@
+package com.margin.clearing.risk;
+
+import com.margin.clearing.money.Money;
+import com.margin.clearing.position.PositionBook;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Periodic mark-to-market of every position in the position book
+ * Holds the current price snapshot (seeded from clearing.revaluation.prices-file, replaced through the API,
+ * or advanced by the random-walk feed when clearing.revaluation.interval-ms &gt; 0). A symbol without a mark is
+ * valued at its last fill price. Each run hands its margin calls to every MarginCallListener.
+ */
+@Service
+public class RevaluationService {
+
+    private static final Logger log = LoggerFactory.getLogger(RevaluationService.class);
+    private static final String BALANCES_SQL = "SELECT client_id, balance FROM accounts";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final PositionBook positionBook;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<MarginCallListener> listeners;
+    private final MarkToMarketEngine engine;
+    private final RandomWalkPriceFeed feed;
+    private final int maxReportedCalls;
+    private final AtomicReference<PriceSnapshot> prices = new AtomicReference<>(PriceSnapshot.empty());
+    private final AtomicReference<RevaluationResult> latest = new AtomicReference<>();
+    private final Timer revaluationTimer;
+    private final Counter marginCallCounter;
+    private final ScheduledExecutorService scheduler;
+
+    public RevaluationService(PositionBook positionBook, JdbcTemplate jdbcTemplate,
+                              List<MarginCallListener> listeners, MeterRegistry meterRegistry,
+                              @Value("${clearing.revaluation.maintenance-rate:0.10}") BigDecimal maintenanceRate,
+                              @Value("${clearing.revaluation.parallelism:0}") int parallelism,
+                              @Value("${clearing.revaluation.leaf-size:4096}") int leafSize,
+                              @Value("${clearing.revaluation.max-reported-calls:100}") int maxReportedCalls,
+                              @Value("${clearing.revaluation.prices-file:}") String pricesFile,
+                              @Value("${clearing.revaluation.feed-volatility:0.01}") double feedVolatility,
+                              @Value("${clearing.revaluation.interval-ms:0}") long intervalMs) throws IOException {
+        this.positionBook = positionBook;
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeners = listeners;
+        this.engine = new MarkToMarketEngine(parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool(),
+                maintenanceRate, leafSize);
+        this.feed = new RandomWalkPriceFeed(feedVolatility, new SplittableRandom());
+        this.maxReportedCalls = maxReportedCalls;
+        this.revaluationTimer = Timer.builder("clearing.revaluation")
+                .description("Full mark-to-market run, including the position book snapshot")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        this.marginCallCounter = Counter.builder("clearing.margin_calls")
+                .description("Margin calls raised by revaluation runs")
+                .register(meterRegistry);
+        if (!pricesFile.isBlank()) {
+            try (Reader reader = Files.newBufferedReader(Path.of(pricesFile))) {
+                prices.set(PriceSnapshot.fromCsv(reader));
+            }
+            log.info("Loaded {} mark prices from {}", prices.get().ticksBySymbol().size(), pricesFile);
+        }
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("revaluation").daemon().factory());
+            scheduler.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Merges the given marks into the current snapshot and revalues
+     */
+    public RevaluationResult updatePricesAndRevalue(Map<String, BigDecimal> update) {
+        prices.updateAndGet(current -> current.merge(PriceSnapshot.of(update)));
+        return revalue();
+    }
+
+    /**
+     * Revalues every account against the current snapshot
+     */
+    public synchronized RevaluationResult revalue() {
+        long start = System.nanoTime();
+        PriceSnapshot marks = prices.get();
+        PositionBook.Snapshot book = positionBook.snapshot();
+        long[] markTicks = new long[book.symbols().length];
+        for (int s = 0; s < markTicks.length; s++) {
+            markTicks[s] = marks.ticksOr(book.symbols()[s], book.lastPriceTicks()[s]);
+        }
+        long[] balanceCents = balancesOf(book.clientIds());
+
+        MarkToMarketEngine.Revaluation revaluation = engine.revalue(balanceCents, book.quantity(), book.costTicks(), markTicks);
+
+        int[] callAccounts = revaluation.marginCallAccounts();
+        Instant asOf = marks.asOf();
+        List<MarginCall> reported = new ArrayList<>(Math.min(callAccounts.length, maxReportedCalls));
+        for (int a : callAccounts) {
+            long equity = revaluation.equityCents()[a];
+            long requirement = revaluation.requirementCents()[a];
+            MarginCall call = new MarginCall(book.clientIds()[a], Money.centsToBigDecimal(equity),
+                    Money.centsToBigDecimal(requirement), Money.centsToBigDecimal(requirement - equity), asOf);
+            notifyListeners(call);
+            if (reported.size() < maxReportedCalls) {
+                reported.add(call);
+            }
+        }
+        marginCallCounter.increment(callAccounts.length);
+        revaluationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        RevaluationResult result = new RevaluationResult(asOf, book.clientIds().length, markTicks.length,
+                revaluation.elapsedNanos() / 1_000_000.0, callAccounts.length, reported);
+        latest.set(result);
+        log.info("Revalued {} accounts × {} symbols in {}ms: {} margin calls", result.accounts(), result.symbols(),
+                String.format("%.1f", result.engineMs()), result.marginCallCount());
+        return result;
+    }
+
+    public RevaluationResult getLatest() {
+        return latest.get();
+    }
+
+    public PriceSnapshot getPrices() {
+        return prices.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        try {
+            // Seed the walk from last fills the first time, so the feed covers every traded symbol
+            PositionBook.Snapshot book = positionBook.snapshot();
+            PriceSnapshot current = prices.get();
+            Map<String, Long> seeded = new HashMap<>(current.ticksBySymbol());
+            for (int s = 0; s < book.symbols().length; s++) {
+                seeded.putIfAbsent(book.symbols()[s], book.lastPriceTicks()[s]);
+            }
+            prices.set(feed.next(new PriceSnapshot(seeded, current.asOf())));
+            revalue();
+        } catch (RuntimeException e) {
+            log.error("Scheduled revaluation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Balances in cents aligned with {@code clientIds}, streamed straight from the accounts table
+     * Accounts without positions are skipped as they are read; a client with no account row counts as 0.
+     */
+    private long[] balancesOf(String[] clientIds) {
+        Map<String, Integer> index = HashMap.newHashMap(clientIds.length);
+        for (int a = 0; a < clientIds.length; a++) {
+            index.put(clientIds[a], a);
+        }
+        long[] balances = new long[clientIds.length];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(BALANCES_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            Integer a = index.get(rs.getString(1));
+            if (a != null) {
+                balances[a] = Money.toCents(rs.getBigDecimal(2));
+            }
+        });
+        return balances;
+    }
+
+    private void notifyListeners(MarginCall call) {
+        for (MarginCallListener listener : listeners) {
+            try {
+                listener.onMarginCall(call);
+            } catch (RuntimeException e) {
+                log.error("Margin call listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Summary of one run; marginCalls lists at most clearing.revaluation.max-reported-calls of them
+     */
+    public record RevaluationResult(
+            Instant pricesAsOf,
+            int accounts,
+            int symbols,
+            double engineMs,
+            int marginCallCount,
+            List<MarginCall> marginCalls
+    ) {}
+}
@@ -0,0 +1,43 @@
+package com.margin.clearing.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Accounts that recently lost optimistic updates, cleared with row locks until the window expires
+ * Entries are removed lazily when looked up after expiry, so only contended accounts are ever held.
+ */
+class AccountContentionTracker {
+
+    private final long windowNanos;
+    private final ConcurrentMap<String, Long> contendedUntil = new ConcurrentHashMap<>();
+
+    AccountContentionTracker(long windowMs) {
+        if (windowMs < 0) {
+            throw new IllegalArgumentException("clearing.optimistic.fallback-ms must not be negative");
+        }
+        this.windowNanos = windowMs * 1_000_000;
+    }
+
+    void markContended(String clientId) {
+        if (windowNanos > 0) {
+            contendedUntil.put(clientId, System.nanoTime() + windowNanos);
+        }
+    }
+
+    boolean isContended(String clientId) {
+        Long until = contendedUntil.get(clientId);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        contendedUntil.remove(clientId, until);
+        return false;
+    }
+
+    int size() {
+        return contendedUntil.size();
+    }
+}
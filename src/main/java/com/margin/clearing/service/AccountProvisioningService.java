@@ -0,0 +1,288 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.money.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Inserts accounts in large JDBC batches, streaming the input so memory stays constant regardless of input size
+ * Ids come from accounts_seq in blocks of 50, the same blocks Hibernate's pooled optimizer uses,
+ * so accounts created later through JPA never collide with provisioned ones.
+ */
+@Service
+public class AccountProvisioningService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AccountProvisioningService.class);
+    private static final String INSERT_SQL = "INSERT INTO accounts (id, client_id, balance, version) VALUES (?, ?, ?, ?)";
+    private static final int ID_BLOCK_SIZE = 50; // allocationSize of accounts_seq on Account
+    private static final int MAX_CLIENT_ID_LENGTH = 255;
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final long PROGRESS_INTERVAL = 1_000_000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountSnapshotCache accountCache;
+    private final int batchSize;
+    
+    public AccountProvisioningService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      AccountSnapshotCache accountCache,
+                                      @Value("${clearing.provisioning.batch-size:5000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountCache = accountCache;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Provisions accounts from CSV lines of "clientId,balance" (an optional header line is skipped)
+     * Malformed lines are rejected and reported; a database error (e.g. a duplicate clientId) stops
+     * the run, keeping the batches committed before it.
+     */
+    public ProvisioningResult provisionCsv(Reader csv) {
+        BufferedReader reader = csv instanceof BufferedReader buffered ? buffered : new BufferedReader(csv, 1 << 16);
+        Batch batch = new Batch(batchSize);
+        List<String> errors = new ArrayList<>();
+        long rejected = 0;
+        long lineNumber = 0;
+        long start = System.nanoTime();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && isHeader(line))) {
+                    continue;
+                }
+                String error = batch.addCsvLine(line);
+                if (error != null) {
+                    rejected++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("line " + lineNumber + ": " + error);
+                    }
+                    continue;
+                }
+                if (batch.isFull()) {
+                    flush(batch, start);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read account CSV", e);
+        }
+        flush(batch, start);
+        return finish(batch.inserted, rejected, errors, start);
+    }
+    
+    /**
+     * Provisions {@code count} synthetic accounts prefix + 001, 002, ... with the same balance (for capacity tests)
+     */
+    public ProvisioningResult provisionGenerated(String prefix, long count, BigDecimal balance) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        long balanceCents = Money.toCents(balance);
+        if (balanceCents < 0) {
+            throw new IllegalArgumentException("balance must not be negative");
+        }
+        Batch batch = new Batch(batchSize);
+        long start = System.nanoTime();
+        for (long i = 1; i <= count; i++) {
+            batch.add(prefix + String.format("%03d", i), balanceCents);
+            if (batch.isFull()) {
+                flush(batch, start);
+            }
+        }
+        flush(batch, start);
+        return finish(batch.inserted, 0, List.of(), start);
+    }
+    
+    /**
+     * Inserts accounts with a given balance and version, as produced by {@code rows} (used to restore snapshots)
+     */
+    public ProvisioningResult provisionRows(Consumer<AccountRowSink> rows) {
+        Batch batch = new Batch(batchSize);
+        long start = System.nanoTime();
+        rows.accept((clientId, balanceCents, version) -> {
+            batch.add(clientId, balanceCents, version);
+            if (batch.isFull()) {
+                flush(batch, start);
+            }
+        });
+        flush(batch, start);
+        return finish(batch.inserted, 0, List.of(), start);
+    }
+    
+    private static boolean isHeader(String line) {
+        int comma = line.indexOf(',');
+        return comma >= 0 && line.substring(comma + 1).trim().equalsIgnoreCase("balance");
+    }
+    
+    private void flush(Batch batch, long start) {
+        if (batch.size == 0) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batch.assignIds(this::nextIdBlock);
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+            });
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Provisioning stopped after " + batch.inserted + " accounts: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage(), e);
+        }
+        long before = batch.inserted;
+        batch.inserted += batch.size;
+        batch.size = 0;
+        if (batch.inserted / PROGRESS_INTERVAL > before / PROGRESS_INTERVAL) {
+            log.info("Provisioned {} accounts ({} rows/sec)", batch.inserted,
+                    String.format("%.0f", rowsPerSecond(batch.inserted, System.nanoTime() - start)));
+        }
+    }
+    
+    private ProvisioningResult finish(long inserted, long rejected, List<String> errors, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        // Only inserts: in-memory ledgers load new accounts on first sight, the account list needs a re-read
+        accountCache.invalidateDirectory();
+        ProvisioningResult result = new ProvisioningResult(inserted, rejected, elapsedNanos / 1_000_000,
+                rowsPerSecond(inserted, elapsedNanos), errors);
+        log.info("Provisioned {} accounts in {}ms ({} rows/sec), {} rejected", inserted, result.elapsedMs(),
+                String.format("%.0f", result.rowsPerSecond()), rejected);
+        return result;
+    }
+    
+    private static double rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+    
+    /**
+     * Reserves ids hi-49..hi, matching Hibernate's pooled optimizer for the same sequence
+     * The sequence's initial value 1 is skipped because Hibernate reads it as the start of its own first block.
+     */
+    private long nextIdBlock() {
+        long hi = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR accounts_seq", Long.class);
+        if (hi < ID_BLOCK_SIZE) {
+            hi = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR accounts_seq", Long.class);
+        }
+        return hi - ID_BLOCK_SIZE + 1;
+    }
+    
+    /**
+     * Reusable batch buffer of primitive columns, so a run allocates no per-row objects beyond the clientId
+     */
+    private static final class Batch implements BatchPreparedStatementSetter {
+        private final long[] ids;
+        private final String[] clientIds;
+        private final long[] balanceCents;
+        private final long[] versions;
+        private int size;
+        private long inserted;
+        
+        private Batch(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("batch size must be positive");
+            }
+            ids = new long[capacity];
+            clientIds = new String[capacity];
+            balanceCents = new long[capacity];
+            versions = new long[capacity];
+        }
+        
+        boolean isFull() {
+            return size == ids.length;
+        }
+        
+        void add(String clientId, long cents) {
+            add(clientId, cents, 0L);
+        }
+        
+        void add(String clientId, long cents, long version) {
+            clientIds[size] = clientId;
+            balanceCents[size] = cents;
+            versions[size] = version;
+            size++;
+        }
+        
+        /**
+         * Parses and buffers one CSV line; returns an error message instead if it is malformed
+         */
+        String addCsvLine(String line) {
+            int comma = line.indexOf(',');
+            if (comma < 0) {
+                return "expected clientId,balance";
+            }
+            String clientId = line.substring(0, comma).trim();
+            if (clientId.isEmpty() || clientId.length() > MAX_CLIENT_ID_LENGTH) {
+                return "clientId must be 1-" + MAX_CLIENT_ID_LENGTH + " characters";
+            }
+            long cents;
+            try {
+                cents = Money.toCents(new BigDecimal(line.substring(comma + 1).trim()));
+            } catch (NumberFormatException | ArithmeticException e) {
+                return "invalid balance";
+            }
+            if (cents < 0) {
+                return "balance must not be negative";
+            }
+            add(clientId, cents);
+            return null;
+        }
+        
+        void assignIds(LongSupplier nextBlockStart) {
+            for (int i = 0; i < size; i += ID_BLOCK_SIZE) {
+                long first = nextBlockStart.getAsLong();
+                for (int j = i; j < Math.min(size, i + ID_BLOCK_SIZE); j++) {
+                    ids[j] = first + (j - i);
+                }
+            }
+        }
+        
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setLong(1, ids[i]);
+            ps.setString(2, clientIds[i]);
+            ps.setBigDecimal(3, Money.centsToBigDecimal(balanceCents[i]));
+            ps.setLong(4, versions[i]);
+        }
+        
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+    }
+    
+    /**
+     * Receives one account row for {@link #provisionRows}
+     */
+    @FunctionalInterface
+    public interface AccountRowSink {
+        void add(String clientId, long balanceCents, long version);
+    }
+    
+    /**
+     * Outcome of a provisioning run; errors lists the first few rejected lines
+     */
+    public record ProvisioningResult(
+            long inserted,
+            long rejected,
+            long elapsedMs,
+            double rowsPerSecond,
+            List<String> errors
+    ) {}
+}
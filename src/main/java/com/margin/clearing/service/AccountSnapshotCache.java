@@ -0,0 +1,137 @@
+package com.margin.clearing.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.AccountRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache of account snapshots for the account endpoints, kept current by the clearing path.
+ * Every committed debit replaces the cached snapshot (newer version wins), so hot clients are served
+ * from memory without a query and without queueing behind the PESSIMISTIC_WRITE row locks.
+ * Staleness: a snapshot lags the database by at most the time between commit and listener callback,
+ * plus the write-behind delay in SHARDED mode. Changes made outside clearing are picked up by the
+ * background refresh within clearing.account-cache.refresh-ms, or immediately after a ledger reset.
+ */
+@Component
+public class AccountSnapshotCache implements TradeOutcomeListener {
+    
+    private final AccountRepository accountRepository;
+    private final LoadingCache<String, AccountSnapshot> cache;
+    private final long refreshNanos;
+    private volatile AccountDirectory directory;
+    
+    public AccountSnapshotCache(AccountRepository accountRepository, MeterRegistry meterRegistry,
+                                @Value("${clearing.account-cache.max-size:10000}") long maxSize,
+                                @Value("${clearing.account-cache.refresh-ms:5000}") long refreshMs) {
+        this.accountRepository = accountRepository;
+        this.refreshNanos = Duration.ofMillis(refreshMs).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofMillis(refreshMs))
+                .recordStats()
+                .build(new SnapshotLoader());
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size, ... tagged cache=accounts
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accounts");
+    }
+    
+    /**
+     * Snapshot of one account, loaded from the database on a miss
+     */
+    public Optional<AccountSnapshot> get(String clientId) {
+        return Optional.ofNullable(cache.get(clientId));
+    }
+    
+    /**
+     * Snapshots of every account; the account list is re-read at most once per refresh interval
+     * and each entry is replaced by its cached snapshot when that is newer
+     */
+    public List<AccountSnapshot> getAll() {
+        AccountDirectory current = directory;
+        if (current == null || System.nanoTime() - current.loadedAtNanos() > refreshNanos) {
+            List<AccountSnapshot> accounts = accountRepository.findAll().stream().map(AccountSnapshot::of).toList();
+            accounts.forEach(this::putIfNewer);
+            current = new AccountDirectory(accounts, System.nanoTime());
+            directory = current;
+        }
+        return current.accounts().stream()
+                .map(loaded -> {
+                    AccountSnapshot cached = cache.getIfPresent(loaded.clientId());
+                    return cached != null && cached.version() >= loaded.version() ? cached : loaded;
+                })
+                .toList();
+    }
+    
+    /**
+     * Updates only accounts already cached; anything else is loaded on its first read
+     */
+    @Override
+    public void onBalanceChanged(String clientId, long balanceCents, long version) {
+        cache.asMap().computeIfPresent(clientId, (key, cached) -> version > cached.version()
+                ? new AccountSnapshot(cached.id(), clientId, Money.centsToBigDecimal(balanceCents), version)
+                : cached);
+    }
+    
+    @Override
+    public void onLedgerReset() {
+        directory = null;
+        cache.invalidateAll();
+    }
+    
+    /**
+     * Makes the next getAll() re-read the account list, e.g. after accounts were inserted in bulk
+     * Cached snapshots stay: new accounts have none yet.
+     */
+    public void invalidateDirectory() {
+        directory = null;
+    }
+    
+    private void putIfNewer(AccountSnapshot snapshot) {
+        cache.asMap().merge(snapshot.clientId(), snapshot, AccountSnapshot::newer);
+    }
+    
+    /**
+     * Reloads never replace a snapshot with an older version (the database can lag in SHARDED mode)
+     */
+    private final class SnapshotLoader implements CacheLoader<String, AccountSnapshot> {
+        
+        @Override
+        public AccountSnapshot load(String clientId) {
+            return accountRepository.findByClientId(clientId).map(AccountSnapshot::of).orElse(null);
+        }
+        
+        @Override
+        public AccountSnapshot reload(String clientId, AccountSnapshot cached) {
+            AccountSnapshot loaded = load(clientId);
+            return loaded == null ? null : AccountSnapshot.newer(cached, loaded);
+        }
+    }
+    
+    /**
+     * Immutable account view served by the account endpoints (same JSON shape as Account)
+     */
+    public record AccountSnapshot(Long id, String clientId, BigDecimal balance, Long version) {
+        
+        static AccountSnapshot of(Account account) {
+            return new AccountSnapshot(account.getId(), account.getClientId(), account.getBalance(),
+                    account.getVersion() == null ? 0L : account.getVersion());
+        }
+        
+        static AccountSnapshot newer(AccountSnapshot a, AccountSnapshot b) {
+            return b.version() > a.version() ? b : a;
+        }
+    }
+    
+    private record AccountDirectory(List<AccountSnapshot> accounts, long loadedAtNanos) {}
+}
@@ -0,0 +1,134 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the clearing path
+ * clearing.stage{stage}: per-stage latency of the PESSIMISTIC path; clearing.process{mode}: end-to-end processTrade;
+ * clearing.trades{status}: CLEARED/REJECTED outcomes for every mode; clearing.optimistic.*: OPTIMISTIC mode retries
+ * and pessimistic fallbacks; clearing.group_commit.batch.size: trades per GROUP_COMMIT transaction.
+ * Timers publish percentile histograms.
+ */
+@Component
+public class ClearingMetrics implements TradeOutcomeListener {
+
+    /**
+     * Stages of a pessimistic clear, in order
+     */
+    public enum Stage {
+        /** findByClientIdWithLock, including time spent waiting for the row lock (unlocked read in OPTIMISTIC mode) */
+        LOCK,
+        /** Margin check and in-memory balance update */
+        VALIDATION,
+        /** Account UPDATE (flushed) */
+        ACCOUNT_SAVE,
+        /** Trade INSERT (flushed), or the journal append when the journal is enabled */
+        TRADE_SAVE,
+        /** Transaction commit */
+        COMMIT
+    }
+
+    private final Map<ClearingMode, Timer> processTimers = new EnumMap<>(ClearingMode.class);
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Trade.TradeStatus, Counter> outcomeCounters = new EnumMap<>(Trade.TradeStatus.class);
+    private final Counter optimisticRetries;
+    private final Counter duplicates;
+    private final Map<FallbackReason, Counter> optimisticFallbacks = new EnumMap<>(FallbackReason.class);
+    private final DistributionSummary groupCommitBatchSize;
+
+    /**
+     * Why an OPTIMISTIC mode trade was cleared with a row lock
+     */
+    public enum FallbackReason {
+        /** Every optimistic attempt hit a version conflict */
+        RETRIES_EXHAUSTED,
+        /** The account was still inside its contention window */
+        CONTENDED
+    }
+
+    public ClearingMetrics(MeterRegistry registry) {
+        for (ClearingMode mode : ClearingMode.values()) {
+            processTimers.put(mode, histogramTimer("clearing.process")
+                    .description("End-to-end processTrade latency")
+                    .tag("mode", mode.name())
+                    .register(registry));
+        }
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, histogramTimer("clearing.stage")
+                    .description("Time spent in one stage of a pessimistic clear")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(registry));
+        }
+        for (Trade.TradeStatus status : Trade.TradeStatus.values()) {
+            outcomeCounters.put(status, Counter.builder("clearing.trades")
+                    .description("Trades processed, by outcome")
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+        optimisticRetries = Counter.builder("clearing.optimistic.retries")
+                .description("Optimistic clears retried after a version conflict")
+                .register(registry);
+        duplicates = Counter.builder("clearing.duplicates")
+                .description("Resubmitted orderIds answered with the original trade")
+                .register(registry);
+        for (FallbackReason reason : FallbackReason.values()) {
+            optimisticFallbacks.put(reason, Counter.builder("clearing.optimistic.fallbacks")
+                    .description("OPTIMISTIC mode trades cleared with a pessimistic row lock")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry));
+        }
+        groupCommitBatchSize = DistributionSummary.builder("clearing.group_commit.batch.size")
+                .description("Trades cleared per GROUP_COMMIT transaction")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+    }
+
+    private static Timer.Builder histogramTimer(String name) {
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .publishPercentileHistogram();
+    }
+
+    /**
+     * Records the stage as having run from {@code startNanos} until now; returns now so stages can be chained
+     */
+    public long recordStage(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordProcess(ClearingMode mode, long startNanos) {
+        processTimers.get(mode).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordOptimisticRetry() {
+        optimisticRetries.increment();
+    }
+
+    public void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    public void recordPessimisticFallback(FallbackReason reason) {
+        optimisticFallbacks.get(reason).increment();
+    }
+
+    public void recordGroupCommit(int batchSize) {
+        groupCommitBatchSize.record(batchSize);
+    }
+
+    @Override
+    public void onTradeProcessed(Trade trade) {
+        outcomeCounters.get(trade.getStatus()).increment();
+    }
+}
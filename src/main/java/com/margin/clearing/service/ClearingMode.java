@@ -0,0 +1,32 @@
+package com.margin.clearing.service;
+
+/**
+ * Selects how MarginService clears trades (property: clearing.mode)
+ */
+public enum ClearingMode {
+    /**
+     * One DB transaction per trade, account row locked with PESSIMISTIC_WRITE
+     */
+    PESSIMISTIC,
+
+    /**
+     * One DB transaction per trade, account read unlocked and updated with a @Version check;
+     * conflicts are retried with jittered backoff, then cleared pessimistically
+     */
+    OPTIMISTIC,
+
+    /**
+     * Concurrent trades for the same client are combined and cleared under one row lock and one transaction
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Balances held in memory by single-writer shards, persisted write-behind
+     */
+    SHARDED,
+
+    /**
+     * Staged ring-buffer pipeline: validate, single-writer risk shards, batched persistence, acknowledgement
+     */
+    PIPELINE
+}
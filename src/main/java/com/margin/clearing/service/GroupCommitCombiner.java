@@ -0,0 +1,118 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flat combiner that coalesces concurrent trades for the same client into one clearing batch
+ * Each caller enqueues its trade; whichever caller wins the client's combining flag drains the queue
+ * in arrival order and clears up to maxBatchSize trades per call, while the others park.
+ * The combiner stops once its own trade is done and wakes the oldest waiting caller, which takes over,
+ * so no caller clears more than the batches up to and including its own.
+ * There is no extra thread: the batch grows with the number of callers that arrive during one commit.
+ */
+class GroupCommitCombiner {
+
+    /**
+     * Clears trades of one client, in order, under one lock and one transaction
+     */
+    @FunctionalInterface
+    interface BatchClearer {
+        void clear(String clientId, List<Trade> trades);
+    }
+
+    // Safety net only: waiters are unparked when their trade completes or when combining is handed to them
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final BatchClearer clearer;
+    private final int maxBatchSize;
+    private final ConcurrentMap<String, ClientQueue> queues = new ConcurrentHashMap<>();
+
+    GroupCommitCombiner(BatchClearer clearer, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("clearing.group-commit.max-batch-size must be positive");
+        }
+        this.clearer = clearer;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Enqueues the trade and returns once it is cleared, combining batches while this caller holds the flag
+     * The returned future is done: completed with the CLEARED/REJECTED trade, or exceptionally if its batch failed
+     */
+    CompletableFuture<Trade> submit(Trade trade) {
+        String clientId = trade.getClientId();
+        ClientQueue queue = queues.computeIfAbsent(clientId, k -> new ClientQueue());
+        Pending pending = new Pending(trade, new CompletableFuture<>(), Thread.currentThread());
+        queue.pending.add(pending);
+        while (!pending.result().isDone()) {
+            if (queue.combining.compareAndSet(false, true)) {
+                try {
+                    drain(clientId, queue, pending);
+                } finally {
+                    queue.combining.set(false);
+                }
+                // Hand over after releasing the flag; a trade enqueued after this check takes the flag itself
+                Pending next = queue.pending.peek();
+                if (next != null) {
+                    LockSupport.unpark(next.waiter());
+                }
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        return pending.result();
+    }
+
+    /**
+     * Clears batches in arrival order until {@code own} is done, i.e. at most up to the batch holding it
+     */
+    private void drain(String clientId, ClientQueue queue, Pending own) {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        List<Trade> trades = new ArrayList<>(maxBatchSize);
+        while (!own.result().isDone()) {
+            Pending next;
+            while (batch.size() < maxBatchSize && (next = queue.pending.poll()) != null) {
+                batch.add(next);
+                trades.add(next.trade());
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                clearer.clear(clientId, trades);
+                batch.forEach(p -> p.result().complete(p.trade()));
+            } catch (RuntimeException e) {
+                batch.forEach(p -> p.result().completeExceptionally(e));
+            }
+            batch.forEach(p -> LockSupport.unpark(p.waiter()));
+            batch.clear();
+            trades.clear();
+        }
+    }
+
+    /**
+     * Trades waiting for the client's combiner (for tests)
+     */
+    int queued(String clientId) {
+        ClientQueue queue = queues.get(clientId);
+        return queue == null ? 0 : queue.pending.size();
+    }
+
+    private static final class ClientQueue {
+        final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean combining = new AtomicBoolean();
+    }
+
+    private record Pending(Trade trade, CompletableFuture<Trade> result, Thread waiter) {}
+}
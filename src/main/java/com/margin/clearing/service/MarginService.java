@@ -1,29 +1,101 @@
 package com.margin.clearing.service;
 
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.engine.ShardedLedgerEngine;
+import com.margin.clearing.engine.TradePipeline;
 import com.margin.clearing.entity.Account;
 import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.MarginCalculator;
+import com.margin.clearing.money.Money;
 import com.margin.clearing.repository.AccountRepository;
 import com.margin.clearing.repository.TradeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 @Service
 public class MarginService {
     
     private static final Logger log = LoggerFactory.getLogger(MarginService.class);
-    private static final BigDecimal MARGIN_RATE = new BigDecimal("0.10"); // 10% margin requirement
+    public static final BigDecimal MARGIN_RATE = new BigDecimal("0.10"); // 10% margin requirement
+    private static final MarginCalculator MARGIN_CALCULATOR = new MarginCalculator(MARGIN_RATE);
     
     private final AccountRepository accountRepository;
     private final TradeRepository tradeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ClearingMode clearingMode;
+    private final ShardedLedgerEngine ledgerEngine;
+    private final TradePipeline tradePipeline;
+    private final TradeJournal tradeJournal;
+    private final List<TradeOutcomeListener> outcomeListeners;
+    private final ClearingMetrics metrics;
+    private final int maxBatchSize;
+    private final int optimisticMaxRetries;
+    private final long optimisticBackoffNanos;
+    private final AccountContentionTracker contentionTracker;
+    private final GroupCommitCombiner groupCommitCombiner;
+    private final TradeDedupCache dedupCache;
     
-    public MarginService(AccountRepository accountRepository, TradeRepository tradeRepository) {
+    public MarginService(AccountRepository accountRepository, TradeRepository tradeRepository,
+                         PlatformTransactionManager transactionManager,
+                         ObjectProvider<ShardedLedgerEngine> ledgerEngine,
+                         ObjectProvider<TradePipeline> tradePipeline,
+                         ObjectProvider<TradeJournal> tradeJournal,
+                         List<TradeOutcomeListener> outcomeListeners,
+                         ClearingMetrics metrics,
+                         @Value("${clearing.mode:PESSIMISTIC}") ClearingMode clearingMode,
+                         @Value("${clearing.batch.max-size:1000}") int maxBatchSize,
+                         @Value("${clearing.optimistic.max-retries:3}") int optimisticMaxRetries,
+                         @Value("${clearing.optimistic.backoff-micros:200}") long optimisticBackoffMicros,
+                         @Value("${clearing.optimistic.fallback-ms:1000}") long optimisticFallbackMs,
+                         @Value("${clearing.group-commit.max-batch-size:256}") int groupCommitMaxBatchSize,
+                         @Value("${clearing.dedup.max-size:100000}") long dedupMaxSize,
+                         @Value("${clearing.dedup.ttl-ms:600000}") long dedupTtlMs) {
         this.accountRepository = accountRepository;
         this.tradeRepository = tradeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clearingMode = clearingMode;
+        this.maxBatchSize = maxBatchSize;
+        this.optimisticMaxRetries = optimisticMaxRetries;
+        this.optimisticBackoffNanos = optimisticBackoffMicros * 1_000;
+        this.contentionTracker = new AccountContentionTracker(optimisticFallbackMs);
+        this.dedupCache = new TradeDedupCache(dedupMaxSize, dedupTtlMs);
+        this.groupCommitCombiner = clearingMode == ClearingMode.GROUP_COMMIT
+                ? new GroupCommitCombiner(this::clearGroup, groupCommitMaxBatchSize)
+                : null;
+        this.ledgerEngine = ledgerEngine.getIfAvailable();
+        this.tradePipeline = tradePipeline.getIfAvailable();
+        this.tradeJournal = tradeJournal.getIfAvailable();
+        this.outcomeListeners = outcomeListeners;
+        this.metrics = metrics;
+        log.info("Clearing mode: {}", clearingMode);
+    }
+    
+    public ClearingMode getClearingMode() {
+        return clearingMode;
     }
     
     /**
@@ -31,52 +103,640 @@ public class MarginService {
      * Formula: Margin = (Price × Quantity) × 0.10
      */
     public BigDecimal calculateMargin(BigDecimal price, Integer quantity) {
-        BigDecimal totalCost = price.multiply(new BigDecimal(quantity));
-        return totalCost.multiply(MARGIN_RATE).setScale(2, RoundingMode.HALF_UP);
+        return Money.centsToBigDecimal(MARGIN_CALCULATOR.marginCents(price, quantity));
     }
     
     /**
      * Processes a trade with margin validation and atomic account updates
-     * Uses pessimistic locking to ensure thread-safe account balance updates
+     * Dispatches to the engine selected by clearing.mode
      */
-    @Transactional
     public Trade processTrade(String clientId, String symbol, Integer quantity, BigDecimal price) {
-        // Calculate margin required
-        BigDecimal marginRequired = calculateMargin(price, quantity);
+        return processTrade(null, clientId, symbol, quantity, price);
+    }
+    
+    /**
+     * Processes a trade at most once per orderId (null: no idempotency key)
+     * Resubmitting an orderId returns the original trade, CLEARED or REJECTED, without locking the account;
+     * within clearing.dedup.ttl-ms it is answered from memory, later from the trades table.
+     * @throws IllegalArgumentException if the orderId is too long or was used by another client
+     */
+    public Trade processTrade(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        if (orderId == null) {
+            return clear(null, clientId, symbol, quantity, price);
+        }
+        return await(deduplicate(orderId, clientId,
+                () -> CompletableFuture.completedFuture(clear(orderId, clientId, symbol, quantity, price))));
+    }
+    
+    private Trade clear(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        long start = System.nanoTime();
+        Trade processed = switch (clearingMode) {
+            case PIPELINE -> await(tradePipeline.publish(orderId, clientId, symbol, quantity, price));
+            case SHARDED -> await(ledgerEngine.submit(newPendingTrade(orderId, clientId, symbol, quantity, price)));
+            case OPTIMISTIC -> clearOptimistically(newPendingTrade(orderId, clientId, symbol, quantity, price));
+            case GROUP_COMMIT -> await(groupCommitCombiner.submit(newPendingTrade(orderId, clientId, symbol, quantity, price)));
+            case PESSIMISTIC -> clearAndCommit(newPendingTrade(orderId, clientId, symbol, quantity, price), true);
+        };
+        metrics.recordProcess(clearingMode, start);
+        notifyOutcome(processed);
+        return processed;
+    }
+    
+    /**
+     * Publishes a trade into the PIPELINE engine without blocking the caller
+     * The future completes on the pipeline's publish thread once the trade is persisted
+     * @throws IllegalStateException in any other clearing mode
+     */
+    public CompletableFuture<Trade> submitTrade(String clientId, String symbol, Integer quantity, BigDecimal price) {
+        return submitTrade(null, clientId, symbol, quantity, price);
+    }
+    
+    /**
+     * submitTrade with an idempotency key, deduplicated like processTrade
+     */
+    public CompletableFuture<Trade> submitTrade(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        if (tradePipeline == null) {
+            throw new IllegalStateException("Asynchronous submission requires clearing.mode=PIPELINE, not " + clearingMode);
+        }
+        if (orderId == null) {
+            return publish(null, clientId, symbol, quantity, price);
+        }
+        return deduplicate(orderId, clientId, () -> publish(orderId, clientId, symbol, quantity, price));
+    }
+    
+    private CompletableFuture<Trade> publish(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        long start = System.nanoTime();
+        return tradePipeline.publish(orderId, clientId, symbol, quantity, price).thenApply(trade -> {
+            metrics.recordProcess(clearingMode, start);
+            notifyOutcome(trade);
+            return trade;
+        });
+    }
+    
+    /**
+     * Runs {@code clear} only if the orderId is new; otherwise returns the original submission's trade
+     * The orderId is claimed in the dedup cache before clearing, so a retry racing the original waits for it.
+     * A claim whose trade fails (e.g. unknown account) is released so the retry is cleared normally.
+     */
+    private CompletableFuture<Trade> deduplicate(String orderId, String clientId, Supplier<CompletableFuture<Trade>> clear) {
+        CompletableFuture<Trade> pending = new CompletableFuture<>();
+        CompletableFuture<Trade> original = claimOrder(orderId, pending);
+        if (original != null) {
+            return original.thenApply(trade -> sameClient(orderId, clientId, trade));
+        }
+        CompletableFuture<Trade> cleared;
+        try {
+            cleared = clear.get();
+        } catch (RuntimeException e) {
+            cleared = CompletableFuture.failedFuture(e);
+        }
+        return cleared.handle((trade, failure) -> {
+            if (failure == null) {
+                pending.complete(trade);
+                return trade;
+            }
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            Optional<Trade> existing = cause instanceof DataIntegrityViolationException
+                    ? tradeRepository.findByOrderId(orderId)
+                    : Optional.empty();
+            if (existing.isPresent()) {
+                // Lost the race on uk_trades_order_id to a submission the cache no longer held
+                metrics.recordDuplicate();
+                pending.complete(existing.get());
+                return sameClient(orderId, clientId, existing.get());
+            }
+            dedupCache.release(orderId, pending);
+            pending.completeExceptionally(cause);
+            throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+        });
+    }
+    
+    /**
+     * Claims the orderId with {@code pending}, or returns the original submission's trade
+     * An orderId missing from the cache is looked up among trades acknowledged but not yet persisted (undrained
+     * journal records, SHARDED write-behind), then in the trades table, so evicted and pre-restart orders still match.
+     * The unpersisted lookup goes first: a trade leaves it only once it is committed to the table.
+     */
+    private CompletableFuture<Trade> claimOrder(String orderId, CompletableFuture<Trade> pending) {
+        if (orderId.isEmpty() || orderId.getBytes(StandardCharsets.UTF_8).length > Trade.MAX_ORDER_ID_LENGTH) {
+            throw new IllegalArgumentException("orderId must be 1-" + Trade.MAX_ORDER_ID_LENGTH + " bytes (UTF-8)");
+        }
+        CompletableFuture<Trade> original = dedupCache.claim(orderId, pending);
+        if (original != null) {
+            metrics.recordDuplicate();
+            return original;
+        }
+        Optional<Trade> existing;
+        try {
+            existing = findUnpersisted(orderId).or(() -> tradeRepository.findByOrderId(orderId));
+        } catch (RuntimeException e) {
+            dedupCache.release(orderId, pending);
+            throw e;
+        }
+        if (existing.isPresent()) {
+            metrics.recordDuplicate();
+            pending.complete(existing.get());
+            return pending;
+        }
+        return null;
+    }
+    
+    private Optional<Trade> findUnpersisted(String orderId) {
+        if (tradeJournal != null) {
+            Optional<Trade> journaled = tradeJournal.findUndrained(orderId);
+            if (journaled.isPresent()) {
+                return journaled;
+            }
+        }
+        return ledgerEngine != null ? ledgerEngine.findUnwritten(orderId) : Optional.empty();
+    }
+    
+    private static Trade sameClient(String orderId, String clientId, Trade original) {
+        if (!original.getClientId().equals(clientId)) {
+            throw new IllegalArgumentException("orderId " + orderId + " was already used by another client");
+        }
+        return original;
+    }
+    
+    /**
+     * Processes a batch of trades in one transaction
+     * Trades are grouped by client, each account is locked once (in clientId order, so concurrent
+     * batches cannot deadlock) and a client's trades are applied in submission order.
+     * Results are returned in request order; a bad request or unknown account rejects only that trade.
+     * OPTIMISTIC and GROUP_COMMIT modes use the same path: a batch updates each account once, so the lock is held briefly.
+     */
+    public List<BatchTradeResult> processTradeBatch(List<TradeRequestDTO> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + requests.size() + " exceeds maximum of " + maxBatchSize);
+        }
+        if (clearingMode == ClearingMode.SHARDED) {
+            return processEachTrade(requests);
+        }
+        if (clearingMode == ClearingMode.PIPELINE) {
+            return processPipelined(requests);
+        }
+        
+        Trade[] trades = new Trade[requests.size()];
+        String[] errors = new String[requests.size()];
+        // Per keyed trade: the claim this batch completes, or the original submission's result for a duplicate
+        Map<Integer, CompletableFuture<Trade>> claims = new HashMap<>();
+        Map<Integer, CompletableFuture<Trade>> duplicates = new HashMap<>();
+        Map<String, List<Integer>> tradesByClient = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TradeRequestDTO request = requests.get(i);
+            if (!isComplete(request)) {
+                errors[i] = "Invalid trade request: clientId, symbol, quantity and price are required";
+                continue;
+            }
+            if (request.getOrderId() != null) {
+                CompletableFuture<Trade> pending = new CompletableFuture<>();
+                try {
+                    CompletableFuture<Trade> original = claimOrder(request.getOrderId(), pending);
+                    if (original != null) {
+                        duplicates.put(i, original);
+                        continue;
+                    }
+                } catch (RuntimeException e) {
+                    errors[i] = e.getMessage();
+                    continue;
+                }
+                claims.put(i, pending);
+            }
+            trades[i] = newPendingTrade(request.getOrderId(), request.getClientId(), request.getSymbol(),
+                    request.getQuantity(), request.getPrice());
+            tradesByClient.computeIfAbsent(request.getClientId(), k -> new ArrayList<>()).add(i);
+        }
+        
+        List<Account> debitedAccounts = new ArrayList<>();
+        try {
+            clearBatch(trades, errors, tradesByClient, debitedAccounts);
+        } catch (RuntimeException e) {
+            claims.forEach((i, pending) -> {
+                dedupCache.release(requests.get(i).getOrderId(), pending);
+                pending.completeExceptionally(e);
+            });
+            throw e;
+        }
+        claims.forEach((i, pending) -> {
+            if (errors[i] == null) {
+                pending.complete(trades[i]);
+            } else {
+                dedupCache.release(requests.get(i).getOrderId(), pending);
+                pending.completeExceptionally(new RuntimeException(errors[i]));
+            }
+        });
+        debitedAccounts.forEach(this::notifyBalance);
+        
+        List<BatchTradeResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TradeRequestDTO request = requests.get(i);
+            CompletableFuture<Trade> duplicate = duplicates.get(i);
+            if (duplicate != null) {
+                try {
+                    results.add(BatchTradeResult.of(i, sameClient(request.getOrderId(), request.getClientId(), await(duplicate))));
+                } catch (RuntimeException e) {
+                    results.add(BatchTradeResult.rejected(i, request, e.getMessage()));
+                }
+                continue;
+            }
+            if (errors[i] == null) {
+                notifyOutcome(trades[i]);
+            }
+            results.add(errors[i] == null
+                    ? BatchTradeResult.of(i, trades[i])
+                    : BatchTradeResult.rejected(i, request, errors[i]));
+        }
+        return results;
+    }
+    
+    /**
+     * Clears the batch's valid trades in one transaction, locking each client's account once
+     */
+    private void clearBatch(Trade[] trades, String[] errors, Map<String, List<Integer>> tradesByClient,
+                            List<Account> debitedAccounts) {
+        Map<String, Account> lockedAccounts = new HashMap<>();
+        awaitJournalSpace(tradesByClient.values().stream().mapToInt(List::size).sum());
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Trade> processed = new ArrayList<>(trades.length);
+            tradesByClient.forEach((clientId, indexes) -> {
+                Optional<Account> account = accountRepository.findByClientIdWithLock(clientId);
+                if (account.isEmpty()) {
+                    indexes.forEach(i -> errors[i] = "Account not found: " + clientId);
+                    return;
+                }
+                boolean debited = false;
+                for (int i : indexes) {
+                    debited |= applyMargin(account.get(), trades[i]);
+                    processed.add(trades[i]);
+                }
+                accountRepository.save(account.get());
+                lockedAccounts.put(clientId, account.get());
+                if (debited) {
+                    debitedAccounts.add(account.get());
+                }
+            });
+            persistTrades(processed, lockedAccounts);
+        });
+    }
+    
+    private List<BatchTradeResult> processEachTrade(List<TradeRequestDTO> requests) {
+        List<BatchTradeResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TradeRequestDTO request = requests.get(i);
+            if (!isComplete(request)) {
+                results.add(BatchTradeResult.rejected(i, request,
+                        "Invalid trade request: clientId, symbol, quantity and price are required"));
+                continue;
+            }
+            try {
+                Trade trade = processTrade(request.getOrderId(), request.getClientId(), request.getSymbol(),
+                        request.getQuantity(), request.getPrice());
+                results.add(BatchTradeResult.of(i, trade));
+            } catch (RuntimeException e) {
+                results.add(BatchTradeResult.rejected(i, request, e.getMessage()));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Publishes the whole batch into the pipeline before waiting, so its stages see it as one batch
+     */
+    private List<BatchTradeResult> processPipelined(List<TradeRequestDTO> requests) {
+        List<CompletableFuture<Trade>> futures = new ArrayList<>(requests.size());
+        for (TradeRequestDTO request : requests) {
+            CompletableFuture<Trade> future;
+            try {
+                future = request == null ? null : submitTrade(request.getOrderId(), request.getClientId(),
+                        request.getSymbol(), request.getQuantity(), request.getPrice());
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future);
+        }
+        List<BatchTradeResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            if (futures.get(i) == null) {
+                results.add(BatchTradeResult.rejected(i, null,
+                        "Invalid trade request: clientId, symbol, quantity and price are required"));
+                continue;
+            }
+            try {
+                results.add(BatchTradeResult.of(i, await(futures.get(i))));
+            } catch (RuntimeException e) {
+                results.add(BatchTradeResult.rejected(i, requests.get(i), e.getMessage()));
+            }
+        }
+        return results;
+    }
+    
+    private static boolean isComplete(TradeRequestDTO request) {
+        return request != null && request.getClientId() != null && request.getSymbol() != null
+                && request.getQuantity() != null && request.getPrice() != null;
+    }
+    
+    /**
+     * Blocks until trades cleared so far are visible in the database
+     * (no-op unless the active engine persists asynchronously)
+     */
+    public void awaitPersistence() {
+        if (ledgerEngine != null) {
+            ledgerEngine.flush();
+        }
+        if (tradeJournal != null) {
+            tradeJournal.awaitDrained();
+        }
+    }
+    
+    /**
+     * Discards in-memory ledger state after accounts were changed outside of clearing
+     */
+    public void resetLedgerState() {
+        if (ledgerEngine != null) {
+            ledgerEngine.reset();
+        }
+        if (tradePipeline != null) {
+            tradePipeline.reset();
+        }
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            listener.onLedgerReset();
+        }
+    }
+    
+    private Trade newPendingTrade(String orderId, String clientId, String symbol, Integer quantity, BigDecimal price) {
+        // Calculate margin required (fixed-point, converted to BigDecimal only when persisted/serialized)
+        long marginCents = MARGIN_CALCULATOR.marginCents(price, quantity);
         
         // Create trade with PENDING status
         Trade trade = new Trade();
+        trade.setOrderId(orderId);
         trade.setClientId(clientId);
         trade.setSymbol(symbol);
         trade.setQuantity(quantity);
         trade.setPrice(price);
-        trade.setMarginRequired(marginRequired);
+        trade.setMarginRequiredCents(marginCents);
         trade.setStatus(Trade.TradeStatus.PENDING);
+        return trade;
+    }
+    
+    /**
+     * Clears one client's trades in arrival order under one row lock and one transaction (GROUP_COMMIT mode)
+     * Each trade is accepted or rejected against the balance left by the trades before it
+     */
+    private void clearGroup(String clientId, List<Trade> trades) {
+        awaitJournalSpace(trades.size());
+        Account account = transactionTemplate.execute(status -> {
+            Account locked = accountRepository.findByClientIdWithLock(clientId)
+                    .orElseThrow(() -> new RuntimeException("Account not found: " + clientId));
+            boolean debited = false;
+            for (Trade trade : trades) {
+                debited |= applyMargin(locked, trade);
+            }
+            if (debited) {
+                accountRepository.save(locked);
+            }
+            persistTrades(trades, Map.of(clientId, locked));
+            return debited ? locked : null;
+        });
+        metrics.recordGroupCommit(trades.size());
+        if (account != null) {
+            notifyBalance(account);
+        }
+    }
+    
+    /**
+     * Clears without a row lock, relying on the account's @Version check
+     * A version conflict is retried up to clearing.optimistic.max-retries times after a jittered backoff;
+     * after that the trade is cleared pessimistically and the account is locked for every trade
+     * until clearing.optimistic.fallback-ms has passed.
+     */
+    private Trade clearOptimistically(Trade trade) {
+        String clientId = trade.getClientId();
+        if (contentionTracker.isContended(clientId)) {
+            metrics.recordPessimisticFallback(ClearingMetrics.FallbackReason.CONTENDED);
+            return clearAndCommit(trade, true);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return clearAndCommit(trade, false);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= optimisticMaxRetries) {
+                    log.debug("Account {} contended after {} optimistic attempts, locking", clientId, attempt + 1);
+                    contentionTracker.markContended(clientId);
+                    metrics.recordPessimisticFallback(ClearingMetrics.FallbackReason.RETRIES_EXHAUSTED);
+                    return clearAndCommit(trade, true);
+                }
+                metrics.recordOptimisticRetry();
+                backoff(attempt);
+            }
+        }
+    }
+    
+    /**
+     * Parks for a random time up to backoff × 2^attempt ("full jitter"), so retries of colliding trades spread out
+     */
+    private void backoff(int attempt) {
+        long ceiling = optimisticBackoffNanos << Math.min(attempt, 16);
+        if (ceiling > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling) + 1);
+        }
+    }
+    
+    /**
+     * Runs clearInTransaction in its own transaction, timing the commit separately
+     */
+    private Trade clearAndCommit(Trade trade, boolean lockAccount) {
+        long[] commitStart = new long[1];
+        awaitJournalSpace(1);
+        Account account = transactionTemplate.execute(status -> {
+            Account updated = clearInTransaction(trade, lockAccount);
+            commitStart[0] = System.nanoTime();
+            return updated;
+        });
+        metrics.recordStage(ClearingMetrics.Stage.COMMIT, commitStart[0]);
+        if (trade.getStatus() == Trade.TradeStatus.CLEARED) {
+            notifyBalance(account);
+        }
+        return trade;
+    }
+    
+    /**
+     * Debits the account inside the caller's transaction; returns the updated account
+     * With lockAccount the row is locked with PESSIMISTIC_WRITE; otherwise it is read unlocked and the
+     * flushed UPDATE fails with a ConcurrencyFailureException if another transaction changed it first.
+     * The account and trade are flushed as they are saved so each statement is timed as its own stage
+     */
+    private Account clearInTransaction(Trade trade, boolean lockAccount) {
+        String clientId = trade.getClientId();
+        long stageStart = System.nanoTime();
         
-        // Lock account for atomic update
-        Account account = accountRepository.findByClientIdWithLock(clientId)
+        Optional<Account> found = lockAccount
+                ? accountRepository.findByClientIdWithLock(clientId)
+                : accountRepository.findByClientId(clientId);
+        Account account = found
                 .orElseThrow(() -> new RuntimeException("Account not found: " + clientId));
+        stageStart = metrics.recordStage(ClearingMetrics.Stage.LOCK, stageStart);
+        
+        boolean debited = applyMargin(account, trade);
+        stageStart = metrics.recordStage(ClearingMetrics.Stage.VALIDATION, stageStart);
+        
+        if (debited) {
+            accountRepository.saveAndFlush(account);
+            stageStart = metrics.recordStage(ClearingMetrics.Stage.ACCOUNT_SAVE, stageStart);
+        }
+        persistTrade(trade, account);
+        metrics.recordStage(ClearingMetrics.Stage.TRADE_SAVE, stageStart);
+        return account;
+    }
+    
+    /**
+     * Saves the trade, or journals it when the write-behind journal is enabled
+     * Journaling happens before commit: the trade is acknowledged once it is on the journal,
+     * and gets its id when the drainer inserts it; a rollback discards the record. The record carries the account's flushed
+     * balance and version so snapshots can be brought forward from the journal. If the journal filled up again since
+     * {@link #awaitJournalSpace}, the append fails (rolling the transaction back) instead of waiting with the row lock held.
+     */
+    private Trade persistTrade(Trade trade, Account account) {
+        if (tradeJournal == null) {
+            return tradeRepository.saveAndFlush(trade);
+        }
+        long seq = tradeJournal.appendNow(trade, account.getBalanceCents(), account.getVersion());
+        releaseAfterCompletion(List.of(seq));
+        return trade;
+    }
+    
+    /**
+     * Batch form of persistTrade; accounts holds each trade's account as saved in this transaction
+     */
+    private void persistTrades(List<Trade> trades, Map<String, Account> accounts) {
+        if (tradeJournal == null) {
+            tradeRepository.saveAll(trades);
+            return;
+        }
+        // Flush so the journaled versions are the ones being committed
+        accountRepository.flush();
+        List<Long> seqs = new ArrayList<>(trades.size());
+        for (Trade trade : trades) {
+            Account account = accounts.get(trade.getClientId());
+            seqs.add(tradeJournal.appendNow(trade, account.getBalanceCents(), account.getVersion()));
+        }
+        releaseAfterCompletion(seqs);
+    }
+    
+    /**
+     * Waits for journal space before a clearing transaction starts, so a full journal never blocks with row locks held
+     */
+    private void awaitJournalSpace(int records) {
+        if (tradeJournal != null) {
+            tradeJournal.awaitSpace(records);
+        }
+    }
+    
+    /**
+     * Lets the drainer and snapshots pass the journal records once the balances they carry are committed;
+     * records of a transaction that did not commit are discarded first, so they are never drained or replayed
+     */
+    private void releaseAfterCompletion(List<Long> seqs) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                for (long seq : seqs) {
+                    if (status != STATUS_COMMITTED) {
+                        tradeJournal.discard(seq);
+                    }
+                    tradeJournal.release(seq);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Validates the margin requirement against a locked account and deducts it
+     * Sets the trade to CLEARED or REJECTED; returns true if the balance changed
+     */
+    private boolean applyMargin(Account account, Trade trade) {
+        long marginCents = trade.getMarginRequiredCents();
         
         // Validate margin requirement
-        if (account.getBalance().compareTo(marginRequired) < 0) {
+        if (account.getBalanceCents() < marginCents) {
             trade.setStatus(Trade.TradeStatus.REJECTED);
-            tradeRepository.save(trade);
             log.warn("Trade rejected for client {}: Insufficient margin. Required: {}, Available: {}", 
-                    clientId, marginRequired, account.getBalance());
-            return trade;
+                    trade.getClientId(), trade.getMarginRequired(), account.getBalance());
+            return false;
         }
         
         // Deduct margin from account balance
-        account.setBalance(account.getBalance().subtract(marginRequired));
-        accountRepository.save(account);
+        account.setBalanceCents(Math.subtractExact(account.getBalanceCents(), marginCents));
         
         // Update trade status to CLEARED
         trade.setStatus(Trade.TradeStatus.CLEARED);
-        trade = tradeRepository.save(trade);
         
-        log.debug("Trade cleared for client {}: Symbol={}, Quantity={}, Margin={}", 
-                clientId, symbol, quantity, marginRequired);
+        if (log.isDebugEnabled()) {
+            log.debug("Trade cleared for client {}: Symbol={}, Quantity={}, Margin={}", 
+                    trade.getClientId(), trade.getSymbol(), trade.getQuantity(), trade.getMarginRequired());
+        }
+        return true;
+    }
+    
+    /**
+     * Hands a CLEARED/REJECTED trade to the listeners once its transaction is done
+     * Listener failures are logged, never propagated to the caller
+     */
+    private void notifyOutcome(Trade trade) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onTradeProcessed(trade);
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+    
+    private void notifyBalance(Account account) {
+        for (TradeOutcomeListener listener : outcomeListeners) {
+            try {
+                listener.onBalanceChanged(account.getClientId(), account.getBalanceCents(), account.getVersion());
+            } catch (RuntimeException e) {
+                log.error("Trade outcome listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+    
+    private static Trade await(CompletableFuture<Trade> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Per-trade result of a batch submission
+     * {@code error} is set when the request failed (invalid, unknown account, ...) rather than being cleared or
+     * rejected for margin; tradeId alone can't tell them apart, as SHARDED and journaled trades have no id yet.
+     */
+    public record BatchTradeResult(
+            int index,
+            Long tradeId,
+            String clientId,
+            String symbol,
+            Trade.TradeStatus status,
+            BigDecimal marginRequired,
+            String message,
+            boolean error
+    ) {
+        static BatchTradeResult of(int index, Trade trade) {
+            String message = trade.getStatus() == Trade.TradeStatus.REJECTED ? "Insufficient margin" : null;
+            return new BatchTradeResult(index, trade.getId(), trade.getClientId(), trade.getSymbol(),
+                    trade.getStatus(), trade.getMarginRequired(), message, false);
+        }
         
-        return trade;
+        static BatchTradeResult rejected(int index, TradeRequestDTO request, String message) {
+            return new BatchTradeResult(index, null, request == null ? null : request.getClientId(),
+                    request == null ? null : request.getSymbol(), Trade.TradeStatus.REJECTED, null, message, true);
+        }
     }
 }
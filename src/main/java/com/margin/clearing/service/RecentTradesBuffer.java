@@ -0,0 +1,59 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring of the most recent cleared/rejected trades, newest overwriting oldest
+ * Writers claim a sequence and publish a stamped slot; readers skip slots whose stamp doesn't match,
+ * so a reader never sees a half-published or lapped entry.
+ */
+@Component
+public class RecentTradesBuffer implements TradeOutcomeListener {
+
+    private final int capacity;
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RecentTradesBuffer(@Value("${clearing.recent-trades.capacity:1000}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("clearing.recent-trades.capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void onTradeProcessed(Trade trade) {
+        long seq = sequence.getAndIncrement();
+        slots.set((int) (seq % capacity), new Slot(seq, trade));
+    }
+
+    /**
+     * Returns up to {@code limit} trades, newest first
+     */
+    public List<Trade> latest(int limit) {
+        long end = sequence.get();
+        int count = (int) Math.min(Math.min(Math.max(limit, 0), capacity), end);
+        List<Trade> trades = new ArrayList<>(count);
+        for (long seq = end - 1; seq >= end - count; seq--) {
+            Slot slot = slots.get((int) (seq % capacity));
+            if (slot != null && slot.seq() == seq) {
+                trades.add(slot.trade());
+            }
+        }
+        return trades;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private record Slot(long seq, Trade trade) {}
+}
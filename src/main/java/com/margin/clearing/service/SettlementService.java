@@ -0,0 +1,277 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.SettlementRecord;
+import com.margin.clearing.entity.SettlementRun;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.SettlementRecordRepository;
+import com.margin.clearing.repository.SettlementRunRepository;
+import com.margin.clearing.repository.TradeRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * End-of-day settlement: releases the margin held for every CLEARED trade back to its account
+ * Unsettled trades are streamed in id order (never loaded as a whole) and cut into chunks of clearing.settlement.chunk-size.
+ * A writer thread commits each chunk in one transaction: it marks the trades as settled by the run, then releases
+ * the margin of the trades it marked, aggregated per client, with one settlement record per client and the run's
+ * progress, while the reader streams the next chunk. A trade is therefore released exactly once, whatever order
+ * trade ids commit in. At most two chunks are in memory, so memory is flat regardless of the number of trades,
+ * and a run that stops (crash or error) is resumed after its last committed chunk by the next call.
+ */
+@Service
+public class SettlementService {
+    
+    private static final Logger log = LoggerFactory.getLogger(SettlementService.class);
+    private static final String RELEASE_SQL = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE client_id = ?";
+    private static final String MARK_SETTLED_SQL = "UPDATE trades SET settlement_run_id = ? WHERE id = ? AND settlement_run_id IS NULL";
+    private static final int CHUNKS_IN_FLIGHT = 2;
+    
+    private final TradeRepository tradeRepository;
+    private final SettlementRunRepository runRepository;
+    private final SettlementRecordRepository recordRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final MarginService marginService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final int chunkSize;
+    
+    public SettlementService(TradeRepository tradeRepository, SettlementRunRepository runRepository,
+                             SettlementRecordRepository recordRepository, JdbcTemplate jdbcTemplate,
+                             EntityManager entityManager, MarginService marginService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${clearing.settlement.chunk-size:10000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("clearing.settlement.chunk-size must be positive");
+        }
+        this.tradeRepository = tradeRepository;
+        this.runRepository = runRepository;
+        this.recordRepository = recordRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.marginService = marginService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Resumes the last unfinished run, or starts a new one covering every CLEARED trade not settled yet
+     * Trades committed after the run started are left for the next run.
+     */
+    public synchronized SettlementReport runSettlement() {
+        marginService.awaitPersistence();
+        Optional<SettlementRun> unfinished = runRepository.findFirstByOrderByIdDesc()
+                .filter(run -> run.getStatus() != SettlementRun.Status.COMPLETED);
+        SettlementRun run = unfinished.orElseGet(this::startRun);
+        boolean resumed = unfinished.isPresent();
+        if (resumed) {
+            log.info("Resuming settlement run {} after trade {}", run.getId(), run.getLastSettledTradeId());
+            run.setStatus(SettlementRun.Status.RUNNING);
+            run = runRepository.save(run);
+        }
+        
+        long start = System.nanoTime();
+        long tradesBefore = run.getTradesSettled();
+        RuntimeException failure = settle(run);
+        marginService.resetLedgerState();
+        
+        SettlementRun finished = runRepository.findById(run.getId()).orElseThrow();
+        finished.setStatus(failure == null ? SettlementRun.Status.COMPLETED : SettlementRun.Status.FAILED);
+        finished.setCompletedAt(failure == null ? LocalDateTime.now() : null);
+        finished = runRepository.save(finished);
+        if (failure != null) {
+            throw new IllegalStateException("Settlement run " + finished.getId() + " stopped after trade "
+                    + finished.getLastSettledTradeId() + ": " + failure.getMessage(), failure);
+        }
+        
+        long elapsedNanos = System.nanoTime() - start;
+        long settled = finished.getTradesSettled() - tradesBefore;
+        SettlementReport report = new SettlementReport(finished.getId(), resumed, settled, finished.getTradesSettled(),
+                finished.getMarginReleased(), elapsedNanos / 1_000_000,
+                elapsedNanos == 0 ? 0 : settled * 1_000_000_000.0 / elapsedNanos);
+        log.info("Settlement run {} settled {} trades in {}ms ({} trades/sec), released {}", report.runId(), settled,
+                report.elapsedMs(), String.format("%.0f", report.tradesPerSecond()), report.marginReleased());
+        return report;
+    }
+    
+    public Optional<SettlementRun> getLatestRun() {
+        return runRepository.findFirstByOrderByIdDesc();
+    }
+    
+    private SettlementRun startRun() {
+        long upTo = tradeRepository.findMaxIdByStatus(Trade.TradeStatus.CLEARED).orElse(0L);
+        return runRepository.save(new SettlementRun(0L, upTo));
+    }
+    
+    /**
+     * Streams the run's remaining trades into chunks for the writer; returns the first write failure, if any
+     */
+    private RuntimeException settle(SettlementRun run) {
+        Long runId = run.getId();
+        ExecutorService writer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("settlement-writer").factory());
+        Semaphore inFlight = new Semaphore(CHUNKS_IN_FLIGHT);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            readOnlyTemplate.executeWithoutResult(status -> {
+                try (Stream<Trade> trades = tradeRepository.streamUnsettled(Trade.TradeStatus.CLEARED, run.getUpToTradeId())) {
+                    Chunk chunk = new Chunk(chunkSize);
+                    for (Iterator<Trade> it = trades.iterator(); it.hasNext() && failure.get() == null; ) {
+                        Trade trade = it.next();
+                        chunk.add(trade);
+                        entityManager.detach(trade);
+                        if (chunk.isFull()) {
+                            submit(writer, inFlight, failure, runId, chunk);
+                            chunk = new Chunk(chunkSize);
+                        }
+                    }
+                    if (chunk.size > 0 && failure.get() == null) {
+                        submit(writer, inFlight, failure, runId, chunk);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failure.get();
+    }
+    
+    private void submit(ExecutorService writer, Semaphore inFlight, AtomicReference<RuntimeException> failure,
+                        Long runId, Chunk chunk) {
+        inFlight.acquireUninterruptibly();
+        writer.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    settleChunk(runId, chunk);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+    
+    /**
+     * Marks one chunk's trades settled by the run, then aggregates the ones it marked per client and commits releases,
+     * records and the run's progress together with the marks
+     * A trade another run already marked is skipped rather than released twice.
+     * Accounts are updated in clientId order, the same order batch clearing locks them in
+     */
+    private void settleChunk(Long runId, Chunk chunk) {
+        List<Object[]> marks = new ArrayList<>(chunk.size);
+        for (int i = 0; i < chunk.size; i++) {
+            marks.add(new Object[]{runId, chunk.tradeIds[i]});
+        }
+        int[] settled = new int[1];
+        int clients = transactionTemplate.execute(status -> {
+            int[] marked = jdbcTemplate.batchUpdate(MARK_SETTLED_SQL, marks);
+            Map<String, long[]> byClient = new TreeMap<>();
+            long marginCents = 0;
+            for (int i = 0; i < chunk.size; i++) {
+                if (marked[i] == 0) {
+                    continue;
+                }
+                long[] totals = byClient.computeIfAbsent(chunk.clientIds[i], k -> new long[3]);
+                totals[0]++;
+                totals[1] += chunk.marginCents[i];
+                totals[2] += chunk.notionalCents[i];
+                marginCents += chunk.marginCents[i];
+                settled[0]++;
+            }
+            LocalDateTime settledAt = LocalDateTime.now();
+            List<Object[]> releases = new ArrayList<>(byClient.size());
+            List<SettlementRecord> records = new ArrayList<>(byClient.size());
+            byClient.forEach((clientId, totals) -> {
+                BigDecimal released = Money.centsToBigDecimal(totals[1]);
+                releases.add(new Object[]{released, clientId});
+                records.add(new SettlementRecord(runId, clientId, (int) totals[0], Money.centsToBigDecimal(totals[2]),
+                        released, chunk.lastTradeId, settledAt));
+            });
+            jdbcTemplate.batchUpdate(RELEASE_SQL, releases);
+            recordRepository.saveAll(records);
+            SettlementRun run = runRepository.findById(runId).orElseThrow();
+            run.setLastSettledTradeId(chunk.lastTradeId);
+            run.setTradesSettled(run.getTradesSettled() + settled[0]);
+            run.setMarginReleased(run.getMarginReleased().add(Money.centsToBigDecimal(marginCents)));
+            return byClient.size();
+        });
+        log.debug("Settlement run {}: settled {} trades for {} clients through trade {}", runId, settled[0],
+                clients, chunk.lastTradeId);
+    }
+    
+    /**
+     * The fields of up to chunkSize trades that settlement needs, as parallel arrays
+     */
+    private static final class Chunk {
+        final long[] tradeIds;
+        final String[] clientIds;
+        final long[] marginCents;
+        final long[] notionalCents;
+        int size;
+        long lastTradeId;
+        
+        Chunk(int capacity) {
+            tradeIds = new long[capacity];
+            clientIds = new String[capacity];
+            marginCents = new long[capacity];
+            notionalCents = new long[capacity];
+        }
+        
+        boolean isFull() {
+            return size == clientIds.length;
+        }
+        
+        void add(Trade trade) {
+            tradeIds[size] = trade.getId();
+            clientIds[size] = trade.getClientId();
+            marginCents[size] = trade.getMarginRequiredCents();
+            notionalCents[size] = Money.toCents(trade.getPrice().multiply(BigDecimal.valueOf(trade.getQuantity())));
+            lastTradeId = trade.getId();
+            size++;
+        }
+    }
+    
+    /**
+     * Outcome of one call: trades settled by this call, and the run's totals so far
+     */
+    public record SettlementReport(
+            long runId,
+            boolean resumed,
+            long tradesSettled,
+            long totalTradesSettled,
+            BigDecimal marginReleased,
+            long elapsedMs,
+            double tradesPerSecond
+    ) {}
+}
@@ -1,13 +1,16 @@
 package com.margin.clearing.service;
 
-import com.margin.clearing.entity.Account;
+import com.margin.clearing.admission.AdmissionControl;
+import com.margin.clearing.admission.AdmissionRejectedException;
+import com.margin.clearing.dto.SimulationRequestDTO;
 import com.margin.clearing.entity.Trade;
-import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.simulation.LatencyHistogram;
+import com.margin.clearing.simulation.ThroughputSeries;
+import com.margin.clearing.simulation.ZipfDistribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StopWatch;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -16,8 +19,10 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 public class SimulationService {
@@ -26,41 +31,58 @@ public class SimulationService {
     private static final String[] STOCK_SYMBOLS = {"AAPL", "GOOGL", "MSFT", "AMZN", "TSLA", "META", "NVDA", "NFLX"};
     private static final BigDecimal INITIAL_BALANCE = new BigDecimal("10000.00");
     private static final int NUM_CLIENTS = 10;
-    private static final int NUM_TRADES = 1000;
     
     private final MarginService marginService;
-    private final AccountRepository accountRepository;
+    private final AccountProvisioningService provisioningService;
     private final ExecutorService taskExecutor;
+    private final AdmissionControl admissionControl;
     private final Random random = new Random();
     
-    public SimulationService(MarginService marginService, AccountRepository accountRepository, 
-                            @Qualifier("taskExecutor") ExecutorService taskExecutor) {
+    public SimulationService(MarginService marginService, AccountProvisioningService provisioningService, 
+                            @Qualifier("taskExecutor") ExecutorService taskExecutor, AdmissionControl admissionControl) {
         this.marginService = marginService;
-        this.accountRepository = accountRepository;
+        this.provisioningService = provisioningService;
         this.taskExecutor = taskExecutor;
+        this.admissionControl = admissionControl;
     }
     
     /**
      * Initializes 10 dummy client accounts with $10,000 each
      */
     public void initializeAccounts() {
-        log.info("Initializing {} client accounts with ${} each", NUM_CLIENTS, INITIAL_BALANCE);
-        
-        for (int i = 1; i <= NUM_CLIENTS; i++) {
-            String clientId = "CLIENT_" + String.format("%03d", i);
-            Account account = new Account(clientId, INITIAL_BALANCE);
-            accountRepository.save(account);
+        initializeAccounts(NUM_CLIENTS);
+    }
+    
+    /**
+     * Initializes CLIENT_001..CLIENT_n dummy accounts with $10,000 each, inserted in JDBC batches
+     */
+    public void initializeAccounts(int numClients) {
+        if (numClients <= 0) {
+            throw new IllegalArgumentException("clients must be positive");
         }
+        log.info("Initializing {} client accounts with ${} each", numClients, INITIAL_BALANCE);
         
-        log.info("Successfully initialized {} accounts", NUM_CLIENTS);
+        provisioningService.provisionGenerated("CLIENT_", numClients, INITIAL_BALANCE);
+        // Start the simulation from what is in the database
+        marginService.resetLedgerState();
+        
+        log.info("Successfully initialized {} accounts", numClients);
+    }
+    
+    private static String clientId(int rank) {
+        return "CLIENT_" + String.format("%03d", rank + 1);
+    }
+    
+    private static String symbol(int rank) {
+        return rank < STOCK_SYMBOLS.length ? STOCK_SYMBOLS[rank] : "SYM" + rank;
     }
     
     /**
-     * Generates a random trade request
+     * Generates a random trade request; client and symbol ranks follow the given distributions
      */
-    private TradeRequest generateRandomTrade() {
-        String clientId = "CLIENT_" + String.format("%03d", random.nextInt(NUM_CLIENTS) + 1);
-        String symbol = STOCK_SYMBOLS[random.nextInt(STOCK_SYMBOLS.length)];
+    private TradeRequest generateRandomTrade(ZipfDistribution clients, ZipfDistribution symbols) {
+        String clientId = clientId(clients.sample(random));
+        String symbol = symbol(symbols.sample(random));
         int quantity = random.nextInt(100) + 1; // 1-100 shares
         BigDecimal price = BigDecimal.valueOf(random.nextDouble() * 500 + 50) // $50-$550
                 .setScale(2, RoundingMode.HALF_UP);
@@ -73,71 +95,138 @@ public class SimulationService {
      * Returns simulation results with timing metrics
      */
     public SimulationResult runSimulation() {
-        log.info("Starting simulation of {} trades", NUM_TRADES);
-        
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
+        return runSimulation(new SimulationRequestDTO());
+    }
+    
+    /**
+     * Runs an open-loop simulation: trades are issued on a fixed schedule (ratePerSecond) whether or not
+     * earlier ones have finished, and each latency is measured from its scheduled time, so a stalled
+     * engine shows up as tail latency instead of silently slowing the generator (coordinated omission).
+     */
+    public SimulationResult runSimulation(SimulationRequestDTO profile) {
+        validate(profile);
+        log.info("Starting simulation: up to {} trades over {} clients at {}/s (zipf {})",
+                profile.getTrades(), profile.getClients(),
+                profile.getRatePerSecond() > 0 ? profile.getRatePerSecond() : "unthrottled", profile.getZipfExponent());
         
+        ZipfDistribution clients = new ZipfDistribution(profile.getClients(), profile.getZipfExponent());
+        ZipfDistribution symbols = new ZipfDistribution(profile.getSymbols(), profile.getZipfExponent());
+        LatencyHistogram latencies = new LatencyHistogram();
         AtomicInteger successCount = new AtomicInteger(0);
         AtomicInteger failureCount = new AtomicInteger(0);
         List<CompletableFuture<Trade>> futures = new ArrayList<>();
         
-        // Generate 1,000 trade requests
-        List<TradeRequest> tradeRequests = IntStream.range(0, NUM_TRADES)
-                .mapToObj(i -> generateRandomTrade())
-                .toList();
+        double intervalNanos = profile.getRatePerSecond() > 0 ? 1_000_000_000.0 / profile.getRatePerSecond() : 0;
+        long start = System.nanoTime();
+        long deadline = profile.getDurationSeconds() > 0
+                ? start + (long) (profile.getDurationSeconds() * 1_000_000_000L) : Long.MAX_VALUE;
+        ThroughputSeries throughput = new ThroughputSeries(start, profile.getSampleIntervalMs());
         
-        // Process trades asynchronously using CompletableFuture with Spring's TaskExecutor
-        for (TradeRequest request : tradeRequests) {
-            CompletableFuture<Trade> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    Trade trade = marginService.processTrade(
-                            request.clientId(),
-                            request.symbol(),
-                            request.quantity(),
-                            request.price()
-                    );
-                    
-                    if (trade.getStatus() == Trade.TradeStatus.CLEARED) {
+        int issued = 0;
+        while (issued < profile.getTrades()) {
+            long scheduledAt = start + (long) (issued * intervalNanos);
+            if ((intervalNanos > 0 ? scheduledAt : System.nanoTime()) >= deadline) {
+                break;
+            }
+            parkUntil(scheduledAt);
+            TradeRequest request = generateRandomTrade(clients, symbols);
+            issued++;
+            
+            // PIPELINE mode: publish straight into the ring (which blocks when full); otherwise one task per
+            // admitted trade on Spring's TaskExecutor, so no more tasks are queued than admission control allows
+            try {
+                CompletableFuture<Trade> result = marginService.getClearingMode() == ClearingMode.PIPELINE
+                        ? marginService.submitTrade(request.clientId(), request.symbol(), request.quantity(), request.price())
+                        : admissionControl.admitAsync(request.clientId())
+                                .thenCompose(permit -> processAdmitted(request, permit));
+                futures.add(result.handle((processed, error) -> {
+                    long now = System.nanoTime();
+                    latencies.record(now - scheduledAt);
+                    throughput.record(now);
+                    if (error != null) {
+                        log.error("Error processing trade: {}", error.getCause() != null ? error.getCause().getMessage() : error.getMessage());
+                        failureCount.incrementAndGet();
+                        return null;
+                    }
+                    if (processed.getStatus() == Trade.TradeStatus.CLEARED) {
                         successCount.incrementAndGet();
                     } else {
                         failureCount.incrementAndGet();
                     }
-                    
-                    return trade;
-                } catch (Exception e) {
-                    log.error("Error processing trade: {}", e.getMessage());
-                    failureCount.incrementAndGet();
-                    return null;
-                }
-            }, taskExecutor);
-            
-            futures.add(future);
+                    return processed;
+                }));
+            } catch (AdmissionRejectedException | RejectedExecutionException e) {
+                // Admission queues (or the platform pool's queue) are full; count it like any other failed trade
+                failureCount.incrementAndGet();
+            }
         }
         
         // Wait for all trades to complete
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
         
-        stopWatch.stop();
+        long totalTimeNanos = System.nanoTime() - start;
+        
+        // Asynchronous engines acknowledge before persisting; make results visible before returning
+        marginService.awaitPersistence();
         
-        long totalTimeMs = stopWatch.getTotalTimeMillis();
-        double averageTimeMs = (double) totalTimeMs / NUM_TRADES;
+        long totalTimeMs = TimeUnit.NANOSECONDS.toMillis(totalTimeNanos);
+        double averageTimeMs = issued == 0 ? 0 : (double) totalTimeMs / issued;
+        double throughputPerSecond = totalTimeNanos == 0 ? 0 : latencies.getTotalCount() * 1_000_000_000.0 / totalTimeNanos;
         
         SimulationResult result = new SimulationResult(
-                NUM_TRADES,
+                issued,
                 successCount.get(),
                 failureCount.get(),
                 totalTimeMs,
-                averageTimeMs
+                averageTimeMs,
+                throughputPerSecond,
+                LatencySummary.of(latencies),
+                throughput.samples()
         );
         
         log.info("Simulation completed: {} trades processed in {}ms (avg: {}ms/trade)", 
-                NUM_TRADES, totalTimeMs, String.format("%.2f", averageTimeMs));
-        log.info("Success: {}, Failed: {}", successCount.get(), failureCount.get());
+                issued, totalTimeMs, String.format("%.2f", averageTimeMs));
+        log.info("Success: {}, Failed: {}, Latency: {}", successCount.get(), failureCount.get(), result.latency());
         
         return result;
     }
     
+    /**
+     * Clears an admitted trade on the task executor, freeing its admission slot when it completes
+     */
+    private CompletableFuture<Trade> processAdmitted(TradeRequest request, AdmissionControl.Permit permit) {
+        try {
+            return CompletableFuture.supplyAsync(() -> marginService.processTrade(
+                    request.clientId(),
+                    request.symbol(),
+                    request.quantity(),
+                    request.price()
+            ), taskExecutor).whenComplete((trade, error) -> permit.close());
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+    
+    private static void validate(SimulationRequestDTO profile) {
+        if (profile.getClients() <= 0 || profile.getTrades() <= 0 || profile.getSymbols() <= 0) {
+            throw new IllegalArgumentException("clients, trades and symbols must be positive");
+        }
+        if (profile.getRatePerSecond() < 0 || profile.getZipfExponent() < 0 || profile.getDurationSeconds() < 0) {
+            throw new IllegalArgumentException("ratePerSecond, zipfExponent and durationSeconds must not be negative");
+        }
+        if (profile.getSampleIntervalMs() <= 0) {
+            throw new IllegalArgumentException("sampleIntervalMs must be positive");
+        }
+    }
+    
+    private static void parkUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+    
     /**
      * Trade request record
      */
@@ -150,12 +239,40 @@ public class SimulationService {
     
     /**
      * Simulation result record
+     * Latency percentiles are measured from each trade's scheduled arrival to its completion
      */
     public record SimulationResult(
             int totalTrades,
             int successCount,
             int failureCount,
             long totalTimeMs,
-            double averageTimeMs
+            double averageTimeMs,
+            double throughputPerSecond,
+            LatencySummary latency,
+            List<ThroughputSeries.Sample> throughput
     ) {}
+    
+    /**
+     * Latency percentiles in milliseconds
+     */
+    public record LatencySummary(
+            double p50Ms,
+            double p90Ms,
+            double p99Ms,
+            double p999Ms,
+            double maxMs
+    ) {
+        static LatencySummary of(LatencyHistogram histogram) {
+            return new LatencySummary(
+                    toMillis(histogram.getValueAtPercentile(50)),
+                    toMillis(histogram.getValueAtPercentile(90)),
+                    toMillis(histogram.getValueAtPercentile(99)),
+                    toMillis(histogram.getValueAtPercentile(99.9)),
+                    toMillis(histogram.getMax()));
+        }
+        
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
 }
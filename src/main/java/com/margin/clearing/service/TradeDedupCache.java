@@ -0,0 +1,47 @@
+package com.margin.clearing.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.margin.clearing.entity.Trade;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recent orderIds and the trades they produced, so a retried submission is answered from memory
+ * Bounded by size and evicted a fixed time after the first submission. The entry is claimed before the
+ * trade is cleared, so a retry racing the original waits for its result instead of clearing it again.
+ * Older duplicates fall through to the unique constraint on trades.orderId.
+ */
+class TradeDedupCache {
+
+    private final Cache<String, CompletableFuture<Trade>> results;
+
+    TradeDedupCache(long maxSize, long ttlMs) {
+        if (maxSize <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("clearing.dedup.max-size and clearing.dedup.ttl-ms must be positive");
+        }
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Claims the orderId with {@code pending}; returns the earlier submission's result instead if there was one
+     */
+    CompletableFuture<Trade> claim(String orderId, CompletableFuture<Trade> pending) {
+        return results.asMap().putIfAbsent(orderId, pending);
+    }
+
+    /**
+     * Gives up a claim whose trade failed before it was cleared, so a retry can clear it
+     */
+    void release(String orderId, CompletableFuture<Trade> pending) {
+        results.asMap().remove(orderId, pending);
+    }
+
+    long size() {
+        return results.estimatedSize();
+    }
+}
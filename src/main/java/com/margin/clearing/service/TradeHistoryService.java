@@ -0,0 +1,123 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.store.TradeStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Pages through a client's trade history newest first using keyset (createdAt, id) cursors
+ * The cursor is opaque to callers: base64url of the last trade's createdAt and id.
+ * With the off-heap trade store enabled, pages are read from its per-client chain instead and the cursor
+ * holds the store position of the next trade.
+ */
+@Service
+public class TradeHistoryService {
+    
+    private final TradeRepository tradeRepository;
+    private final TradeStore tradeStore;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    
+    public TradeHistoryService(TradeRepository tradeRepository, ObjectProvider<TradeStore> tradeStore,
+                               @Value("${clearing.history.page-size:100}") int defaultPageSize,
+                               @Value("${clearing.history.max-page-size:1000}") int maxPageSize) {
+        this.tradeRepository = tradeRepository;
+        this.tradeStore = tradeStore.getIfAvailable();
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+    
+    /**
+     * Returns one page of trades; pass the previous page's nextCursor to continue (null starts from the newest)
+     */
+    public TradePage getTrades(String clientId, String cursor, Integer pageSize) {
+        int size = pageSize == null ? defaultPageSize : pageSize;
+        if (size <= 0 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        if (tradeStore != null) {
+            return getStoredTrades(clientId, cursor, size);
+        }
+        
+        // One extra row tells us whether another page exists without a COUNT
+        Limit limit = Limit.of(size + 1);
+        List<Trade> trades;
+        if (cursor == null || cursor.isEmpty()) {
+            trades = tradeRepository.findLatestByClientId(clientId, limit);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            trades = tradeRepository.findByClientIdBefore(clientId, position.createdAt(), position.id(), limit);
+        }
+        
+        if (trades.size() <= size) {
+            return new TradePage(trades, null);
+        }
+        List<Trade> page = trades.subList(0, size);
+        Trade last = page.get(size - 1);
+        return new TradePage(List.copyOf(page), new Cursor(last.getCreatedAt(), last.getId()).encode());
+    }
+    
+    private TradePage getStoredTrades(String clientId, String cursor, int size) {
+        long from = cursor == null || cursor.isEmpty() ? -1 : StoreCursor.decode(cursor).position();
+        List<Trade> trades = new ArrayList<>(size);
+        long next = tradeStore.readClient(clientId, from, size, trades);
+        return new TradePage(trades, next < 0 ? null : new StoreCursor(next).encode());
+    }
+    
+    /**
+     * One page of trades; nextCursor is null on the last page
+     */
+    public record TradePage(List<Trade> trades, String nextCursor) {}
+    
+    record Cursor(LocalDateTime createdAt, long id) {
+        
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+    
+    record StoreCursor(long position) {
+        
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(("@" + position).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static StoreCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                if (!raw.startsWith("@")) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                long position = Long.parseLong(raw.substring(1));
+                if (position < 0) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new StoreCursor(position);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+
+import java.util.List;
+
+/**
+ * Receives every trade MarginService has cleared or rejected, and every resulting balance change
+ * Called on the clearing thread after the trade's transaction has finished, so implementations must be cheap
+ */
+public interface TradeOutcomeListener {
+
+    default void onTradeProcessed(Trade trade) {
+    }
+
+    /**
+     * Called once trades acknowledged before they were inserted (journal drain, SHARDED write-behind) are committed
+     * to the trades table, now with their ids; called on the persisting thread
+     */
+    default void onTradesPersisted(List<Trade> trades) {
+    }
+
+    /**
+     * Called once a debit is applied (committed, or acknowledged by the SHARDED engine)
+     * {@code version} increases with every change to the account, so out-of-order deliveries can be discarded
+     */
+    default void onBalanceChanged(String clientId, long balanceCents, long version) {
+    }
+
+    /**
+     * Called when accounts were replaced outside of clearing; anything derived from earlier events is stale
+     */
+    default void onLedgerReset() {
+    }
+}
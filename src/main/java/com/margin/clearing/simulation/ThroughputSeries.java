@@ -0,0 +1,52 @@
+package com.margin.clearing.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Completions per fixed-width interval since the start of a run
+ */
+public class ThroughputSeries {
+
+    private final long startNanos;
+    private final long intervalNanos;
+    private final ConcurrentSkipListMap<Long, LongAdder> buckets = new ConcurrentSkipListMap<>();
+
+    public ThroughputSeries(long startNanos, long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be positive");
+        }
+        this.startNanos = startNanos;
+        this.intervalNanos = intervalMs * 1_000_000L;
+    }
+
+    public void record(long completedAtNanos) {
+        long bucket = Math.max(0, completedAtNanos - startNanos) / intervalNanos;
+        buckets.computeIfAbsent(bucket, b -> new LongAdder()).increment();
+    }
+
+    /**
+     * One sample per interval from the start through the last completion, empty intervals included
+     */
+    public List<Sample> samples() {
+        List<Sample> samples = new ArrayList<>();
+        if (buckets.isEmpty()) {
+            return samples;
+        }
+        long intervalMs = intervalNanos / 1_000_000L;
+        long last = buckets.lastKey();
+        for (long bucket = 0; bucket <= last; bucket++) {
+            LongAdder adder = buckets.get(bucket);
+            long completed = adder == null ? 0 : adder.sum();
+            samples.add(new Sample(bucket * intervalMs, completed, completed * 1000.0 / intervalMs));
+        }
+        return samples;
+    }
+
+    /**
+     * Completions in the interval starting {@code offsetMs} after the run started
+     */
+    public record Sample(long offsetMs, long completed, double perSecond) {}
+}
@@ -0,0 +1,226 @@
+package com.margin.clearing.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary image of every account's balance and version, taken at a trade journal sequence.
+ * <p>
+ * Layout: header (magic "ASNP", format version, journal sequence, creation time), then one record per
+ * account (u16 UTF-8 length, clientId bytes, balance cents, version), then a footer with the record count
+ * and a CRC32C of everything before the CRC. Files are written to a temp file, forced and atomically
+ * renamed to {@code accounts-<journalSeq>.snap}, so a crash never leaves a partial snapshot under that name.
+ * Snapshots are read through a read-only memory map and verified before use.
+ */
+public final class AccountSnapshotFile {
+
+    private static final int MAGIC = 0x41534E50; // "ASNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 24; // magic, version, journal seq, created at (epoch ms)
+    private static final int FOOTER_SIZE = 12; // record count, CRC32C
+    private static final String PREFIX = "accounts-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long journalSeq;
+    private final Instant createdAt;
+    private final long accountCount;
+
+    private AccountSnapshotFile(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        int size = buffer.capacity();
+        if (size < HEADER_SIZE + FOOTER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not an account snapshot (or unsupported format): " + path);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(size - 4).position(0));
+        if ((int) crc.getValue() != buffer.getInt(size - 4)) {
+            throw new IllegalStateException("Account snapshot is corrupt (checksum mismatch): " + path);
+        }
+        this.journalSeq = buffer.getLong(8);
+        this.createdAt = Instant.ofEpochMilli(buffer.getLong(16));
+        this.accountCount = buffer.getLong(size - FOOTER_SIZE);
+    }
+
+    /**
+     * Maps and verifies a snapshot file
+     * @throws IllegalStateException if the file is not a snapshot, is corrupt or exceeds a single 2 GiB mapping
+     */
+    public static AccountSnapshotFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Account snapshot " + path + " exceeds a single 2 GiB mapping");
+            }
+            return new AccountSnapshotFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Starts a snapshot of the balances as of {@code journalSeq}; nothing is visible until {@link Writer#commit()}
+     */
+    public static Writer writer(Path dir, long journalSeq) throws IOException {
+        Files.createDirectories(dir);
+        return new Writer(dir, journalSeq);
+    }
+
+    /**
+     * Snapshot files in {@code dir}, newest (highest journal sequence) first
+     */
+    public static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed())
+                    .toList();
+        }
+    }
+
+    /**
+     * Deletes all but the {@code retain} newest snapshots
+     */
+    public static void prune(Path dir, int retain) throws IOException {
+        List<Path> snapshots = list(dir);
+        for (Path old : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    /**
+     * Visits every account in the order written
+     */
+    public void forEach(AccountVisitor visitor) {
+        ByteBuffer records = buffer.duplicate().limit(buffer.capacity() - FOOTER_SIZE).position(HEADER_SIZE);
+        byte[] clientId = new byte[0];
+        for (long i = 0; i < accountCount; i++) {
+            if (records.remaining() < 2) {
+                throw new IllegalStateException("Account snapshot ends after " + i + " of " + accountCount + " records: " + path);
+            }
+            int length = Short.toUnsignedInt(records.getShort());
+            if (records.remaining() < length + 16) {
+                throw new IllegalStateException("Account snapshot ends after " + i + " of " + accountCount + " records: " + path);
+            }
+            if (clientId.length < length) {
+                clientId = new byte[length];
+            }
+            records.get(clientId, 0, length);
+            visitor.visit(new String(clientId, 0, length, StandardCharsets.UTF_8), records.getLong(), records.getLong());
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getAccountCount() {
+        return accountCount;
+    }
+
+    @FunctionalInterface
+    public interface AccountVisitor {
+        void visit(String clientId, long balanceCents, long version);
+    }
+
+    /**
+     * Streams records to a temp file; close without commit discards it
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final CheckedOutputStream checked;
+        private final DataOutputStream out;
+        private long count;
+        private boolean committed;
+
+        private Writer(Path dir, long journalSeq) throws IOException {
+            this.target = dir.resolve(String.format("%s%020d%s", PREFIX, journalSeq, SUFFIX));
+            this.temp = dir.resolve(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32C());
+            this.out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(journalSeq);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        public void add(String clientId, long balanceCents, long version) {
+            byte[] bytes = clientId.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("clientId too long for a snapshot record: " + clientId.length() + " characters");
+            }
+            try {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                out.writeLong(balanceCents);
+                out.writeLong(version);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write account snapshot " + temp, e);
+            }
+            count++;
+        }
+
+        /**
+         * Writes the footer, forces the file and renames it into place; returns the snapshot's path
+         */
+        public Path commit() throws IOException {
+            out.writeLong(count);
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            return target;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
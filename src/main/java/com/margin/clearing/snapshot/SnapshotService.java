@@ -0,0 +1,211 @@
+package com.margin.clearing.snapshot;
+
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.service.AccountProvisioningService;
+import com.margin.clearing.service.AccountProvisioningService.ProvisioningResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic account snapshots plus trade journal replay, so balances survive a restart
+ * <p>
+ * A snapshot streams every account's balance and version to an {@link AccountSnapshotFile} tagged with the
+ * journal's snapshot horizon: every journal record up to it has its balance committed, so the snapshot already
+ * reflects it. The accounts are read in one read-only statement while clearing carries on; the journal keeps
+ * every record after the latest snapshot's horizon.
+ * <p>
+ * On startup with an empty accounts table, the newest readable snapshot is loaded and the journal records after
+ * its horizon are folded in. A journal record only replaces a balance whose version is older, so replaying a
+ * record the snapshot already reflects is harmless. Balance changes that are not journaled (provisioning,
+ * settlement) are only kept once a later snapshot covers them; one is taken on shutdown.
+ * Requires the trade journal (clearing.journal.enabled=true).
+ */
+@Service
+@ConditionalOnProperty(name = "clearing.snapshot.enabled", havingValue = "true")
+public class SnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+    private static final String SELECT_SQL = "SELECT client_id, balance, version FROM accounts ORDER BY id";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final TradeJournal journal;
+    private final AccountRepository accountRepository;
+    private final AccountProvisioningService provisioningService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Path dir;
+    private final long intervalMs;
+    private final int retain;
+    private final Timer snapshotTimer;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotService(TradeJournal journal, AccountRepository accountRepository,
+                           AccountProvisioningService provisioningService, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${clearing.snapshot.dir:data/snapshots}") String dir,
+                           @Value("${clearing.snapshot.interval-ms:60000}") long intervalMs,
+                           @Value("${clearing.snapshot.retain:2}") int retain) {
+        if (retain < 1) {
+            throw new IllegalArgumentException("clearing.snapshot.retain must be at least 1");
+        }
+        this.journal = journal;
+        this.accountRepository = accountRepository;
+        this.provisioningService = provisioningService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        readOnlyTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.dir = Path.of(dir);
+        this.intervalMs = intervalMs;
+        this.retain = retain;
+        this.snapshotTimer = Timer.builder("clearing.snapshot")
+                .description("Account snapshot, from reading the accounts to the renamed file")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        restore();
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("account-snapshot").daemon().factory());
+            scheduler.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a snapshot of every account and lets the journal reuse the records it covers
+     */
+    public synchronized SnapshotResult takeSnapshot() {
+        long start = System.nanoTime();
+        long horizon = journal.getSnapshotHorizon();
+        // The snapshot must never point past journal records a crash could still lose
+        journal.force();
+        SnapshotResult result = readOnlyTemplate.execute(status -> {
+            try (AccountSnapshotFile.Writer writer = AccountSnapshotFile.writer(dir, horizon)) {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+                    statement.setFetchSize(FETCH_SIZE);
+                    return statement;
+                }, rs -> {
+                    writer.add(rs.getString(1), Money.toCents(rs.getBigDecimal(2)), rs.getLong(3));
+                });
+                Path file = writer.commit();
+                return new SnapshotResult(file.toString(), horizon, writer.getCount(), file.toFile().length(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write account snapshot to " + dir, e);
+            }
+        });
+        journal.retainAfter(horizon);
+        try {
+            AccountSnapshotFile.prune(dir, retain);
+        } catch (IOException e) {
+            log.warn("Failed to prune old account snapshots in {}: {}", dir, e.getMessage());
+        }
+        snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Snapshot of {} accounts at journal sequence {} written in {}ms ({} bytes)",
+                result.accounts(), horizon, result.elapsedMs(), result.bytes());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            takeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("Final account snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    private void tick() {
+        try {
+            takeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("Scheduled account snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the newest readable snapshot and the journal after it into an empty accounts table
+     */
+    private void restore() throws IOException {
+        AccountSnapshotFile snapshot = null;
+        for (Path file : AccountSnapshotFile.list(dir)) {
+            try {
+                snapshot = AccountSnapshotFile.open(file);
+                break;
+            } catch (IllegalStateException e) {
+                log.warn("Skipping unreadable account snapshot: {}", e.getMessage());
+            }
+        }
+        if (snapshot == null) {
+            log.info("No account snapshot in {}", dir);
+            return;
+        }
+        long seq = snapshot.getJournalSeq();
+        journal.retainAfter(seq);
+        if (accountRepository.count() > 0) {
+            log.info("Accounts table is not empty; not restoring snapshot {}", snapshot.getPath());
+            return;
+        }
+
+        // Newest balance per client in the journal tail (bounded by the journal's capacity). Records discarded after
+        // a rollback are not visited; for equal versions the later record wins, as it is the one that followed
+        Map<String, long[]> tail = new HashMap<>();
+        journal.forEachBalance(seq, (clientId, balanceCents, version) -> {
+            long[] latest = tail.get(clientId);
+            if (latest == null || version >= latest[1]) {
+                tail.put(clientId, new long[]{balanceCents, version});
+            }
+        });
+        int replayed = tail.size();
+
+        AccountSnapshotFile source = snapshot;
+        ProvisioningResult result = provisioningService.provisionRows(rows -> {
+            source.forEach((clientId, balanceCents, version) -> {
+                long[] latest = tail.remove(clientId);
+                if (latest != null && latest[1] > version) {
+                    rows.add(clientId, latest[0], latest[1]);
+                } else {
+                    rows.add(clientId, balanceCents, version);
+                }
+            });
+            // Accounts created after the snapshot that have traded since
+            tail.forEach((clientId, latest) -> rows.add(clientId, latest[0], latest[1]));
+        });
+        log.info("Restored {} accounts from {} (journal sequence {}, {} clients replayed from the journal up to {}) in {}ms",
+                result.inserted(), snapshot.getPath().getFileName(), seq, replayed, journal.getLastSeq(), result.elapsedMs());
+    }
+
+    /**
+     * Outcome of one snapshot
+     */
+    public record SnapshotResult(String file, long journalSeq, long accounts, long bytes, long elapsedMs) {}
+}
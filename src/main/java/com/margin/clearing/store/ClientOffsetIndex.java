@@ -0,0 +1,45 @@
+package com.margin.clearing.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Newest record position per interned client id, in a direct buffer that doubles as clients are added
+ * Each record links to the same client's previous one, so the head is all the index needs to hold.
+ * Not thread-safe; guarded by the owning {@link TradeStore}.
+ */
+final class ClientOffsetIndex {
+
+    private ByteBuffer heads;
+
+    ClientOffsetIndex(int initialClients) {
+        heads = allocate(Math.max(1, initialClients));
+    }
+
+    long head(int client) {
+        int offset = client * Long.BYTES;
+        return offset < heads.capacity() ? heads.getLong(offset) : -1;
+    }
+
+    void setHead(int client, long position) {
+        int offset = client * Long.BYTES;
+        if (offset >= heads.capacity()) {
+            ByteBuffer grown = allocate(Math.max(client + 1, heads.capacity() / Long.BYTES * 2));
+            grown.put(0, heads, 0, heads.capacity());
+            heads = grown;
+        }
+        heads.putLong(offset, position);
+    }
+
+    long bytes() {
+        return heads.capacity();
+    }
+
+    private static ByteBuffer allocate(int clients) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(clients * Long.BYTES).order(ByteOrder.nativeOrder());
+        for (int offset = 0; offset < buffer.capacity(); offset += Long.BYTES) {
+            buffer.putLong(offset, -1);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,88 @@
+package com.margin.clearing.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Cursor over trade records, pooled by {@link TradeStore} and used by one thread at a time
+ * Uncompressed records are read in place; a compressed block is inflated once into a reused direct buffer and
+ * kept while the scan stays in it, so walking records allocates nothing per record. The buffer and Inflater are
+ * created on the first compressed block; {@link #close()} frees the Inflater's native memory.
+ */
+final class RecordReader implements AutoCloseable {
+
+    private ByteBuffer block;
+    private Inflater inflater;
+    private final byte[] orderId = new byte[TradeSegment.MAX_ORDER_ID_BYTES];
+    private TradeSegment blockSegment;
+    private int blockIndex = -1;
+    private ByteBuffer compressedView;
+    private ByteBuffer buffer;
+
+    /**
+     * Positions the reader on {@code slot} of {@code segment}; returns the record's offset in {@link #buffer()}
+     */
+    int seek(TradeSegment segment, int slot) {
+        if (!segment.isCompressed()) {
+            buffer = segment.records();
+            return slot * TradeSegment.RECORD_SIZE;
+        }
+        int index = slot / TradeSegment.BLOCK_RECORDS;
+        if (segment != blockSegment || index != blockIndex) {
+            inflate(segment, index);
+        }
+        buffer = block;
+        return (slot % TradeSegment.BLOCK_RECORDS) * TradeSegment.RECORD_SIZE;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Scratch space for decoding an orderId
+     */
+    byte[] orderIdBytes() {
+        return orderId;
+    }
+
+    @Override
+    public void close() {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    private void inflate(TradeSegment segment, int index) {
+        if (inflater == null) {
+            block = ByteBuffer.allocateDirect(TradeSegment.BLOCK_BYTES).order(ByteOrder.nativeOrder());
+            inflater = new Inflater();
+        }
+        if (segment != blockSegment) {
+            compressedView = segment.compressed().duplicate().order(ByteOrder.nativeOrder());
+        }
+        int start = compressedView.getInt(index * Integer.BYTES);
+        int end = compressedView.getInt((index + 1) * Integer.BYTES);
+        compressedView.limit(end).position(start);
+        block.clear();
+        inflater.reset();
+        inflater.setInput(compressedView);
+        try {
+            while (block.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(block) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt trade store block " + index + " of segment at "
+                    + segment.getBasePosition(), e);
+        }
+        if (block.hasRemaining()) {
+            throw new IllegalStateException("Short trade store block " + index + " of segment at " + segment.getBasePosition());
+        }
+        blockSegment = segment;
+        blockIndex = index;
+    }
+}
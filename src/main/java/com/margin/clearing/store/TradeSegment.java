@@ -0,0 +1,134 @@
+package com.margin.clearing.store;
+
+import com.margin.clearing.entity.Trade;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Deflater;
+
+/**
+ * A fixed number of fixed-width trade records in one direct buffer
+ * <p>
+ * Once full, a segment is sealed: it never changes again, and may be compressed in independent blocks of
+ * {@link #BLOCK_RECORDS} records so a reader inflates only the block it needs. The compressed form starts with
+ * the block offset table (blockCount + 1 ints), followed by the deflated blocks.
+ * Not thread-safe; guarded by the owning {@link TradeStore}.
+ */
+final class TradeSegment {
+
+    static final int RECORD_SIZE = 128;
+    static final int BLOCK_RECORDS = 256;
+    static final int BLOCK_BYTES = RECORD_SIZE * BLOCK_RECORDS;
+    static final int MAX_ORDER_ID_BYTES = Trade.MAX_ORDER_ID_LENGTH;
+
+    // Record layout (native byte order)
+    static final int R_TRADE_ID = 0;
+    static final int R_CREATED_AT = 8;          // epoch nanos, UTC
+    static final int R_PREV = 16;               // the same client's previous record, -1 for none
+    static final int R_PRICE = 24;              // cents
+    static final int R_MARGIN = 32;             // cents
+    static final int R_CLIENT = 40;
+    static final int R_SYMBOL = 44;
+    static final int R_QUANTITY = 48;
+    static final int R_STATUS = 52;
+    static final int R_ORDER_ID_LENGTH = 53;
+    static final int R_ORDER_ID = 64;
+
+    private final long basePosition;
+    private final int capacity;
+    private ByteBuffer records;
+    private ByteBuffer compressed;
+    private int count;
+
+    TradeSegment(long basePosition, int capacity) {
+        this.basePosition = basePosition;
+        this.capacity = capacity;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    long getBasePosition() {
+        return basePosition;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * Off-heap bytes held by this segment
+     */
+    long bytes() {
+        return compressed != null ? compressed.capacity() : records.capacity();
+    }
+
+    /**
+     * Claims the next slot and returns its byte offset in {@link #records()}
+     */
+    int claim() {
+        if (isFull()) {
+            throw new IllegalStateException("Segment at " + basePosition + " is sealed");
+        }
+        return count++ * RECORD_SIZE;
+    }
+
+    /**
+     * Uncompressed records, or null once the segment is compressed
+     */
+    ByteBuffer records() {
+        return records;
+    }
+
+    ByteBuffer compressed() {
+        return compressed;
+    }
+
+    /**
+     * Deflates a sealed segment block by block; returns null if that saves nothing
+     * Reads only the sealed records, so it may run outside the store's lock.
+     */
+    ByteBuffer compress(int level) {
+        if (!isFull()) {
+            throw new IllegalStateException("Only a sealed segment can be compressed");
+        }
+        int blocks = capacity / BLOCK_RECORDS;
+        int header = (blocks + 1) * Integer.BYTES;
+        ByteBuffer output = ByteBuffer.allocateDirect(header + records.capacity()).order(ByteOrder.nativeOrder());
+        ByteBuffer input = records.duplicate();
+        Deflater deflater = new Deflater(level);
+        try {
+            output.position(header);
+            for (int block = 0; block < blocks; block++) {
+                output.putInt(block * Integer.BYTES, output.position());
+                input.limit((block + 1) * BLOCK_BYTES).position(block * BLOCK_BYTES);
+                deflater.reset();
+                deflater.setInput(input);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (!output.hasRemaining()) {
+                        return null;
+                    }
+                    deflater.deflate(output);
+                }
+            }
+            output.putInt(blocks * Integer.BYTES, output.position());
+        } finally {
+            deflater.end();
+        }
+        output.flip();
+        ByteBuffer packed = ByteBuffer.allocateDirect(output.remaining()).order(ByteOrder.nativeOrder());
+        packed.put(output).flip();
+        return packed;
+    }
+
+    /**
+     * Swaps the raw records for their compressed form, freeing the raw buffer to the collector
+     */
+    void install(ByteBuffer packed) {
+        this.compressed = packed;
+        this.records = null;
+    }
+}
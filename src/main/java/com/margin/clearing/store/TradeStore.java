@@ -0,0 +1,327 @@
+package com.margin.clearing.store;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.position.SymbolTable;
+import com.margin.clearing.service.TradeOutcomeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+
+/**
+ * Off-heap, append-only store of processed trades behind client history and the recent-trades view
+ * <p>
+ * Trades are fixed-width records ({@link TradeSegment#RECORD_SIZE} bytes) in direct-buffer segments addressed by
+ * a global position. Each record carries the position of the same client's previous record, and
+ * {@link ClientOffsetIndex} holds each client's newest one, so a client's history is a walk down that chain with
+ * no per-record objects beyond the trades returned. Client ids and symbols are interned to ints.
+ * <p>
+ * A full segment is sealed and, optionally, compressed in the background; a new one is rolled on the next
+ * append. Beyond max-segments the oldest segment is dropped and chains into it end there.
+ * Records follow processing order, so a client's history is newest-processed first.
+ * <p>
+ * Like the trades table, the store only holds trades with an id: trades acknowledged before they are inserted
+ * (journal, SHARDED write-behind) are appended once persisted.
+ */
+public class TradeStore implements TradeOutcomeListener, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeStore.class);
+    private static final Trade.TradeStatus[] STATUSES = Trade.TradeStatus.values();
+
+    private final int segmentRecords;
+    private final int maxSegments;
+    private final boolean compress;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SymbolTable clients = new SymbolTable();
+    private final SymbolTable symbols = new SymbolTable();
+    private final ClientOffsetIndex index = new ClientOffsetIndex(1024);
+    private final List<TradeSegment> segments = new ArrayList<>();
+    // Idle readers; request threads may be virtual, so readers are pooled rather than kept per thread
+    private final BlockingQueue<RecordReader> readers =
+            new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private final ExecutorService sealer;
+    private long firstPosition;
+    private long nextPosition;
+
+    /**
+     * @param segmentRecords records per segment, a multiple of {@link TradeSegment#BLOCK_RECORDS}
+     * @param maxSegments    segments kept before the oldest is dropped (0 keeps every segment)
+     * @param compress       deflate sealed segments
+     */
+    public TradeStore(int segmentRecords, int maxSegments, boolean compress) {
+        if (segmentRecords <= 0 || segmentRecords % TradeSegment.BLOCK_RECORDS != 0) {
+            throw new IllegalArgumentException("clearing.trade-store.segment-records must be a positive multiple of "
+                    + TradeSegment.BLOCK_RECORDS);
+        }
+        if (maxSegments < 0) {
+            throw new IllegalArgumentException("clearing.trade-store.max-segments must not be negative");
+        }
+        this.segmentRecords = segmentRecords;
+        this.maxSegments = maxSegments;
+        this.compress = compress;
+        this.sealer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("trade-store-sealer").daemon().factory());
+    }
+
+    @Override
+    public void onTradeProcessed(Trade trade) {
+        if (trade.getId() != null) {
+            append(trade);
+        }
+    }
+
+    @Override
+    public void onTradesPersisted(List<Trade> trades) {
+        for (Trade trade : trades) {
+            append(trade);
+        }
+    }
+
+    private void append(Trade trade) {
+        append(trade.getId(), trade.getClientId(), trade.getSymbol(), trade.getOrderId(), trade.getQuantity(),
+                Money.toCents(trade.getPrice()), trade.getMarginRequiredCents(), trade.getStatus(),
+                trade.getCreatedAt() != null ? trade.getCreatedAt() : LocalDateTime.now());
+    }
+
+    /**
+     * Appends one trade as the newest record of its client
+     */
+    public void append(long tradeId, String clientId, String symbol, String orderId, int quantity, long priceCents,
+                       long marginCents, Trade.TradeStatus status, LocalDateTime createdAt) {
+        byte[] orderIdBytes = orderId == null ? null : orderId.getBytes(StandardCharsets.UTF_8);
+        if (orderIdBytes != null && orderIdBytes.length > TradeSegment.MAX_ORDER_ID_BYTES) {
+            throw new IllegalArgumentException("orderId longer than " + TradeSegment.MAX_ORDER_ID_BYTES
+                    + " bytes cannot be stored: " + orderId);
+        }
+        long createdAtNanos = Math.addExact(Math.multiplyExact(createdAt.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L),
+                createdAt.getNano());
+
+        lock.writeLock().lock();
+        try {
+            TradeSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.isFull()) {
+                segment = roll();
+            }
+            int client = clients.intern(clientId);
+            long prev = index.head(client);
+            ByteBuffer records = segment.records();
+            int offset = segment.claim();
+            records.putLong(offset + TradeSegment.R_TRADE_ID, tradeId);
+            records.putLong(offset + TradeSegment.R_CREATED_AT, createdAtNanos);
+            records.putLong(offset + TradeSegment.R_PREV, prev >= firstPosition ? prev : -1);
+            records.putLong(offset + TradeSegment.R_PRICE, priceCents);
+            records.putLong(offset + TradeSegment.R_MARGIN, marginCents);
+            records.putInt(offset + TradeSegment.R_CLIENT, client);
+            records.putInt(offset + TradeSegment.R_SYMBOL, symbols.intern(symbol));
+            records.putInt(offset + TradeSegment.R_QUANTITY, quantity);
+            records.put(offset + TradeSegment.R_STATUS, (byte) status.ordinal());
+            records.put(offset + TradeSegment.R_ORDER_ID_LENGTH, (byte) (orderIdBytes == null ? -1 : orderIdBytes.length));
+            if (orderIdBytes != null) {
+                records.put(offset + TradeSegment.R_ORDER_ID, orderIdBytes);
+            }
+            index.setHead(client, nextPosition++);
+            if (segment.isFull() && compress) {
+                TradeSegment sealed = segment;
+                sealer.execute(() -> compress(sealed));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds up to {@code limit} of the client's trades to {@code out}, newest first, starting at position
+     * {@code from} (-1 for the newest); returns the position to continue from, or -1 after the oldest
+     */
+    public long readClient(String clientId, long from, int limit, List<Trade> out) {
+        lock.readLock().lock();
+        try {
+            int client = clients.find(clientId);
+            if (client < 0) {
+                return -1;
+            }
+            long position = from < 0 ? index.head(client) : from;
+            RecordReader reader = acquireReader();
+            try {
+                if (from >= 0 && position < nextPosition && position >= firstPosition) {
+                    int offset = seek(reader, position);
+                    if (reader.buffer().getInt(offset + TradeSegment.R_CLIENT) != client) {
+                        throw new IllegalArgumentException("Invalid cursor");
+                    }
+                } else if (from >= nextPosition) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                for (int read = 0; read < limit && position >= firstPosition; read++) {
+                    int offset = seek(reader, position);
+                    out.add(toTrade(reader, offset));
+                    position = reader.buffer().getLong(offset + TradeSegment.R_PREV);
+                }
+                return position >= firstPosition ? position : -1;
+            } finally {
+                releaseReader(reader);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} of the most recently stored trades, newest first
+     */
+    public List<Trade> latest(int limit) {
+        lock.readLock().lock();
+        try {
+            int count = (int) Math.max(0, Math.min(limit, nextPosition - firstPosition));
+            List<Trade> trades = new ArrayList<>(count);
+            RecordReader reader = acquireReader();
+            try {
+                for (long position = nextPosition - 1; position >= nextPosition - count; position--) {
+                    trades.add(toTrade(reader, seek(reader, position)));
+                }
+            } finally {
+                releaseReader(reader);
+            }
+            return trades;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for segments sealed so far to be compressed
+     */
+    public void awaitSealed() {
+        try {
+            sealer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trade store sealer failed", e.getCause());
+        }
+    }
+
+    public long getRecordCount() {
+        lock.readLock().lock();
+        try {
+            return nextPosition - firstPosition;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Direct memory held by segments and the client index
+     */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = index.bytes();
+            for (TradeSegment segment : segments) {
+                bytes += segment.bytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        sealer.shutdownNow();
+        for (RecordReader reader; (reader = readers.poll()) != null; ) {
+            reader.close();
+        }
+    }
+
+    private RecordReader acquireReader() {
+        RecordReader reader = readers.poll();
+        return reader != null ? reader : new RecordReader();
+    }
+
+    /**
+     * Returns the reader to the pool, or frees its Inflater if the pool is full
+     */
+    private void releaseReader(RecordReader reader) {
+        if (!readers.offer(reader)) {
+            reader.close();
+        }
+    }
+
+    private TradeSegment roll() {
+        TradeSegment segment = new TradeSegment(nextPosition, segmentRecords);
+        segments.add(segment);
+        if (maxSegments > 0 && segments.size() > maxSegments) {
+            segments.remove(0);
+            firstPosition = segments.get(0).getBasePosition();
+        }
+        return segment;
+    }
+
+    private void compress(TradeSegment segment) {
+        long start = System.nanoTime();
+        ByteBuffer packed = segment.compress(Deflater.BEST_SPEED);
+        if (packed == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            segment.install(packed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compressed trade store segment at {} to {} bytes in {}ms", segment.getBasePosition(),
+                    packed.capacity(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private int seek(RecordReader reader, long position) {
+        TradeSegment segment = segments.get((int) ((position - firstPosition) / segmentRecords));
+        return reader.seek(segment, (int) (position - segment.getBasePosition()));
+    }
+
+    private Trade toTrade(RecordReader reader, int offset) {
+        ByteBuffer records = reader.buffer();
+        long tradeId = records.getLong(offset + TradeSegment.R_TRADE_ID);
+        long createdAtNanos = records.getLong(offset + TradeSegment.R_CREATED_AT);
+        Trade trade = new Trade(
+                tradeId,
+                clients.name(records.getInt(offset + TradeSegment.R_CLIENT)),
+                symbols.name(records.getInt(offset + TradeSegment.R_SYMBOL)),
+                records.getInt(offset + TradeSegment.R_QUANTITY),
+                Money.centsToBigDecimal(records.getLong(offset + TradeSegment.R_PRICE)),
+                null,
+                STATUSES[records.get(offset + TradeSegment.R_STATUS)],
+                LocalDateTime.ofEpochSecond(Math.floorDiv(createdAtNanos, 1_000_000_000L),
+                        (int) Math.floorMod(createdAtNanos, 1_000_000_000L), ZoneOffset.UTC));
+        trade.setMarginRequiredCents(records.getLong(offset + TradeSegment.R_MARGIN));
+        int orderIdLength = records.get(offset + TradeSegment.R_ORDER_ID_LENGTH);
+        if (orderIdLength >= 0) {
+            byte[] bytes = reader.orderIdBytes();
+            records.get(offset + TradeSegment.R_ORDER_ID, bytes, 0, orderIdLength);
+            trade.setOrderId(new String(bytes, 0, orderIdLength, StandardCharsets.UTF_8));
+        }
+        return trade;
+    }
+}
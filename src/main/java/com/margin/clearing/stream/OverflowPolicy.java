@@ -0,0 +1,13 @@
+package com.margin.clearing.stream;
+
+/**
+ * What a subscriber's buffer does when the consumer falls behind and the buffer is full
+ */
+public enum OverflowPolicy {
+    /** Discard the oldest buffered event to make room */
+    DROP_OLDEST,
+    /** Discard the incoming event */
+    DROP_NEWEST,
+    /** Keep only the latest balance per client; trades beyond the buffer drop oldest first */
+    COALESCE
+}
@@ -0,0 +1,17 @@
+package com.margin.clearing.stream;
+
+/**
+ * One SSE event, serialized once and shared by every subscriber
+ * {@code clientId} drives filtering, {@code version} orders balance events for coalescing
+ */
+record StreamEvent(String name, String clientId, long version, String data) {
+
+    static final String TRADE = "trade";
+    static final String BALANCE = "balance";
+    static final String MARGIN_CALL = "margin_call";
+    static final String DROPPED = "dropped";
+
+    boolean isBalance() {
+        return BALANCE.equals(name);
+    }
+}
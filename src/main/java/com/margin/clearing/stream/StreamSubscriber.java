@@ -0,0 +1,104 @@
+package com.margin.clearing.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One SSE connection: its filter, its bounded buffer and its overflow policy
+ * The dispatch thread offers events, a sender task drains them; both sides lock the buffer only briefly.
+ */
+class StreamSubscriber {
+
+    private final SseEmitter emitter;
+    private final Set<String> clientIds;
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final ArrayDeque<StreamEvent> buffer;
+    // COALESCE only: the buffered balance event per client, replaced in place by newer versions
+    private final Map<String, StreamEvent> pendingBalances = new HashMap<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private long dropped;
+
+    StreamSubscriber(SseEmitter emitter, Set<String> clientIds, OverflowPolicy policy, int capacity) {
+        this.emitter = emitter;
+        this.clientIds = clientIds;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    SseEmitter emitter() {
+        return emitter;
+    }
+
+    boolean accepts(StreamEvent event) {
+        return clientIds.isEmpty() || event.clientId() == null || clientIds.contains(event.clientId());
+    }
+
+    /**
+     * Buffers the event according to the overflow policy; returns true if a sender needs to be scheduled
+     */
+    synchronized boolean offer(StreamEvent event) {
+        if (policy == OverflowPolicy.COALESCE && event.isBalance()) {
+            StreamEvent pending = pendingBalances.get(event.clientId());
+            if (pending != null) {
+                if (event.version() > pending.version()) {
+                    pendingBalances.put(event.clientId(), event);
+                }
+                return false;
+            }
+        }
+        if (buffer.size() >= capacity) {
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                dropped++;
+                return false;
+            }
+            StreamEvent evicted = buffer.pollFirst();
+            if (evicted != null && evicted.isBalance()) {
+                pendingBalances.remove(evicted.clientId());
+            }
+            dropped++;
+        }
+        buffer.addLast(event);
+        if (policy == OverflowPolicy.COALESCE && event.isBalance()) {
+            pendingBalances.put(event.clientId(), event);
+        }
+        return sending.compareAndSet(false, true);
+    }
+
+    /**
+     * Takes up to {@code max} buffered events in order, with a "dropped" notice first if anything was lost
+     */
+    synchronized List<StreamEvent> drain(int max) {
+        List<StreamEvent> events = new ArrayList<>(Math.min(max, buffer.size() + 1));
+        if (dropped > 0) {
+            events.add(new StreamEvent(StreamEvent.DROPPED, null, 0, Long.toString(dropped)));
+            dropped = 0;
+        }
+        while (events.size() < max && !buffer.isEmpty()) {
+            StreamEvent event = buffer.pollFirst();
+            if (policy == OverflowPolicy.COALESCE && event.isBalance()) {
+                event = pendingBalances.remove(event.clientId());
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Called by the sender when it has nothing left; returns true if events arrived meanwhile and it should go on
+     */
+    boolean finishSending() {
+        sending.set(false);
+        synchronized (this) {
+            return (!buffer.isEmpty() || dropped > 0) && sending.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.margin.clearing.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.money.Money;
+import com.margin.clearing.risk.MarginCall;
+import com.margin.clearing.risk.MarginCallListener;
+import com.margin.clearing.service.TradeOutcomeListener;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes trade outcomes, balance changes and margin calls to SSE subscribers of /api/trades/stream.
+ * The clearing thread only offers the outcome to one bounded queue (dropping it if full), so
+ * the cost on the clearing path doesn't depend on the number of viewers. A dispatch thread
+ * serializes each event once and fans it out into per-subscriber buffers; each subscriber is
+ * written by its own short-lived virtual thread, so a slow socket only backs up its own buffer.
+ */
+@Component
+public class TradeStreamBroadcaster implements TradeOutcomeListener, MarginCallListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeStreamBroadcaster.class);
+    private static final int SEND_BATCH = 64;
+
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Object> outcomes;
+    private final List<StreamSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("trade-stream-sender-", 0).factory());
+    private final Thread dispatcher;
+    private final int subscriberBufferSize;
+    private final long heartbeatMs;
+    private final AtomicLong droppedOutcomes = new AtomicLong();
+    private volatile boolean running = true;
+
+    public TradeStreamBroadcaster(ObjectMapper objectMapper,
+                                  @Value("${clearing.stream.queue-capacity:65536}") int queueCapacity,
+                                  @Value("${clearing.stream.subscriber-buffer-size:256}") int subscriberBufferSize,
+                                  @Value("${clearing.stream.heartbeat-ms:15000}") long heartbeatMs) {
+        this.objectMapper = objectMapper;
+        this.outcomes = new ArrayBlockingQueue<>(queueCapacity);
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.heartbeatMs = heartbeatMs;
+        this.dispatcher = new Thread(this::dispatchLoop, "trade-stream-dispatch");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void onTradeProcessed(Trade trade) {
+        if (!subscribers.isEmpty() && !outcomes.offer(trade)) {
+            droppedOutcomes.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onBalanceChanged(String clientId, long balanceCents, long version) {
+        if (!subscribers.isEmpty() && !outcomes.offer(new BalanceChange(clientId, Money.centsToBigDecimal(balanceCents), version))) {
+            droppedOutcomes.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onMarginCall(MarginCall call) {
+        if (!subscribers.isEmpty() && !outcomes.offer(call)) {
+            droppedOutcomes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Opens a stream; an empty clientIds set means every client
+     */
+    public SseEmitter subscribe(Set<String> clientIds, OverflowPolicy policy, long timeoutMs) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        StreamSubscriber subscriber = new StreamSubscriber(emitter, clientIds, policy, subscriberBufferSize);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        try {
+            // Commits the response headers right away instead of at the first event
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        log.debug("Stream subscriber added (clients={}, policy={}), {} open", clientIds, policy, subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Outcomes lost because the dispatch queue was full
+     */
+    public long getDroppedOutcomes() {
+        return droppedOutcomes.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        subscribers.forEach(subscriber -> subscriber.emitter().complete());
+        subscribers.clear();
+        senders.shutdown();
+    }
+
+    private void dispatchLoop() {
+        long nextHeartbeat = System.currentTimeMillis() + heartbeatMs;
+        while (running) {
+            try {
+                Object outcome = outcomes.poll(Math.max(1, nextHeartbeat - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (outcome != null) {
+                    dispatch(toEvent(outcome));
+                }
+                if (System.currentTimeMillis() >= nextHeartbeat) {
+                    subscribers.forEach(this::heartbeat);
+                    nextHeartbeat = System.currentTimeMillis() + heartbeatMs;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Trade stream dispatch failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private StreamEvent toEvent(Object outcome) {
+        try {
+            if (outcome instanceof Trade trade) {
+                return new StreamEvent(StreamEvent.TRADE, trade.getClientId(), 0, objectMapper.writeValueAsString(trade));
+            }
+            if (outcome instanceof MarginCall call) {
+                return new StreamEvent(StreamEvent.MARGIN_CALL, call.clientId(), 0, objectMapper.writeValueAsString(call));
+            }
+            BalanceChange change = (BalanceChange) outcome;
+            return new StreamEvent(StreamEvent.BALANCE, change.clientId(), change.version(), objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize stream event", e);
+        }
+    }
+
+    private void dispatch(StreamEvent event) {
+        for (StreamSubscriber subscriber : subscribers) {
+            if (subscriber.accepts(event) && subscriber.offer(event)) {
+                senders.execute(() -> send(subscriber));
+            }
+        }
+    }
+
+    private void send(StreamSubscriber subscriber) {
+        try {
+            do {
+                for (List<StreamEvent> events = subscriber.drain(SEND_BATCH); !events.isEmpty();
+                     events = subscriber.drain(SEND_BATCH)) {
+                    for (StreamEvent event : events) {
+                        subscriber.emitter().send(SseEmitter.event().name(event.name()).data(event.data()));
+                    }
+                }
+            } while (subscriber.finishSending());
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter callbacks remove the subscriber
+            subscribers.remove(subscriber);
+            subscriber.emitter().completeWithError(e);
+        }
+    }
+
+    private void heartbeat(StreamSubscriber subscriber) {
+        senders.execute(() -> {
+            try {
+                subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(subscriber);
+                subscriber.emitter().completeWithError(e);
+            }
+        });
+    }
+
+    /**
+     * Payload of a "balance" event
+     */
+    public record BalanceChange(String clientId, BigDecimal balance, long version) {}
+}
@@ -0,0 +1,67 @@
+package com.margin.clearing.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLI = 1_000_000;
+
+    /**
+     * Test that a saturated engine with steady latency is given more permits, up to max-limit
+     */
+    @Test
+    void testOnSample_SteadyLatencyGrowsToMax() {
+        // Arrange
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 50, 2.0);
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(MILLI, limit.getLimit());
+        }
+
+        // Assert
+        assertEquals(50, limit.getLimit());
+    }
+
+    /**
+     * Test that latency rising past tolerance × baseline backs the limit off toward min-limit
+     */
+    @Test
+    void testOnSample_LatencySpikeShrinksLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(40, 4, 40, 2.0);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(MILLI, limit.getLimit());
+        }
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(20 * MILLI, limit.getLimit());
+        }
+
+        // Assert
+        assertTrue(limit.getLimit() < 20, "limit was " + limit.getLimit());
+        assertTrue(limit.getShortRttNanos() > limit.getLongRttNanos());
+    }
+
+    /**
+     * Edge Case Test: samples from a mostly idle engine do not raise the limit, and bad bounds are refused
+     */
+    @Test
+    void testOnSample_AppLimitedKeepsLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 2.0);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(MILLI, 1);
+        }
+
+        // Assert
+        assertEquals(20, limit.getLimit());
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 4, 200, 2.0));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(20, 4, 200, 0.5));
+    }
+}
@@ -0,0 +1,140 @@
+package com.margin.clearing.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * Admission control with a fixed limit of one trade at a time
+     */
+    private AdmissionControl singleSlot(int maxQueuePerClient, long maxWaitMs) {
+        return new AdmissionControl(true, 1, 1, 1, 2.0, 100, maxQueuePerClient, maxWaitMs, registry);
+    }
+
+    /**
+     * Test that freed slots go to the waiting clients in turn, not to whoever queued the most
+     */
+    @Test
+    void testAdmit_WaitingClientsServedInTurn() {
+        // Arrange
+        AdmissionControl admission = singleSlot(10, 1000);
+        AdmissionControl.Permit first = admission.admit("CLIENT_A");
+        CompletableFuture<AdmissionControl.Permit> a2 = admission.admitAsync("CLIENT_A");
+        CompletableFuture<AdmissionControl.Permit> a3 = admission.admitAsync("CLIENT_A");
+        CompletableFuture<AdmissionControl.Permit> b1 = admission.admitAsync("CLIENT_B");
+        assertEquals(3, admission.getQueued());
+
+        // Act & Assert
+        first.close();
+        assertTrue(a2.isDone());
+        assertFalse(b1.isDone());
+
+        a2.join().close();
+        assertTrue(b1.isDone());
+        assertFalse(a3.isDone());
+
+        b1.join().close();
+        a3.join().close();
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getQueued());
+    }
+
+    /**
+     * Edge Case Test: a client whose queue is full is turned away with a Retry-After hint; other clients still queue
+     */
+    @Test
+    void testAdmit_FullClientQueueRejected() {
+        // Arrange
+        AdmissionControl admission = singleSlot(1, 1000);
+        AdmissionControl.Permit first = admission.admit("CLIENT_A");
+        CompletableFuture<AdmissionControl.Permit> queued = admission.admitAsync("CLIENT_A");
+
+        // Act
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, () -> admission.admit("CLIENT_A"));
+        CompletableFuture<AdmissionControl.Permit> other = admission.admitAsync("CLIENT_B");
+
+        // Assert
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        assertFalse(other.isDone());
+        assertEquals(1, registry.get("clearing.admission.rejected").counter().count());
+        first.close();
+        queued.join().close();
+        other.join().close();
+    }
+
+    /**
+     * Edge Case Test: a client named "batch" neither shares a queue nor a per-client budget with batch callers
+     */
+    @Test
+    void testAdmitBatch_QueuedApartFromClientNamedBatch() throws Exception {
+        // Arrange
+        AdmissionControl admission = singleSlot(1, 2000);
+        AdmissionControl.Permit first = admission.admit("CLIENT_A");
+        CompletableFuture<AdmissionControl.Permit> client = admission.admitAsync("batch");
+
+        // Act
+        CompletableFuture<AdmissionControl.Permit> batch = new CompletableFuture<>();
+        Thread.startVirtualThread(() -> {
+            try {
+                batch.complete(admission.admitBatch());
+            } catch (RuntimeException e) {
+                batch.completeExceptionally(e);
+            }
+        });
+        for (int i = 0; i < 100 && admission.getQueued() < 2 && !batch.isDone(); i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertFalse(batch.isDone());
+        assertEquals(2, admission.getQueued());
+        first.close();
+        client.join().close();
+        batch.join().close();
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getQueued());
+    }
+
+    /**
+     * Edge Case Test: a caller that waits out max-wait-ms is rejected and leaves the queue
+     */
+    @Test
+    void testAdmit_WaitTimesOut() {
+        // Arrange
+        AdmissionControl admission = singleSlot(10, 50);
+        AdmissionControl.Permit first = admission.admit("CLIENT_A");
+
+        // Act
+        long start = System.nanoTime();
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("CLIENT_B"));
+
+        // Assert
+        assertTrue(System.nanoTime() - start >= 40_000_000);
+        assertEquals(0, admission.getQueued());
+        first.close();
+        first.close();
+        assertEquals(0, admission.getInFlight());
+    }
+
+    /**
+     * Edge Case Test: disabled admission control admits everything
+     */
+    @Test
+    void testAdmit_DisabledAdmitsEverything() {
+        // Arrange
+        AdmissionControl admission = new AdmissionControl(false, 1, 1, 1, 2.0, 0, 0, 50, registry);
+
+        // Act & Assert
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(admission.admit("CLIENT_A"));
+        }
+        assertEquals(0, admission.getInFlight());
+    }
+}
@@ -0,0 +1,90 @@
+package com.margin.clearing.config;
+
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.SimulationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.executor.mode=VIRTUAL",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.url=jdbc:h2:mem:virtual"
+})
+class VirtualExecutorModeTest {
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private ExecutorService taskExecutor;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that the simulation runs on virtual threads with DataSource access capped at the pool size
+     */
+    @Test
+    void testRunSimulation_OnVirtualThreads() throws Exception {
+        // Arrange
+        simulationService.initializeAccounts();
+        ConnectionLimitingDataSource gate = assertInstanceOf(ConnectionLimitingDataSource.class, dataSource);
+
+        // Act
+        boolean virtual = taskExecutor.submit(() -> Thread.currentThread().isVirtual()).get();
+        SimulationService.SimulationResult result = simulationService.runSimulation();
+
+        // Assert
+        assertTrue(virtual);
+        assertEquals(4, gate.getMaxConnections());
+        assertEquals(1000, result.successCount() + result.failureCount());
+        assertEquals(1000, tradeRepository.count());
+        assertEquals(4, gate.getAvailablePermits());
+    }
+
+    /**
+     * Edge Case Test: callers over the limit wait, then time out, and closing a connection frees its permit
+     */
+    @Test
+    void testGate_BlocksBeyondLimitAndReleasesOnClose() throws Exception {
+        DriverManagerDataSource target = new DriverManagerDataSource("jdbc:h2:mem:gate", "sa", "");
+        ConnectionLimitingDataSource gate = new ConnectionLimitingDataSource(target, 1, 50);
+
+        Connection first = gate.getConnection();
+        assertThrows(SQLTransientConnectionException.class, gate::getConnection);
+
+        first.close();
+        first.close();
+        assertEquals(1, gate.getAvailablePermits());
+        try (Connection second = gate.getConnection()) {
+            assertFalse(second.isClosed());
+            assertEquals(0, gate.getAvailablePermits());
+        }
+        assertEquals(1, gate.getAvailablePermits());
+    }
+}
@@ -0,0 +1,105 @@
+package com.margin.clearing.engine;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.ClearingMode;
+import com.margin.clearing.service.MarginService;
+import com.margin.clearing.service.SimulationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.mode=SHARDED",
+        "spring.datasource.url=jdbc:h2:mem:sharded"
+})
+class ShardedLedgerEngineTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        marginService.awaitPersistence();
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that the sharded engine debits and persists like the pessimistic path
+     */
+    @Test
+    void testProcessTrade_ClearsAndPersistsAsynchronously() {
+        // Arrange
+        accountRepository.save(new Account("TEST_CLIENT", new BigDecimal("10000.00")));
+        marginService.resetLedgerState();
+
+        // Act
+        Trade result = marginService.processTrade("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+        marginService.awaitPersistence();
+
+        // Assert
+        assertEquals(ClearingMode.SHARDED, marginService.getClearingMode());
+        assertEquals(Trade.TradeStatus.CLEARED, result.getStatus());
+        assertEquals(new BigDecimal("150.00"), result.getMarginRequired());
+        Account updatedAccount = accountRepository.findByClientId("TEST_CLIENT").orElseThrow();
+        assertEquals(0, new BigDecimal("9850.00").compareTo(updatedAccount.getBalance()));
+        assertEquals(1, tradeRepository.count());
+    }
+
+    /**
+     * Test that account not found throws exception
+     */
+    @Test
+    void testProcessTrade_AccountNotFound() {
+        assertThrows(RuntimeException.class, () ->
+                marginService.processTrade("NON_EXISTENT_CLIENT", "AAPL", 10, new BigDecimal("150.00")));
+    }
+
+    /**
+     * Same invariant as SimulationServiceTest.testRunSimulation_AccountBalancesAreCorrect
+     */
+    @Test
+    void testRunSimulation_AccountBalancesAreCorrect() {
+        // Arrange
+        simulationService.initializeAccounts();
+
+        // Act
+        SimulationService.SimulationResult result = simulationService.runSimulation();
+
+        // Assert
+        BigDecimal actualTotalBalance = accountRepository.findAll().stream()
+                .map(Account::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        List<Trade> clearedTrades = tradeRepository.findAll().stream()
+                .filter(t -> t.getStatus() == Trade.TradeStatus.CLEARED)
+                .toList();
+        BigDecimal totalMarginDeducted = clearedTrades.stream()
+                .map(Trade::getMarginRequired)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        BigDecimal expectedTotalBalance = new BigDecimal("100000.00").subtract(totalMarginDeducted);
+        assertEquals(0, expectedTotalBalance.compareTo(actualTotalBalance),
+                "Account balances should be mathematically correct");
+        assertEquals(result.successCount(), clearedTrades.size());
+        assertEquals(1000, tradeRepository.count());
+    }
+}
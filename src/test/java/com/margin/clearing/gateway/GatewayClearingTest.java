@@ -0,0 +1,74 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.gateway.enabled=true",
+        "clearing.gateway.port=0",
+        "spring.datasource.url=jdbc:h2:mem:gateway"
+})
+class GatewayClearingTest {
+
+    @Autowired
+    private TradeGateway gateway;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("GATEWAY_CLIENT", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+    }
+
+    /**
+     * Test that trades sent over the binary gateway are cleared by MarginService and acked with their outcome
+     */
+    @Test
+    void testGatewayTrades_ClearedAgainstAccounts() throws Exception {
+        // Arrange: 91 trades of 10.00 margin, then an unknown account and a trade larger than the 90.00 left
+        try (GatewayClient client = GatewayClient.connect("127.0.0.1", gateway.getPort())) {
+            // Act
+            for (int i = 0; i < 91; i++) {
+                client.submit(i, "GATEWAY_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+            }
+            client.submit(91, "UNKNOWN_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+            client.submit(92, "GATEWAY_CLIENT", "MSFT", 100, new BigDecimal("100.00"));
+
+            // Assert
+            for (int i = 0; i < 90; i++) {
+                GatewayAck ack = client.receive();
+                assertEquals(i, ack.correlationId());
+                assertEquals(GatewayAck.Status.CLEARED, ack.status());
+                assertEquals(1000, ack.marginCents());
+                assertTrue(ack.tradeId() > 0);
+            }
+            assertEquals(GatewayAck.Status.CLEARED, client.receive().status());
+            assertEquals(GatewayAck.Status.ERROR, client.receive().status());
+            GatewayAck rejected = client.receive();
+            assertEquals(GatewayAck.Status.REJECTED, rejected.status());
+            assertEquals(100_000, rejected.marginCents());
+        }
+        assertEquals(new BigDecimal("90.00"),
+                accountRepository.findByClientId("GATEWAY_CLIENT").orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,69 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.mode=SHARDED",
+        "clearing.gateway.enabled=true",
+        "clearing.gateway.port=0",
+        "spring.datasource.url=jdbc:h2:mem:gateway_sharded"
+})
+class ShardedGatewayClearingTest {
+
+    @Autowired
+    private TradeGateway gateway;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        marginService.awaitPersistence();
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("GATEWAY_CLIENT", new BigDecimal("100.00")));
+        marginService.resetLedgerState();
+    }
+
+    /**
+     * Edge Case Test: in SHARDED mode trades are acked before they have an id, and a margin rejection is still
+     * acked REJECTED while a failed request is acked ERROR
+     */
+    @Test
+    void testGatewayTrades_MarginRejectionIsNotAnError() throws Exception {
+        try (GatewayClient client = GatewayClient.connect("127.0.0.1", gateway.getPort())) {
+            // Act
+            client.submit(0, "GATEWAY_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+            client.submit(1, "GATEWAY_CLIENT", "MSFT", 100, new BigDecimal("100.00"));
+            client.submit(2, "UNKNOWN_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+
+            // Assert
+            assertEquals(GatewayAck.Status.CLEARED, client.receive().status());
+            GatewayAck rejected = client.receive();
+            assertEquals(1, rejected.correlationId());
+            assertEquals(GatewayAck.Status.REJECTED, rejected.status());
+            assertEquals(100_000, rejected.marginCents());
+            assertEquals(GatewayAck.Status.ERROR, client.receive().status());
+        }
+        marginService.awaitPersistence();
+        assertEquals(new BigDecimal("90.00"),
+                accountRepository.findByClientId("GATEWAY_CLIENT").orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,129 @@
+package com.margin.clearing.gateway;
+
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.service.MarginService.BatchTradeResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeGatewayTest {
+
+    private static final BigDecimal PRICE = new BigDecimal("12.3456");
+
+    private final AtomicLong tradeIds = new AtomicLong();
+    private final AtomicInteger batches = new AtomicInteger();
+    private TradeGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        if (gateway != null) {
+            gateway.close();
+        }
+    }
+
+    /**
+     * Clears every well-formed request with margin = quantity cents, pausing briefly so requests pile up
+     */
+    private List<BatchTradeResult> clearAll(List<TradeRequestDTO> requests) {
+        batches.incrementAndGet();
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<BatchTradeResult> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TradeRequestDTO request = requests.get(i);
+            if (request == null) {
+                results.add(new BatchTradeResult(i, null, null, null, Trade.TradeStatus.REJECTED, null, "Invalid trade request", true));
+            } else {
+                assertEquals(PRICE, request.getPrice().stripTrailingZeros());
+                results.add(new BatchTradeResult(i, tradeIds.incrementAndGet(), request.getClientId(), request.getSymbol(),
+                        Trade.TradeStatus.CLEARED, new BigDecimal(request.getQuantity()).movePointLeft(2), null, false));
+            }
+        }
+        return results;
+    }
+
+    private GatewayClient start(TradeBatchHandler handler, int maxInFlight) throws Exception {
+        gateway = new TradeGateway(handler, "127.0.0.1", 0, 2, 256, maxInFlight);
+        gateway.start();
+        return GatewayClient.connect("127.0.0.1", gateway.getPort());
+    }
+
+    /**
+     * Test that pipelined trades are acknowledged in order and cleared many per batch
+     */
+    @Test
+    void testPipelinedTrades_AckedInOrderAndBatched() throws Exception {
+        // Arrange
+        int trades = 5_000;
+        int window = 500;
+
+        // Act: keep up to `window` trades unacknowledged
+        List<GatewayAck> acks = new ArrayList<>();
+        try (GatewayClient client = start(this::clearAll, 1024)) {
+            for (int i = 0; i < trades; i++) {
+                client.submit(i, "CLIENT_" + (i % 7), "AAPL", 1 + i % 100, PRICE);
+                if (i >= window) {
+                    acks.add(client.receive());
+                }
+            }
+            while (acks.size() < trades) {
+                acks.add(client.receive());
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < trades; i++) {
+            GatewayAck ack = acks.get(i);
+            assertEquals(i, ack.correlationId());
+            assertEquals(GatewayAck.Status.CLEARED, ack.status());
+            assertEquals(i + 1, ack.tradeId());
+            assertEquals(1 + i % 100, ack.marginCents());
+        }
+        assertTrue(batches.get() < trades / 10, "expected pipelined trades to share batches, got " + batches.get());
+    }
+
+    /**
+     * Edge Case Test: malformed messages and a failing batch get ERROR acks without dropping the connection
+     */
+    @Test
+    void testMalformedAndFailedBatches_AckedAsErrors() throws Exception {
+        // Arrange: the first batch fails, later ones clear
+        AtomicInteger calls = new AtomicInteger();
+        TradeBatchHandler handler = requests -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return clearAll(requests);
+        };
+
+        try (GatewayClient client = start(handler, 16)) {
+            // Act
+            client.submit(1, "CLIENT_A", "AAPL", 10, PRICE);
+            GatewayAck failed = client.receive();
+            client.submit(2, "CLIENT_A", "AAPL", 0, PRICE);
+            client.submit(3, "CLIENT_A", "AAPL", 10, PRICE);
+            GatewayAck malformed = client.receive();
+            GatewayAck cleared = client.receive();
+
+            // Assert
+            assertEquals(new GatewayAck(1, GatewayAck.Status.ERROR, 0, 0), failed);
+            assertEquals(new GatewayAck(2, GatewayAck.Status.ERROR, 0, 0), malformed);
+            assertEquals(GatewayAck.Status.CLEARED, cleared.status());
+            assertEquals(3, cleared.correlationId());
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> GatewayProtocol.encodeRequest(java.nio.ByteBuffer.allocate(GatewayProtocol.REQUEST_SIZE),
+                        1, "X".repeat(GatewayProtocol.MAX_CLIENT_ID_LENGTH + 1), "AAPL", 1, PRICE));
+    }
+}
@@ -0,0 +1,175 @@
+package com.margin.clearing.journal;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.journal.enabled=true",
+        "clearing.journal.path=target/test-journal/${random.uuid}.dat",
+        "spring.datasource.url=jdbc:h2:mem:journal"
+})
+class TradeJournalDrainerTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private TradeJournal tradeJournal;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        marginService.awaitPersistence();
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that journaled trades are acknowledged first and inserted by the drainer
+     */
+    @Test
+    void testProcessTrade_JournaledThenDrained() {
+        // Arrange
+        accountRepository.save(new Account("TEST_CLIENT", new BigDecimal("200.00")));
+
+        // Act
+        Trade cleared = marginService.processTrade("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+        Trade rejected = marginService.processTrade("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+        marginService.awaitPersistence();
+
+        // Assert
+        assertEquals(Trade.TradeStatus.CLEARED, cleared.getStatus());
+        assertEquals(Trade.TradeStatus.REJECTED, rejected.getStatus());
+        assertEquals(tradeJournal.getLastSeq(), tradeJournal.getDrainedSeq());
+
+        List<Trade> trades = tradeRepository.findLatestByClientId("TEST_CLIENT", Limit.unlimited());
+        assertEquals(2, trades.size());
+        assertTrue(trades.stream().allMatch(t -> t.getId() != null));
+        assertEquals(cleared.getCreatedAt().truncatedTo(ChronoUnit.MILLIS),
+                trades.get(1).getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+        assertEquals(new BigDecimal("50.00"),
+                accountRepository.findByClientId("TEST_CLIENT").orElseThrow().getBalance());
+    }
+
+    /**
+     * Edge Case Test: a trade journaled inside a transaction that rolls back is neither drained nor replayed
+     */
+    @Test
+    void testProcessTrade_RolledBackAfterAppendIsDiscarded() {
+        // Arrange
+        accountRepository.save(new Account("TEST_CLIENT", new BigDecimal("200.00")));
+        marginService.resetLedgerState();
+        long before = tradeJournal.getLastSeq();
+
+        // Act: the trade joins the outer transaction, which rolls back after the record is appended
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            marginService.processTrade("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+            status.setRollbackOnly();
+        });
+        Trade committed = marginService.processTrade("TEST_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+        marginService.awaitPersistence();
+
+        // Assert
+        assertEquals(before + 2, tradeJournal.getLastSeq());
+        assertTrue(tradeJournal.isDiscarded(before + 1));
+        assertFalse(tradeJournal.isDiscarded(before + 2));
+        List<Trade> trades = tradeRepository.findLatestByClientId("TEST_CLIENT", Limit.unlimited());
+        assertEquals(1, trades.size());
+        assertEquals("MSFT", trades.get(0).getSymbol());
+        assertEquals(Trade.TradeStatus.CLEARED, committed.getStatus());
+        assertEquals(new BigDecimal("190.00"), accountRepository.findByClientId("TEST_CLIENT").orElseThrow().getBalance());
+
+        List<Long> replayed = new ArrayList<>();
+        tradeJournal.forEachBalance(before, (clientId, balanceCents, version) -> replayed.add(balanceCents));
+        assertEquals(List.of(190_00L), replayed);
+    }
+
+    /**
+     * Edge Case Test: a journaled trade whose orderId is already in the trades table (e.g. re-drained after a crash)
+     * is skipped, and the drain keeps going instead of failing on uk_trades_order_id
+     */
+    @Test
+    void testDrain_SkipsOrderIdAlreadySaved() {
+        // Arrange
+        accountRepository.save(new Account("TEST_CLIENT", new BigDecimal("200.00")));
+        marginService.resetLedgerState();
+        Trade saved = new Trade();
+        saved.setOrderId("ORD-DRAINED");
+        saved.setClientId("TEST_CLIENT");
+        saved.setSymbol("AAPL");
+        saved.setQuantity(1);
+        saved.setPrice(new BigDecimal("100.00"));
+        saved.setMarginRequiredCents(10_00L);
+        saved.setStatus(Trade.TradeStatus.CLEARED);
+        saved.setCreatedAt(LocalDateTime.now());
+        tradeRepository.save(saved);
+
+        // Act
+        tradeJournal.append(saved);
+        Trade next = marginService.processTrade("TEST_CLIENT", "MSFT", 1, new BigDecimal("100.00"));
+        marginService.awaitPersistence();
+
+        // Assert
+        assertEquals(Trade.TradeStatus.CLEARED, next.getStatus());
+        assertEquals(tradeJournal.getLastSeq(), tradeJournal.getDrainedSeq());
+        List<Trade> trades = tradeRepository.findLatestByClientId("TEST_CLIENT", Limit.unlimited());
+        assertEquals(2, trades.size());
+        assertEquals(1, trades.stream().filter(t -> "ORD-DRAINED".equals(t.getOrderId())).count());
+    }
+
+    /**
+     * Edge Case Test: a retry whose orderId is no longer cached matches the original while it is still undrained
+     */
+    @Test
+    void testProcessTrade_RetryMatchesUndrainedJournalRecord() {
+        // Arrange: an acknowledged trade held in the journal, so it is not drained, and unknown to the dedup cache
+        accountRepository.save(new Account("TEST_CLIENT", new BigDecimal("200.00")));
+        marginService.resetLedgerState();
+        Trade original = new Trade();
+        original.setOrderId("ORD-UNDRAINED");
+        original.setClientId("TEST_CLIENT");
+        original.setSymbol("AAPL");
+        original.setQuantity(1);
+        original.setPrice(new BigDecimal("100.00"));
+        original.setMarginRequiredCents(10_00L);
+        original.setStatus(Trade.TradeStatus.CLEARED);
+        long seq = tradeJournal.append(original, 190_00L, 1L);
+
+        // Act
+        Trade retried = marginService.processTrade("ORD-UNDRAINED", "TEST_CLIENT", "AAPL", 1, new BigDecimal("100.00"));
+        tradeJournal.release(seq);
+        marginService.awaitPersistence();
+
+        // Assert
+        assertEquals(Trade.TradeStatus.CLEARED, retried.getStatus());
+        assertEquals(original.getCreatedAt().truncatedTo(ChronoUnit.MILLIS), retried.getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+        assertEquals(1, tradeRepository.findLatestByClientId("TEST_CLIENT", Limit.unlimited()).size());
+        assertEquals(new BigDecimal("200.00"), accountRepository.findByClientId("TEST_CLIENT").orElseThrow().getBalance());
+    }
+}
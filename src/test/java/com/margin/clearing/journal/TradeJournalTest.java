@@ -0,0 +1,295 @@
+package com.margin.clearing.journal;
+
+import com.margin.clearing.entity.Trade;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static Trade newTrade(String clientId, int quantity, Trade.TradeStatus status) {
+        Trade trade = new Trade();
+        trade.setClientId(clientId);
+        trade.setSymbol("AAPL");
+        trade.setQuantity(quantity);
+        trade.setPrice(new BigDecimal("150.25"));
+        trade.setMarginRequired(new BigDecimal("150.25").multiply(BigDecimal.valueOf(quantity)).multiply(new BigDecimal("0.10")));
+        trade.setStatus(status);
+        trade.setCreatedAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 123456789));
+        return trade;
+    }
+
+    /**
+     * Test that a journaled trade reads back field for field
+     */
+    @Test
+    void testAppendAndRead_RoundTrip() throws IOException {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 16, FsyncPolicy.NEVER, 0)) {
+            Trade original = newTrade("CLIENT_001", 7, Trade.TradeStatus.CLEARED);
+            original.setOrderId("ORDER-0001");
+
+            long seq = journal.append(original);
+            Trade read = journal.read(seq);
+
+            assertEquals(1, seq);
+            assertEquals(original.getClientId(), read.getClientId());
+            assertEquals(original.getSymbol(), read.getSymbol());
+            assertEquals(original.getQuantity(), read.getQuantity());
+            assertEquals(original.getPrice(), read.getPrice());
+            assertEquals(original.getMarginRequiredCents(), read.getMarginRequiredCents());
+            assertEquals(original.getStatus(), read.getStatus());
+            assertEquals(original.getCreatedAt(), read.getCreatedAt());
+            assertEquals("ORDER-0001", read.getOrderId());
+            assertNull(read.getId());
+        }
+    }
+
+    /**
+     * Test that an orderId is found only while its record is undrained and not discarded, including after a restart
+     */
+    @Test
+    void testFindUndrained_TracksDrainDiscardAndRecovery() throws IOException {
+        Path path = dir.resolve("journal.dat");
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            for (String orderId : List.of("ORD-1", "ORD-2", "ORD-3")) {
+                Trade trade = newTrade("CLIENT_001", 1, Trade.TradeStatus.CLEARED);
+                trade.setOrderId(orderId);
+                journal.release(journal.append(trade, 100_00L, 1L));
+            }
+
+            journal.markDrained(1);
+            journal.discard(2);
+
+            assertTrue(journal.findUndrained("ORD-1").isEmpty());
+            assertTrue(journal.findUndrained("ORD-2").isEmpty());
+            assertEquals("ORD-3", journal.findUndrained("ORD-3").orElseThrow().getOrderId());
+        }
+
+        try (TradeJournal reopened = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            assertTrue(reopened.findUndrained("ORD-2").isEmpty());
+            assertEquals("ORD-3", reopened.findUndrained("ORD-3").orElseThrow().getOrderId());
+        }
+    }
+
+    /**
+     * Test that records not yet drained are recovered after a restart
+     */
+    @Test
+    void testReopen_RecoversUndrainedRecords() throws IOException {
+        Path path = dir.resolve("journal.dat");
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 1; i <= 5; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+            journal.markDrained(2);
+        }
+
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(2, journal.getDrainedSeq());
+            assertEquals(5, journal.getLastSeq());
+            assertEquals("CLIENT_003", journal.read(3).getClientId());
+            assertEquals(6, journal.append(newTrade("CLIENT_006", 6, Trade.TradeStatus.REJECTED)));
+        }
+    }
+
+    /**
+     * Edge Case Test: a corrupted record ends recovery at the record before it
+     */
+    @Test
+    void testReopen_StopsAtTornRecord() throws IOException {
+        Path path = dir.resolve("journal.dat");
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 1; i <= 4; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+        }
+        // Flip a byte inside record 3
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), TradeJournal.HEADER_SIZE + 2L * TradeJournal.RECORD_SIZE + 50);
+        }
+
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(2, journal.getLastSeq());
+        }
+    }
+
+    /**
+     * Edge Case Test: a full journal blocks appends until the drainer frees slots, then wraps
+     */
+    @Test
+    void testAppend_BlocksWhenFullAndWrapsAfterDrain() throws Exception {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 4, FsyncPolicy.NEVER, 0)) {
+            for (int i = 1; i <= 4; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+
+            CompletableFuture<Long> blocked = CompletableFuture.supplyAsync(
+                    () -> journal.append(newTrade("CLIENT_005", 5, Trade.TradeStatus.CLEARED)));
+            Thread.sleep(100);
+            assertFalse(blocked.isDone());
+
+            journal.markDrained(1);
+            assertEquals(5, blocked.get(5, TimeUnit.SECONDS));
+            assertEquals("CLIENT_005", journal.read(5).getClientId());
+            assertThrows(IllegalStateException.class, () -> journal.read(1));
+        }
+    }
+
+    /**
+     * Edge Case Test: appenders woken together from a full journal each get their own sequence, and every record drains
+     */
+    @Test
+    void testAppend_ConcurrentAppendersOnFullJournalAllDrain() throws Exception {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 4, FsyncPolicy.NEVER, 0)) {
+            Set<String> drained = new HashSet<>();
+            for (int i = 1; i <= 4; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+            List<CompletableFuture<Long>> blocked = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                Trade trade = newTrade("WAITER_00" + i, i, Trade.TradeStatus.CLEARED);
+                blocked.add(CompletableFuture.supplyAsync(() -> journal.append(trade), Thread::startVirtualThread));
+            }
+            Thread.sleep(100);
+
+            // Act: drain everything appended, letting all the waiters in at once
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (drained.size() < 12 && System.nanoTime() < deadline) {
+                long last = journal.getLastSeq();
+                for (long seq = journal.getDrainedSeq() + 1; seq <= last; seq++) {
+                    drained.add(journal.read(seq).getClientId());
+                }
+                journal.markDrained(last);
+                Thread.sleep(10);
+            }
+
+            // Assert
+            Set<Long> seqs = new HashSet<>();
+            for (CompletableFuture<Long> append : blocked) {
+                seqs.add(append.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(8, seqs.size());
+            assertEquals(12, journal.getLastSeq());
+            assertEquals(12, drained.size());
+        }
+    }
+
+    /**
+     * Edge Case Test: appendNow fails on a full journal instead of blocking; awaitSpace waits for the drainer
+     */
+    @Test
+    void testAppendNow_FailsWhenFullAndAwaitSpaceBlocks() throws Exception {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 4, FsyncPolicy.NEVER, 0)) {
+            for (int i = 1; i <= 4; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+
+            assertThrows(IllegalStateException.class,
+                    () -> journal.appendNow(newTrade("CLIENT_005", 5, Trade.TradeStatus.CLEARED), 90_00L, 1));
+            assertEquals(4, journal.getLastSeq());
+
+            CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> journal.awaitSpace(2));
+            Thread.sleep(100);
+            journal.markDrained(1);
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+            journal.markDrained(2);
+            waiting.get(5, TimeUnit.SECONDS);
+            assertEquals(5, journal.appendNow(newTrade("CLIENT_005", 5, Trade.TradeStatus.CLEARED), 90_00L, 1));
+        }
+    }
+
+    /**
+     * Edge Case Test: identifiers that don't fit the fixed-size record are refused
+     */
+    @Test
+    void testAppend_RejectsOversizedClientId() throws IOException {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 4, FsyncPolicy.NEVER, 0)) {
+            Trade trade = newTrade("C".repeat(TradeJournal.MAX_CLIENT_ID_LENGTH + 1), 1, Trade.TradeStatus.CLEARED);
+            assertThrows(IllegalArgumentException.class, () -> journal.append(trade));
+            assertEquals(0, journal.getLastSeq());
+        }
+    }
+
+    /**
+     * Test that balances are replayed in order after a restart, and that records without one are skipped
+     */
+    @Test
+    void testForEachBalance_ReplaysJournaledBalances() throws IOException {
+        Path path = dir.resolve("journal.dat");
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            journal.release(journal.append(newTrade("CLIENT_001", 1, Trade.TradeStatus.CLEARED), 90_00L, 1));
+            journal.append(newTrade("CLIENT_002", 1, Trade.TradeStatus.REJECTED));
+            journal.release(journal.append(newTrade("CLIENT_001", 1, Trade.TradeStatus.CLEARED), 80_00L, 2));
+        }
+
+        try (TradeJournal journal = new TradeJournal(path, 16, FsyncPolicy.ALWAYS, 0)) {
+            List<String> visited = new ArrayList<>();
+            journal.forEachBalance(0, (clientId, cents, version) -> visited.add(clientId + ":" + cents + ":" + version));
+            assertEquals(List.of("CLIENT_001:9000:1", "CLIENT_001:8000:2"), visited);
+
+            visited.clear();
+            journal.forEachBalance(2, (clientId, cents, version) -> visited.add(clientId + ":" + cents + ":" + version));
+            assertEquals(List.of("CLIENT_001:8000:2"), visited);
+        }
+    }
+
+    /**
+     * Edge Case Test: the snapshot horizon stops before the oldest record whose balance isn't committed yet
+     */
+    @Test
+    void testSnapshotHorizon_StopsAtHeldRecords() throws IOException {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 16, FsyncPolicy.NEVER, 0)) {
+            long first = journal.append(newTrade("CLIENT_001", 1, Trade.TradeStatus.CLEARED), 90_00L, 1);
+            long second = journal.append(newTrade("CLIENT_002", 1, Trade.TradeStatus.CLEARED), 90_00L, 1);
+            journal.append(newTrade("CLIENT_003", 1, Trade.TradeStatus.REJECTED));
+
+            assertEquals(0, journal.getSnapshotHorizon());
+            journal.release(second);
+            assertEquals(0, journal.getSnapshotHorizon());
+            journal.release(first);
+            assertEquals(3, journal.getSnapshotHorizon());
+        }
+    }
+
+    /**
+     * Edge Case Test: records after the retained sequence are not reused even once drained
+     */
+    @Test
+    void testRetainAfter_BlocksReuseUntilSnapshotMovesOn() throws Exception {
+        try (TradeJournal journal = new TradeJournal(dir.resolve("journal.dat"), 4, FsyncPolicy.NEVER, 0)) {
+            journal.retainAfter(0);
+            for (int i = 1; i <= 4; i++) {
+                journal.append(newTrade("CLIENT_00" + i, i, Trade.TradeStatus.CLEARED));
+            }
+            journal.markDrained(4);
+
+            CompletableFuture<Long> blocked = CompletableFuture.supplyAsync(
+                    () -> journal.append(newTrade("CLIENT_005", 5, Trade.TradeStatus.CLEARED)));
+            Thread.sleep(100);
+            assertFalse(blocked.isDone());
+
+            journal.retainAfter(2);
+            assertEquals(5, blocked.get(5, TimeUnit.SECONDS));
+            assertThrows(IllegalStateException.class, () -> journal.forEachBalance(0, (clientId, cents, version) -> { }));
+        }
+    }
+}
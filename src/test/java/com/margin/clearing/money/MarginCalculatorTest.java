@@ -0,0 +1,85 @@
+package com.margin.clearing.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarginCalculatorTest {
+
+    private static final BigDecimal MARGIN_RATE = new BigDecimal("0.10");
+
+    private final MarginCalculator calculator = new MarginCalculator(MARGIN_RATE);
+
+    private static BigDecimal referenceMargin(BigDecimal price, int quantity) {
+        return price.multiply(new BigDecimal(quantity)).multiply(MARGIN_RATE).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Test that fixed-point results match the BigDecimal formula, including HALF_UP ties
+     */
+    @Test
+    void testMarginCents_MatchesBigDecimalFormula() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(10_000_000) - 1_000_000, random.nextInt(5));
+            int quantity = random.nextInt(20_000) - 10_000;
+
+            long expected = Money.toCents(referenceMargin(price, quantity));
+
+            assertEquals(expected, calculator.marginCents(price, quantity), () -> price + " x " + quantity);
+        }
+    }
+
+    /**
+     * Edge Case Test: exact half cent rounds away from zero
+     */
+    @Test
+    void testMarginCents_HalfUpTies() {
+        // 0.05 * 1 * 0.10 = 0.005 -> 0.01
+        assertEquals(1, calculator.marginCents(new BigDecimal("0.05"), 1));
+        // -0.005 -> -0.01
+        assertEquals(-1, calculator.marginCents(new BigDecimal("0.05"), -1));
+        // 0.04 * 1 * 0.10 = 0.004 -> 0.00
+        assertEquals(0, calculator.marginCents(new BigDecimal("0.04"), 1));
+    }
+
+    /**
+     * Edge Case Test: prices with more than 4 decimals or huge products use the exact path
+     */
+    @Test
+    void testMarginCents_FallsBackWhenFixedPointCannotRepresent() {
+        BigDecimal finePrice = new BigDecimal("123.456789");
+        assertEquals(Money.toCents(referenceMargin(finePrice, 7)), calculator.marginCents(finePrice, 7));
+
+        // priceTicks * quantity * rate overflows a long, the result itself does not
+        BigDecimal hugePrice = new BigDecimal("9000000000.00");
+        assertEquals(Money.toCents(referenceMargin(hugePrice, 2_000_000)), calculator.marginCents(hugePrice, 2_000_000));
+    }
+
+    /**
+     * Edge Case Test: margin that does not fit in a long is reported, not wrapped
+     */
+    @Test
+    void testMarginCents_OverflowThrows() {
+        BigDecimal price = new BigDecimal("90000000000000000.00");
+        assertThrows(ArithmeticException.class, () -> calculator.marginCents(price, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test conversions at the BigDecimal boundary
+     */
+    @Test
+    void testMoneyConversions() {
+        assertEquals(new BigDecimal("150.00"), Money.centsToBigDecimal(15000));
+        assertEquals(15000, Money.toCents(new BigDecimal("150")));
+        assertEquals(1, Money.toCents(new BigDecimal("0.005")));
+        assertEquals(1_505_000, Money.toPriceTicks(new BigDecimal("150.5")));
+        assertThrows(ArithmeticException.class, () -> Money.toPriceTicks(new BigDecimal("1.00001")));
+        assertEquals(-2, Money.divideHalfUp(-15, 10));
+        assertEquals(-1, Money.divideHalfUp(-14, 10));
+    }
+}
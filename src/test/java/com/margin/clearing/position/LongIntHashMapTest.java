@@ -0,0 +1,33 @@
+package com.margin.clearing.position;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+    /**
+     * Test that entries survive rehashing and absent keys return -1
+     */
+    @Test
+    void testPutAndGet_AcrossRehash() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(((long) i << 32) | (i % 8), i);
+        }
+        map.put(0L, 42);
+
+        assertEquals(10_000, map.size());
+        assertEquals(42, map.get(0L));
+        assertEquals(9_999, map.get((9_999L << 32) | 7));
+        assertEquals(-1, map.get(12345L));
+    }
+
+    /**
+     * Edge Case Test: the free-slot marker can't be used as a key
+     */
+    @Test
+    void testPut_RejectsNegativeKey() {
+        assertThrows(IllegalArgumentException.class, () -> new LongIntHashMap(4).put(-1L, 1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.margin.clearing.position;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.position.PositionBook.Position;
+import com.margin.clearing.position.PositionBook.SymbolExposure;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionBookTest {
+
+    private static long ticks(String price) {
+        return new BigDecimal(price).movePointRight(4).longValueExact();
+    }
+
+    /**
+     * Test that adding to a position averages the price and reducing keeps it
+     */
+    @Test
+    void testApply_AveragesOnAddKeepsOnReduce() {
+        PositionBook book = new PositionBook(4);
+
+        book.apply("CLIENT_001", "AAPL", 10, ticks("100.00"));
+        book.apply("CLIENT_001", "AAPL", 30, ticks("120.00"));
+        Position added = book.positionsOf("CLIENT_001").get(0);
+        book.apply("CLIENT_001", "AAPL", -20, ticks("200.00"));
+        Position reduced = book.positionsOf("CLIENT_001").get(0);
+
+        assertEquals(40, added.netQuantity());
+        assertEquals(new BigDecimal("115.0000"), added.averagePrice());
+        assertEquals(new BigDecimal("4600.00"), added.notional());
+        assertEquals(20, reduced.netQuantity());
+        assertEquals(new BigDecimal("115.0000"), reduced.averagePrice());
+        assertEquals(new BigDecimal("2300.00"), reduced.notional());
+    }
+
+    /**
+     * Edge Case Test: crossing through zero restarts the average at the fill price; flat positions are hidden
+     */
+    @Test
+    void testApply_FlipAndFlat() {
+        PositionBook book = new PositionBook(4);
+
+        book.apply("CLIENT_001", "MSFT", 10, ticks("50.00"));
+        book.apply("CLIENT_001", "MSFT", -25, ticks("60.00"));
+        Position flipped = book.positionsOf("CLIENT_001").get(0);
+        book.apply("CLIENT_001", "MSFT", 15, ticks("55.00"));
+
+        assertEquals(-15, flipped.netQuantity());
+        assertEquals(new BigDecimal("60.0000"), flipped.averagePrice());
+        assertEquals(new BigDecimal("-900.00"), flipped.notional());
+        assertTrue(book.positionsOf("CLIENT_001").isEmpty());
+        assertTrue(book.positionsOf("UNKNOWN").isEmpty());
+        assertEquals(0, book.exposureOf("MSFT").orElseThrow().openPositions());
+    }
+
+    /**
+     * Test that symbol open interest aggregates every client's position, across array growth
+     */
+    @Test
+    void testExposureOf_AggregatesClients() {
+        PositionBook book = new PositionBook(2);
+        for (int c = 0; c < 1000; c++) {
+            String clientId = "CLIENT_" + c;
+            book.apply(clientId, "AAPL", c % 2 == 0 ? 10 : -5, ticks("100.00"));
+            for (int s = 0; s < 20; s++) {
+                book.apply(clientId, "SYM" + s, 1, ticks("1.00"));
+            }
+        }
+
+        SymbolExposure aapl = book.exposureOf("AAPL").orElseThrow();
+        assertEquals(500 * 10 + 500 * 5, aapl.openInterest());
+        assertEquals(500 * 10 - 500 * 5, aapl.netQuantity());
+        assertEquals(new BigDecimal("750000.00"), aapl.grossNotional());
+        assertEquals(1000, aapl.openPositions());
+        assertEquals(21, book.exposures().size());
+        assertEquals(21_000, book.getPositionCount());
+        List<Position> positions = book.positionsOf("CLIENT_999");
+        assertEquals(21, positions.size());
+        assertEquals("AAPL", positions.get(0).symbol());
+        assertTrue(book.exposureOf("NONE").isEmpty());
+    }
+
+    /**
+     * Edge Case Test: a cleared price with more decimals than the trades.price column is applied as the column stores it
+     */
+    @Test
+    void testOnTradeProcessed_RoundsPriceLikeTheTradesColumn() {
+        PositionBook book = new PositionBook(4);
+        Trade trade = new Trade();
+        trade.setClientId("CLIENT_001");
+        trade.setSymbol("AAPL");
+        trade.setQuantity(10);
+        trade.setPrice(new BigDecimal("100.12345"));
+        trade.setStatus(Trade.TradeStatus.CLEARED);
+
+        book.onTradeProcessed(trade);
+
+        Position position = book.positionsOf("CLIENT_001").get(0);
+        assertEquals(new BigDecimal("100.1200"), position.averagePrice());
+        assertEquals(new BigDecimal("1001.20"), position.notional());
+    }
+}
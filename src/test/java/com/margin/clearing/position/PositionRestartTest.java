@@ -0,0 +1,77 @@
+package com.margin.clearing.position;
+
+import com.margin.clearing.MarginClearingApplication;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.FsyncPolicy;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.position.PositionBook.Position;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application over a journal left with undrained trades, as a crash before the drainer caught up would
+ */
+class PositionRestartTest {
+
+    @TempDir
+    Path dir;
+
+    private static Trade newTrade(String clientId, int quantity, String price, Trade.TradeStatus status) {
+        Trade trade = new Trade();
+        trade.setClientId(clientId);
+        trade.setSymbol("AAPL");
+        trade.setQuantity(quantity);
+        trade.setPrice(new BigDecimal(price));
+        trade.setStatus(status);
+        return trade;
+    }
+
+    /**
+     * Test that undrained journal records reach the position book once, at the price the trades table stores
+     */
+    @Test
+    void testRestart_UndrainedJournalTradesEnterPositionBook() throws IOException {
+        // Arrange
+        Path journalPath = dir.resolve("journal.dat");
+        try (TradeJournal journal = new TradeJournal(journalPath, 64, FsyncPolicy.ALWAYS, 0)) {
+            journal.append(newTrade("POS_A", 10, "100.00", Trade.TradeStatus.CLEARED));
+            journal.append(newTrade("POS_A", 10, "110.005", Trade.TradeStatus.CLEARED));
+            journal.append(newTrade("POS_A", 1000, "100.00", Trade.TradeStatus.REJECTED));
+            long rolledBack = journal.append(newTrade("POS_A", 50, "100.00", Trade.TradeStatus.CLEARED), 0L, 1L);
+            journal.discard(rolledBack);
+            journal.release(rolledBack);
+        }
+
+        // Act
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MarginClearingApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:position_restart",
+                        "--clearing.journal.enabled=true",
+                        "--clearing.journal.path=" + journalPath,
+                        "--clearing.journal.capacity=64")) {
+            context.getBean(MarginService.class).awaitPersistence();
+
+            // Assert: drained into the table, but counted once
+            PositionBook book = context.getBean(PositionBook.class);
+            List<Position> positions = book.positionsOf("POS_A");
+            assertEquals(1, positions.size());
+            assertEquals(20, positions.get(0).netQuantity());
+            assertEquals(new BigDecimal("105.0050"), positions.get(0).averagePrice());
+            assertEquals(new BigDecimal("2100.10"), positions.get(0).notional());
+            assertEquals(3, context.getBean(TradeRepository.class).count());
+        }
+    }
+}
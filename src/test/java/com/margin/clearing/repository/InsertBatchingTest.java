@@ -0,0 +1,101 @@
+package com.margin.clearing.repository;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards JDBC insert batching: with IDENTITY ids Hibernate silently issues one INSERT per row
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:batching"
+})
+class InsertBatchingTest {
+
+    private static final int ROWS = 500;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAllInBatch();
+        accountRepository.deleteAllInBatch();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * Test that trade inserts are sent in JDBC batches
+     */
+    @Test
+    void testTradeInsertsAreBatched() {
+        // Arrange
+        List<Trade> trades = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Trade trade = new Trade();
+            trade.setClientId("CLIENT_" + (i % 10));
+            trade.setSymbol("AAPL");
+            trade.setQuantity(10);
+            trade.setPrice(new BigDecimal("150.00"));
+            trade.setMarginRequired(new BigDecimal("150.00"));
+            trade.setStatus(Trade.TradeStatus.CLEARED);
+            trades.add(trade);
+        }
+
+        // Act
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> tradeRepository.saveAll(trades));
+
+        // Assert - 500 rows / batch_size 50 = 10 insert batches + 10 pooled sequence calls
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 2L * ROWS / 50 + 2,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(ROWS, tradeRepository.count());
+    }
+
+    /**
+     * Test that account inserts are sent in JDBC batches
+     */
+    @Test
+    void testAccountInsertsAreBatched() {
+        // Arrange
+        List<Account> accounts = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            accounts.add(new Account("BATCH_" + i, new BigDecimal("10000.00")));
+        }
+
+        // Act
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> accountRepository.saveAll(accounts));
+
+        // Assert
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 2L * ROWS / 50 + 2,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+}
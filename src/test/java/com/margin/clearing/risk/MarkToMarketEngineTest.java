@@ -0,0 +1,82 @@
+package com.margin.clearing.risk;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkToMarketEngineTest {
+
+    private static final BigDecimal RATE = new BigDecimal("0.10");
+
+    /**
+     * Test equity, requirement and margin calls for long and short positions
+     */
+    @Test
+    void testRevalue_LongAndShortPositions() {
+        MarkToMarketEngine engine = new MarkToMarketEngine(ForkJoinPool.commonPool(), RATE, 1);
+        // Account 0: long 100 @ 50.00 cost, marked at 40.00; account 1: short 10 @ 100.00 cost, marked at 90.00
+        long[] balances = {60_000, 0};
+        long[] quantity = {100, 0, 0, -10};
+        long[] cost = {100 * 500_000L, 0, 0, 10 * 1_000_000L};
+        long[] marks = {400_000, 900_000};
+
+        MarkToMarketEngine.Revaluation result = engine.revalue(balances, quantity, cost, marks);
+
+        // 600.00 - 1000.00 loss = -400.00 equity vs 10% of 4000.00 = 400.00
+        assertEquals(-40_000, result.equityCents()[0]);
+        assertEquals(40_000, result.requirementCents()[0]);
+        // 0 + 100.00 gain vs 10% of 900.00
+        assertEquals(10_000, result.equityCents()[1]);
+        assertEquals(9_000, result.requirementCents()[1]);
+        assertArrayEquals(new int[]{0}, result.marginCallAccounts());
+    }
+
+    /**
+     * Test that the parallel split gives the same answer as one sequential pass
+     */
+    @Test
+    void testRevalue_ParallelMatchesSequential() {
+        int accounts = 200_000;
+        int symbols = 8;
+        SplittableRandom random = new SplittableRandom(42);
+        long[] balances = new long[accounts];
+        long[] quantity = new long[accounts * symbols];
+        long[] cost = new long[accounts * symbols];
+        long[] marks = new long[symbols];
+        for (int s = 0; s < symbols; s++) {
+            marks[s] = random.nextLong(100_000, 5_000_000);
+        }
+        for (int a = 0; a < accounts; a++) {
+            balances[a] = random.nextLong(0, 5_000_000);
+            for (int s = 0; s < symbols; s++) {
+                long q = random.nextLong(-500, 500);
+                quantity[a * symbols + s] = q;
+                cost[a * symbols + s] = Math.abs(q) * random.nextLong(100_000, 5_000_000);
+            }
+        }
+
+        MarkToMarketEngine.Revaluation sequential = new MarkToMarketEngine(ForkJoinPool.commonPool(), RATE, accounts)
+                .revalue(balances, quantity, cost, marks);
+        MarkToMarketEngine.Revaluation parallel = new MarkToMarketEngine(ForkJoinPool.commonPool(), RATE, 1024)
+                .revalue(balances, quantity, cost, marks);
+
+        assertArrayEquals(sequential.equityCents(), parallel.equityCents());
+        assertArrayEquals(sequential.requirementCents(), parallel.requirementCents());
+        assertArrayEquals(sequential.marginCallAccounts(), parallel.marginCallAccounts());
+        assertTrue(parallel.marginCallAccounts().length > 0);
+    }
+
+    /**
+     * Edge Case Test: position arrays that don't match accounts × symbols are refused
+     */
+    @Test
+    void testRevalue_RejectsMismatchedArrays() {
+        MarkToMarketEngine engine = new MarkToMarketEngine(ForkJoinPool.commonPool(), RATE, 16);
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.revalue(new long[2], new long[3], new long[3], new long[2]));
+    }
+}
@@ -0,0 +1,77 @@
+package com.margin.clearing.risk;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.risk.RevaluationService.RevaluationResult;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:revaluation")
+class RevaluationServiceTest {
+
+    @Autowired
+    private RevaluationService revaluationService;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        marginService.resetLedgerState();
+    }
+
+    /**
+     * Test that a price drop raises a margin call for the account whose equity falls below its requirement
+     */
+    @Test
+    void testUpdatePrices_RaisesMarginCall() {
+        // Arrange: after the trade RISKY keeps 0.00 cash on 100 TSLA, SAFE keeps 9000.00
+        accountRepository.save(new Account("RISKY", new BigDecimal("1000.00")));
+        accountRepository.save(new Account("SAFE", new BigDecimal("10000.00")));
+        marginService.resetLedgerState();
+        marginService.processTrade("RISKY", "TSLA", 100, new BigDecimal("100.00"));
+        marginService.processTrade("SAFE", "TSLA", 100, new BigDecimal("100.00"));
+
+        // Act
+        RevaluationResult unchanged = revaluationService.revalue();
+        RevaluationResult dropped = revaluationService.updatePricesAndRevalue(Map.of("TSLA", new BigDecimal("95.00")));
+
+        // Assert: at 95.00 RISKY has -500.00 equity against a 950.00 requirement
+        assertTrue(unchanged.accounts() >= 2);
+        assertTrue(unchanged.marginCalls().stream().noneMatch(c -> c.clientId().equals("SAFE")));
+        MarginCall call = dropped.marginCalls().stream()
+                .filter(c -> c.clientId().equals("RISKY"))
+                .findFirst().orElseThrow();
+        assertEquals(new BigDecimal("-500.00"), call.equity());
+        assertEquals(new BigDecimal("950.00"), call.requirement());
+        assertEquals(new BigDecimal("1450.00"), call.shortfall());
+        assertTrue(dropped.marginCalls().stream().noneMatch(c -> c.clientId().equals("SAFE")));
+        assertSame(dropped, revaluationService.getLatest());
+    }
+
+    /**
+     * Edge Case Test: non-positive prices are refused
+     */
+    @Test
+    void testUpdatePrices_RejectsNonPositivePrice() {
+        assertThrows(IllegalArgumentException.class,
+                () -> revaluationService.updatePricesAndRevalue(Map.of("TSLA", BigDecimal.ZERO)));
+    }
+}
@@ -0,0 +1,36 @@
+package com.margin.clearing.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountContentionTrackerTest {
+
+    /**
+     * Test that an account stays contended for the window and is then forgotten
+     */
+    @Test
+    void testIsContended_ExpiresAfterWindow() throws InterruptedException {
+        AccountContentionTracker tracker = new AccountContentionTracker(50);
+        tracker.markContended("CLIENT_001");
+
+        assertTrue(tracker.isContended("CLIENT_001"));
+        assertFalse(tracker.isContended("CLIENT_002"));
+
+        Thread.sleep(80);
+        assertFalse(tracker.isContended("CLIENT_001"));
+        assertEquals(0, tracker.size());
+    }
+
+    /**
+     * Edge Case Test: a zero window disables the per-account fallback
+     */
+    @Test
+    void testMarkContended_ZeroWindowDisabled() {
+        AccountContentionTracker tracker = new AccountContentionTracker(0);
+        tracker.markContended("CLIENT_001");
+
+        assertFalse(tracker.isContended("CLIENT_001"));
+        assertThrows(IllegalArgumentException.class, () -> new AccountContentionTracker(-1));
+    }
+}
@@ -0,0 +1,144 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.AccountProvisioningService.ProvisioningResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.provisioning.batch-size=500",
+        "spring.datasource.url=jdbc:h2:mem:provisioning"
+})
+class AccountProvisioningServiceTest {
+
+    @Autowired
+    private AccountProvisioningService provisioningService;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountSnapshotCache accountCache;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that CSV rows across several batches are inserted and usable for clearing
+     */
+    @Test
+    void testProvisionCsv_InsertsAllRows() {
+        // Arrange
+        StringBuilder csv = new StringBuilder("clientId,balance\n");
+        for (int i = 1; i <= 1234; i++) {
+            csv.append("BULK_").append(i).append(',').append(i).append(".50\n");
+        }
+
+        // Act
+        ProvisioningResult result = provisioningService.provisionCsv(new StringReader(csv.toString()));
+
+        // Assert
+        assertEquals(1234, result.inserted());
+        assertEquals(0, result.rejected());
+        assertTrue(result.rowsPerSecond() > 0);
+        assertEquals(1234, accountRepository.count());
+        Account account = accountRepository.findByClientId("BULK_777").orElseThrow();
+        assertEquals(new BigDecimal("777.50"), account.getBalance());
+        assertEquals(0L, account.getVersion());
+
+        Trade trade = marginService.processTrade("BULK_777", "AAPL", 10, new BigDecimal("100.00"));
+        assertEquals(Trade.TradeStatus.CLEARED, trade.getStatus());
+        assertEquals(new BigDecimal("677.50"), accountRepository.findByClientId("BULK_777").orElseThrow().getBalance());
+    }
+
+    /**
+     * Test that provisioned accounts show up in the cached account list without a ledger reset
+     */
+    @Test
+    void testProvisionCsv_AccountListSeesNewAccounts() {
+        // Arrange: the account list is loaded (and cached) before provisioning
+        accountCache.getAll();
+
+        // Act
+        provisioningService.provisionCsv(new StringReader("LIST_1,10.00\nLIST_2,20.00\n"));
+
+        // Assert
+        assertEquals(2, accountCache.getAll().size());
+    }
+
+    /**
+     * Edge Case Test: accounts saved through JPA afterwards get ids that don't collide
+     */
+    @Test
+    void testProvision_IdsDoNotCollideWithJpa() {
+        // Arrange
+        accountRepository.save(new Account("JPA_BEFORE", new BigDecimal("1.00")));
+
+        // Act
+        provisioningService.provisionGenerated("GEN_", 1200, new BigDecimal("10.00"));
+        for (int i = 0; i < 120; i++) {
+            accountRepository.save(new Account("JPA_AFTER_" + i, new BigDecimal("1.00")));
+        }
+
+        // Assert
+        assertEquals(1321, accountRepository.count());
+        assertTrue(accountRepository.findByClientId("GEN_001").isPresent());
+        assertTrue(accountRepository.findByClientId("GEN_1200").isPresent());
+    }
+
+    /**
+     * Edge Case Test: malformed lines are rejected and reported, the rest inserted
+     */
+    @Test
+    void testProvisionCsv_RejectsMalformedLines() {
+        // Arrange
+        String csv = "GOOD_1,100.00\nno-comma\nBAD_BALANCE,abc\n,5.00\nNEGATIVE,-1\n\nGOOD_2,200\n";
+
+        // Act
+        ProvisioningResult result = provisioningService.provisionCsv(new StringReader(csv));
+
+        // Assert
+        assertEquals(2, result.inserted());
+        assertEquals(4, result.rejected());
+        assertEquals("line 2: expected clientId,balance", result.errors().get(0));
+        assertTrue(result.errors().get(3).startsWith("line 5:"));
+    }
+
+    /**
+     * Edge Case Test: a duplicate clientId stops the run but keeps earlier batches
+     */
+    @Test
+    void testProvisionCsv_DuplicateStopsRun() {
+        // Arrange
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= 600; i++) {
+            csv.append("DUP_").append(i).append(",1.00\n");
+        }
+        csv.append("DUP_1,1.00\n");
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> provisioningService.provisionCsv(new StringReader(csv.toString())));
+        assertTrue(e.getMessage().startsWith("Provisioning stopped after 500 accounts"));
+        assertEquals(500, accountRepository.count());
+    }
+}
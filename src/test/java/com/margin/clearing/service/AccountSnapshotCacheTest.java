@@ -0,0 +1,105 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:accountcache")
+class AccountSnapshotCacheTest {
+
+    @Autowired
+    private AccountSnapshotCache accountCache;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("CACHE_CLIENT", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "accounts").tag("result", result).functionCounter().count();
+    }
+
+    /**
+     * Test that a committed trade updates the cached snapshot, so the next read is a hit with the new balance
+     */
+    @Test
+    void testGet_UpdatedOnCommitWithoutReload() {
+        // Arrange
+        AccountSnapshotCache.AccountSnapshot loaded = accountCache.get("CACHE_CLIENT").orElseThrow();
+        double hitsBefore = gets("hit");
+        double missesBefore = gets("miss");
+
+        // Act
+        marginService.processTrade("CACHE_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+        AccountSnapshotCache.AccountSnapshot updated = accountCache.get("CACHE_CLIENT").orElseThrow();
+
+        // Assert
+        assertEquals(new BigDecimal("1000.00"), loaded.balance());
+        assertEquals(new BigDecimal("850.00"), updated.balance());
+        assertTrue(updated.version() > loaded.version());
+        assertEquals(loaded.id(), updated.id());
+        assertEquals(hitsBefore + 1, gets("hit"));
+        assertEquals(missesBefore, gets("miss"));
+    }
+
+    /**
+     * Edge Case Test: late events with an older version never overwrite a newer snapshot
+     */
+    @Test
+    void testOnBalanceChanged_IgnoresOlderVersions() {
+        // Arrange
+        long version = accountCache.get("CACHE_CLIENT").orElseThrow().version();
+
+        // Act
+        accountCache.onBalanceChanged("CACHE_CLIENT", 50_000, version + 2);
+        accountCache.onBalanceChanged("CACHE_CLIENT", 70_000, version + 1);
+        accountCache.onBalanceChanged("UNCACHED_CLIENT", 10_000, 1);
+
+        // Assert
+        assertEquals(new BigDecimal("500.00"), accountCache.get("CACHE_CLIENT").orElseThrow().balance());
+        assertTrue(accountCache.get("UNCACHED_CLIENT").isEmpty());
+    }
+
+    /**
+     * Test that a ledger reset drops snapshots of accounts replaced outside clearing
+     */
+    @Test
+    void testGetAll_ReloadedAfterReset() {
+        // Arrange
+        assertEquals(1, accountCache.getAll().size());
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("CACHE_CLIENT", new BigDecimal("42.00")));
+        accountRepository.save(new Account("OTHER_CLIENT", new BigDecimal("7.00")));
+
+        // Act
+        marginService.resetLedgerState();
+
+        // Assert
+        assertEquals(2, accountCache.getAll().size());
+        assertEquals(new BigDecimal("42.00"), accountCache.get("CACHE_CLIENT").orElseThrow().balance());
+    }
+}
@@ -0,0 +1,111 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.mode=GROUP_COMMIT",
+        "clearing.group-commit.max-batch-size=16",
+        "spring.datasource.url=jdbc:h2:mem:groupcommit"
+})
+class GroupCommitClearingTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that a lone trade is cleared as a batch of one
+     */
+    @Test
+    void testProcessTrade_SingleTrade() {
+        // Arrange
+        accountRepository.save(new Account("GC_CLIENT", new BigDecimal("1000.00")));
+
+        // Act
+        Trade result = marginService.processTrade("GC_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+
+        // Assert
+        assertEquals(ClearingMode.GROUP_COMMIT, marginService.getClearingMode());
+        assertEquals(Trade.TradeStatus.CLEARED, result.getStatus());
+        assertNotNull(result.getId());
+        assertEquals(new BigDecimal("850.00"), accountRepository.findByClientId("GC_CLIENT").orElseThrow().getBalance());
+    }
+
+    /**
+     * Test that combined trades keep per-trade accept/reject semantics on hot accounts
+     */
+    @Test
+    void testProcessTrade_ConcurrentTradesKeepPerTradeOutcome() throws Exception {
+        // Arrange: LIMITED can afford 50 of its 100 trades at 10.00 margin each
+        accountRepository.save(new Account("RICH", new BigDecimal("100000.00")));
+        accountRepository.save(new Account("LIMITED", new BigDecimal("500.00")));
+        DistributionSummary batchSize = meterRegistry.get("clearing.group_commit.batch.size").summary();
+        double tradesBefore = batchSize.totalAmount();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Trade>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            String clientId = i % 2 == 0 ? "RICH" : "LIMITED";
+            futures.add(executor.submit(() ->
+                    marginService.processTrade(clientId, "AAPL", 1, new BigDecimal("100.00"))));
+        }
+        long limitedCleared = 0;
+        for (Future<Trade> future : futures) {
+            Trade trade = future.get();
+            if (trade.getClientId().equals("LIMITED") && trade.getStatus() == Trade.TradeStatus.CLEARED) {
+                limitedCleared++;
+            }
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(50, limitedCleared);
+        assertEquals(new BigDecimal("0.00"), accountRepository.findByClientId("LIMITED").orElseThrow().getBalance());
+        assertEquals(new BigDecimal("99000.00"), accountRepository.findByClientId("RICH").orElseThrow().getBalance());
+        assertEquals(200, tradeRepository.count());
+        assertEquals(200, batchSize.totalAmount() - tradesBefore);
+    }
+
+    /**
+     * Edge Case Test: an unknown account fails the trade
+     */
+    @Test
+    void testProcessTrade_UnknownAccount() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> marginService.processTrade("NO_SUCH_CLIENT", "AAPL", 1, new BigDecimal("100.00")));
+        assertEquals("Account not found: NO_SUCH_CLIENT", e.getMessage());
+    }
+}
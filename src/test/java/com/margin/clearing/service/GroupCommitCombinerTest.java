@@ -0,0 +1,141 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitCombinerTest {
+
+    private static Trade trade(long id, String clientId) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        trade.setClientId(clientId);
+        trade.setStatus(Trade.TradeStatus.PENDING);
+        return trade;
+    }
+
+    private static List<Long> ids(List<Trade> trades) {
+        return trades.stream().map(Trade::getId).toList();
+    }
+
+    /**
+     * Test that trades arriving during a clear are combined into the next batch in arrival order
+     */
+    @Test
+    void testSubmit_CombinesWaitingTradesInOrder() throws Exception {
+        // Arrange
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        GroupCommitCombiner combiner = new GroupCommitCombiner((clientId, trades) -> {
+            batches.add(ids(trades));
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            }
+            trades.forEach(t -> t.setStatus(Trade.TradeStatus.CLEARED));
+        }, 3);
+
+        // Act: the first caller becomes the combiner and blocks inside its clear
+        CompletableFuture<CompletableFuture<Trade>> first = submitAsync(combiner, 1);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<CompletableFuture<Trade>>> waiting = new ArrayList<>();
+        for (long id = 2; id <= 6; id++) {
+            waiting.add(submitAsync(combiner, id));
+            awaitQueued(combiner, (int) id - 1);
+        }
+        assertFalse(waiting.get(0).isDone());
+        releaseFirstBatch.countDown();
+
+        // Assert
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS).get().getId());
+        for (CompletableFuture<CompletableFuture<Trade>> future : waiting) {
+            assertEquals(Trade.TradeStatus.CLEARED, future.get(5, TimeUnit.SECONDS).get().getStatus());
+        }
+        assertEquals(List.of(List.of(1L), List.of(2L, 3L, 4L), List.of(5L, 6L)), batches);
+    }
+
+    /**
+     * Edge Case Test: the combiner returns once its own trade is cleared, and a waiting caller takes over the rest
+     */
+    @Test
+    void testSubmit_CombinerHandsOverOnceItsTradeIsDone() throws Exception {
+        // Arrange: the first batch waits until trade 2 is queued, the second until released
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        CountDownLatch releaseSecondBatch = new CountDownLatch(1);
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        GroupCommitCombiner combiner = new GroupCommitCombiner((clientId, trades) -> {
+            batches.add(ids(trades));
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                await(releaseFirstBatch);
+            } else {
+                await(releaseSecondBatch);
+            }
+        }, 1);
+
+        // Act
+        CompletableFuture<CompletableFuture<Trade>> first = submitAsync(combiner, 1);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<CompletableFuture<Trade>> second = submitAsync(combiner, 2);
+        awaitQueued(combiner, 1);
+        releaseFirstBatch.countDown();
+
+        // Assert: the first caller is back while trade 2 is still being cleared by its own caller
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS).get().getId());
+        assertFalse(second.isDone());
+        releaseSecondBatch.countDown();
+        assertEquals(2L, second.get(5, TimeUnit.SECONDS).get().getId());
+        assertEquals(List.of(List.of(1L), List.of(2L)), batches);
+    }
+
+    /**
+     * Edge Case Test: a failed batch fails every trade in it, and the next batch still runs
+     */
+    @Test
+    void testSubmit_FailedBatchCompletesExceptionally() throws Exception {
+        GroupCommitCombiner combiner = new GroupCommitCombiner((clientId, trades) -> {
+            if (clientId.equals("MISSING")) {
+                throw new RuntimeException("Account not found: " + clientId);
+            }
+        }, 10);
+
+        CompletableFuture<Trade> failed = combiner.submit(trade(1, "MISSING"));
+        CompletableFuture<Trade> ok = combiner.submit(trade(2, "PRESENT"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertEquals("Account not found: MISSING", e.getCause().getMessage());
+        assertEquals(2L, ok.get().getId());
+        assertEquals(0, combiner.queued("MISSING"));
+    }
+
+    private static CompletableFuture<CompletableFuture<Trade>> submitAsync(GroupCommitCombiner combiner, long id) {
+        return CompletableFuture.supplyAsync(() -> combiner.submit(trade(id, "HOT")), Thread::startVirtualThread);
+    }
+
+    private static void awaitQueued(GroupCommitCombiner combiner, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (combiner.queued("HOT") < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, combiner.queued("HOT"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
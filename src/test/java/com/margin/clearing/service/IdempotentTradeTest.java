@@ -0,0 +1,180 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService.BatchTradeResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:idempotent")
+class IdempotentTradeTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("IDEM_A", new BigDecimal("1000.00")));
+        accountRepository.save(new Account("IDEM_B", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+    }
+
+    private BigDecimal balanceOf(String clientId) {
+        return accountRepository.findByClientId(clientId).orElseThrow().getBalance();
+    }
+
+    /**
+     * Test that a retried orderId returns the original trade and debits the account once
+     */
+    @Test
+    void testProcessTrade_RetryReturnsOriginalTrade() {
+        // Arrange
+        double duplicatesBefore = meterRegistry.get("clearing.duplicates").counter().count();
+        Trade original = marginService.processTrade("ORDER-RETRY-1", "IDEM_A", "AAPL", 10, new BigDecimal("100.00"));
+
+        // Act
+        Trade retried = marginService.processTrade("ORDER-RETRY-1", "IDEM_A", "AAPL", 10, new BigDecimal("100.00"));
+
+        // Assert
+        assertEquals(Trade.TradeStatus.CLEARED, retried.getStatus());
+        assertEquals(original.getId(), retried.getId());
+        assertEquals(new BigDecimal("900.00"), balanceOf("IDEM_A"));
+        assertEquals(1, tradeRepository.count());
+        assertEquals("ORDER-RETRY-1", tradeRepository.findByOrderId("ORDER-RETRY-1").orElseThrow().getOrderId());
+        assertEquals(duplicatesBefore + 1, meterRegistry.get("clearing.duplicates").counter().count());
+    }
+
+    /**
+     * Edge Case Test: retries racing the original wait for it instead of clearing again
+     */
+    @Test
+    void testProcessTrade_ConcurrentRetriesClearOnce() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Trade>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() ->
+                    marginService.processTrade("ORDER-STORM-1", "IDEM_A", "AAPL", 10, new BigDecimal("100.00"))));
+        }
+        List<Long> tradeIds = new ArrayList<>();
+        for (Future<Trade> future : futures) {
+            tradeIds.add(future.get().getId());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, tradeIds.stream().distinct().count());
+        assertEquals(new BigDecimal("900.00"), balanceOf("IDEM_A"));
+        assertEquals(1, tradeRepository.count());
+    }
+
+    /**
+     * Edge Case Test: a rejected trade is a result too, and is not retried into a CLEARED one
+     */
+    @Test
+    void testProcessTrade_RejectedTradeIsNotClearedOnRetry() {
+        // Arrange
+        marginService.processTrade("ORDER-REJECT-1", "IDEM_A", "AAPL", 1000, new BigDecimal("100.00"));
+        accountRepository.save(accountRepository.findByClientId("IDEM_A").map(account -> {
+            account.setBalance(new BigDecimal("100000.00"));
+            return account;
+        }).orElseThrow());
+        marginService.resetLedgerState();
+
+        // Act
+        Trade retried = marginService.processTrade("ORDER-REJECT-1", "IDEM_A", "AAPL", 1000, new BigDecimal("100.00"));
+
+        // Assert
+        assertEquals(Trade.TradeStatus.REJECTED, retried.getStatus());
+        assertEquals(new BigDecimal("100000.00"), balanceOf("IDEM_A"));
+    }
+
+    /**
+     * Edge Case Test: an orderId is not consumed by a failure, and cannot be reused by another client
+     */
+    @Test
+    void testProcessTrade_FailedAndForeignOrderIds() {
+        // Act & Assert: unknown account fails without consuming the orderId
+        assertThrows(RuntimeException.class,
+                () -> marginService.processTrade("ORDER-LATE-1", "IDEM_NEW", "AAPL", 1, new BigDecimal("100.00")));
+        accountRepository.save(new Account("IDEM_NEW", new BigDecimal("50.00")));
+        marginService.resetLedgerState();
+        Trade trade = marginService.processTrade("ORDER-LATE-1", "IDEM_NEW", "AAPL", 1, new BigDecimal("100.00"));
+        assertEquals(Trade.TradeStatus.CLEARED, trade.getStatus());
+
+        // Another client presenting the same orderId is refused
+        assertThrows(IllegalArgumentException.class,
+                () -> marginService.processTrade("ORDER-LATE-1", "IDEM_B", "AAPL", 1, new BigDecimal("100.00")));
+        assertEquals(new BigDecimal("1000.00"), balanceOf("IDEM_B"));
+    }
+
+    /**
+     * Edge Case Test: the orderId limit is in UTF-8 bytes, so 64 multi-byte characters are refused
+     */
+    @Test
+    void testProcessTrade_OrderIdLimitIsInBytes() {
+        // Act & Assert
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> marginService.processTrade("é".repeat(64), "IDEM_B", "AAPL", 1, new BigDecimal("100.00")));
+        assertEquals("orderId must be 1-64 bytes (UTF-8)", e.getMessage());
+        Trade trade = marginService.processTrade("é".repeat(32), "IDEM_B", "AAPL", 1, new BigDecimal("100.00"));
+        assertEquals(Trade.TradeStatus.CLEARED, trade.getStatus());
+        assertEquals(new BigDecimal("990.00"), balanceOf("IDEM_B"));
+    }
+
+    /**
+     * Test that batch entries are deduplicated within the batch and against earlier submissions
+     */
+    @Test
+    void testProcessTradeBatch_DeduplicatesOrderIds() {
+        // Arrange
+        marginService.processTrade("ORDER-BATCH-0", "IDEM_B", "MSFT", 10, new BigDecimal("100.00"));
+        List<TradeRequestDTO> requests = new ArrayList<>();
+        for (String orderId : List.of("ORDER-BATCH-1", "ORDER-BATCH-1", "ORDER-BATCH-0")) {
+            TradeRequestDTO request = new TradeRequestDTO(orderId.endsWith("0") ? "IDEM_B" : "IDEM_A", "AAPL", 10,
+                    new BigDecimal("100.00"));
+            request.setOrderId(orderId);
+            requests.add(request);
+        }
+
+        // Act
+        List<BatchTradeResult> results = marginService.processTradeBatch(requests);
+
+        // Assert
+        assertEquals(3, results.size());
+        results.forEach(result -> assertEquals(Trade.TradeStatus.CLEARED, result.status()));
+        assertEquals(results.get(0).tradeId(), results.get(1).tradeId());
+        assertEquals("MSFT", results.get(2).symbol());
+        assertEquals(new BigDecimal("900.00"), balanceOf("IDEM_A"));
+        assertEquals(new BigDecimal("900.00"), balanceOf("IDEM_B"));
+        assertEquals(2, tradeRepository.count());
+    }
+}
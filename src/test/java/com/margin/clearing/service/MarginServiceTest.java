@@ -1,16 +1,22 @@
 package com.margin.clearing.service;
 
+import com.margin.clearing.dto.TradeRequestDTO;
 import com.margin.clearing.entity.Account;
 import com.margin.clearing.entity.Trade;
+import com.margin.clearing.position.PositionBook;
 import com.margin.clearing.repository.AccountRepository;
 import com.margin.clearing.repository.TradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +33,12 @@ class MarginServiceTest {
     @Autowired
     private TradeRepository tradeRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PositionBook positionBook;
+
     private Account testAccount;
 
     @BeforeEach
@@ -169,4 +181,80 @@ class MarginServiceTest {
             marginService.processTrade(nonExistentClientId, symbol, quantity, price);
         });
     }
+
+    /**
+     * Test batch submission: per-trade results in request order, applied in order per client
+     */
+    @Test
+    void testProcessTradeBatch_PerTradeResults() {
+        // Arrange
+        List<TradeRequestDTO> requests = List.of(
+                new TradeRequestDTO("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00")),   // margin 150.00
+                new TradeRequestDTO("NON_EXISTENT_CLIENT", "AAPL", 10, new BigDecimal("150.00")),
+                new TradeRequestDTO("TEST_CLIENT", "MSFT", 1000, new BigDecimal("150.00")), // margin 15000.00
+                new TradeRequestDTO("TEST_CLIENT", "TSLA", 10, new BigDecimal("100.00"))    // margin 100.00
+        );
+
+        // Act
+        List<MarginService.BatchTradeResult> results = marginService.processTradeBatch(requests);
+
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals(Trade.TradeStatus.CLEARED, results.get(0).status());
+        assertNotNull(results.get(0).tradeId());
+        assertEquals(Trade.TradeStatus.REJECTED, results.get(1).status());
+        assertNull(results.get(1).tradeId());
+        assertEquals(Trade.TradeStatus.REJECTED, results.get(2).status());
+        assertEquals(new BigDecimal("15000.00"), results.get(2).marginRequired());
+        assertEquals(Trade.TradeStatus.CLEARED, results.get(3).status());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).index());
+        }
+
+        Account updatedAccount = accountRepository.findByClientId("TEST_CLIENT").orElseThrow();
+        assertEquals(new BigDecimal("9750.00"), updatedAccount.getBalance());
+        assertEquals(3, tradeRepository.findLatestByClientId("TEST_CLIENT", Limit.unlimited()).size());
+    }
+
+    /**
+     * Test that a pessimistic clear records every stage timer and the outcome counters
+     */
+    @Test
+    void testProcessTrade_RecordsStageMetrics() {
+        // Arrange
+        double clearedBefore = meterRegistry.get("clearing.trades").tag("status", "CLEARED").counter().count();
+        double rejectedBefore = meterRegistry.get("clearing.trades").tag("status", "REJECTED").counter().count();
+
+        // Act
+        marginService.processTrade("TEST_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+        marginService.processTrade("TEST_CLIENT", "AAPL", 10000, new BigDecimal("150.00"));
+
+        // Assert
+        for (ClearingMetrics.Stage stage : ClearingMetrics.Stage.values()) {
+            Timer timer = meterRegistry.get("clearing.stage").tag("stage", stage.name().toLowerCase()).timer();
+            assertTrue(timer.count() > 0, "no samples for stage " + stage);
+        }
+        assertTrue(meterRegistry.get("clearing.process").tag("mode", "PESSIMISTIC").timer().count() >= 2);
+        assertEquals(clearedBefore + 1, meterRegistry.get("clearing.trades").tag("status", "CLEARED").counter().count());
+        assertEquals(rejectedBefore + 1, meterRegistry.get("clearing.trades").tag("status", "REJECTED").counter().count());
+    }
+
+    /**
+     * Test that only cleared trades reach the position book
+     */
+    @Test
+    void testProcessTrade_UpdatesPositionBook() {
+        // Arrange
+        accountRepository.save(new Account("POSITION_CLIENT", new BigDecimal("1000.00")));
+
+        // Act
+        marginService.processTrade("POSITION_CLIENT", "NVDA", 10, new BigDecimal("100.00"));
+        marginService.processTrade("POSITION_CLIENT", "NVDA", 10000, new BigDecimal("100.00"));
+
+        // Assert
+        List<PositionBook.Position> positions = positionBook.positionsOf("POSITION_CLIENT");
+        assertEquals(1, positions.size());
+        assertEquals(10, positions.get(0).netQuantity());
+        assertEquals(new BigDecimal("1000.00"), positions.get(0).notional());
+    }
 }
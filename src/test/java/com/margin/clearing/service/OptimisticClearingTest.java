@@ -0,0 +1,103 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.mode=OPTIMISTIC",
+        "clearing.optimistic.max-retries=2",
+        "spring.datasource.url=jdbc:h2:mem:optimistic"
+})
+class OptimisticClearingTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    /**
+     * Test that an uncontended trade clears without a lock and bumps the account version
+     */
+    @Test
+    void testProcessTrade_ClearsWithVersionCheck() {
+        // Arrange
+        Account saved = accountRepository.save(new Account("OPT_CLIENT", new BigDecimal("1000.00")));
+
+        // Act
+        Trade result = marginService.processTrade("OPT_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+
+        // Assert
+        assertEquals(ClearingMode.OPTIMISTIC, marginService.getClearingMode());
+        assertEquals(Trade.TradeStatus.CLEARED, result.getStatus());
+        Account updated = accountRepository.findByClientId("OPT_CLIENT").orElseThrow();
+        assertEquals(new BigDecimal("850.00"), updated.getBalance());
+        assertEquals(saved.getVersion() + 1, updated.getVersion());
+    }
+
+    /**
+     * Test that concurrent trades on one account lose no debits, whether retried or locked
+     */
+    @Test
+    void testProcessTrade_ConcurrentTradesOnOneAccount() throws Exception {
+        // Arrange
+        accountRepository.save(new Account("HOT_CLIENT", new BigDecimal("100000.00")));
+        double retriesBefore = meterRegistry.get("clearing.optimistic.retries").counter().count();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Trade>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(() ->
+                    marginService.processTrade("HOT_CLIENT", "AAPL", 1, new BigDecimal("100.00"))));
+        }
+        for (Future<Trade> future : futures) {
+            assertEquals(Trade.TradeStatus.CLEARED, future.get().getStatus());
+        }
+        executor.shutdown();
+
+        // Assert: 200 debits of 10.00
+        assertEquals(new BigDecimal("98000.00"), accountRepository.findByClientId("HOT_CLIENT").orElseThrow().getBalance());
+        assertEquals(200, tradeRepository.count());
+        assertTrue(meterRegistry.get("clearing.optimistic.retries").counter().count() >= retriesBefore);
+        assertNotNull(meterRegistry.get("clearing.optimistic.fallbacks").tag("reason", "contended").counter());
+    }
+
+    /**
+     * Edge Case Test: an unknown account still fails the trade instead of being retried
+     */
+    @Test
+    void testProcessTrade_UnknownAccount() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> marginService.processTrade("NO_SUCH_CLIENT", "AAPL", 1, new BigDecimal("100.00")));
+        assertEquals("Account not found: NO_SUCH_CLIENT", e.getMessage());
+    }
+}
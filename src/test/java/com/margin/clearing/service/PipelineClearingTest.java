@@ -0,0 +1,181 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.dto.SimulationRequestDTO;
+import com.margin.clearing.dto.TradeRequestDTO;
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "clearing.mode=PIPELINE",
+        "clearing.pipeline.ring-size=64",
+        "clearing.pipeline.persist-batch-size=16",
+        "clearing.pipeline.wait-strategy=BLOCKING",
+        "spring.datasource.url=jdbc:h2:mem:pipeline"
+})
+class PipelineClearingTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @SpyBean
+    private TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        marginService.resetLedgerState();
+    }
+
+    /**
+     * Test that a trade is persisted and debited before it is acknowledged
+     */
+    @Test
+    void testProcessTrade_PersistedBeforeAck() {
+        // Arrange
+        accountRepository.save(new Account("PIPE_CLIENT", new BigDecimal("1000.00")));
+
+        // Act
+        Trade result = marginService.processTrade("PIPE_CLIENT", "AAPL", 10, new BigDecimal("150.00"));
+
+        // Assert
+        assertEquals(ClearingMode.PIPELINE, marginService.getClearingMode());
+        assertEquals(Trade.TradeStatus.CLEARED, result.getStatus());
+        assertNotNull(result.getId());
+        assertEquals(new BigDecimal("850.00"), accountRepository.findByClientId("PIPE_CLIENT").orElseThrow().getBalance());
+    }
+
+    /**
+     * Test that more trades than ring slots keep per-trade accept/reject semantics
+     */
+    @Test
+    void testSubmitTrade_WrapsRingAndKeepsOutcomes() {
+        // Arrange: LIMITED can afford 50 of its 200 trades at 10.00 margin each
+        accountRepository.save(new Account("RICH", new BigDecimal("100000.00")));
+        accountRepository.save(new Account("LIMITED", new BigDecimal("500.00")));
+        marginService.resetLedgerState();
+        List<CompletableFuture<Trade>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 400; i++) {
+            futures.add(marginService.submitTrade(i % 2 == 0 ? "RICH" : "LIMITED", "AAPL", 1, new BigDecimal("100.00")));
+        }
+        long limitedCleared = futures.stream()
+                .map(CompletableFuture::join)
+                .filter(t -> t.getClientId().equals("LIMITED") && t.getStatus() == Trade.TradeStatus.CLEARED)
+                .count();
+
+        // Assert
+        assertEquals(50, limitedCleared);
+        assertEquals(new BigDecimal("0.00"), accountRepository.findByClientId("LIMITED").orElseThrow().getBalance());
+        assertEquals(new BigDecimal("98000.00"), accountRepository.findByClientId("RICH").orElseThrow().getBalance());
+        assertEquals(400, tradeRepository.count());
+    }
+
+    /**
+     * Edge Case Test: invalid requests and unknown accounts fail only their own trade
+     */
+    @Test
+    void testProcessTradeBatch_InvalidAndUnknownFailAlone() {
+        // Arrange
+        accountRepository.save(new Account("PIPE_CLIENT", new BigDecimal("1000.00")));
+        List<TradeRequestDTO> requests = List.of(
+                new TradeRequestDTO("PIPE_CLIENT", "AAPL", 1, new BigDecimal("100.00")),
+                new TradeRequestDTO("PIPE_CLIENT", "AAPL", -5, new BigDecimal("100.00")),
+                new TradeRequestDTO("NO_SUCH_CLIENT", "AAPL", 1, new BigDecimal("100.00")),
+                new TradeRequestDTO("PIPE_CLIENT", "AAPL", 2, new BigDecimal("100.00")));
+
+        // Act
+        List<MarginService.BatchTradeResult> results = marginService.processTradeBatch(requests);
+
+        // Assert
+        assertEquals(Trade.TradeStatus.CLEARED, results.get(0).status());
+        assertTrue(results.get(1).message().startsWith("Invalid trade request"));
+        assertEquals("Account not found: NO_SUCH_CLIENT", results.get(2).message());
+        assertEquals(Trade.TradeStatus.CLEARED, results.get(3).status());
+        assertEquals(new BigDecimal("970.00"), accountRepository.findByClientId("PIPE_CLIENT").orElseThrow().getBalance());
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> marginService.processTrade("NO_SUCH_CLIENT", "AAPL", 1, new BigDecimal("100.00")));
+        assertEquals("Account not found: NO_SUCH_CLIENT", e.getMessage());
+    }
+
+    /**
+     * Edge Case Test: when a persist batch fails, a trade already debited on top of it is failed rather than
+     * persisted with a balance that includes the rolled-back debit, and later trades clear on the reloaded balance
+     */
+    @Test
+    void testSubmitTrade_PersistFailureFailsTradesRiskedOnTop() {
+        // Arrange: the first batch is held in saveAll while the next trade is risk-checked, then fails
+        accountRepository.save(new Account("PIPE_CLIENT", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicReference<CompletableFuture<Trade>> inFlight = new AtomicReference<>();
+        doAnswer(invocation -> {
+            if (failed.compareAndSet(false, true)) {
+                inFlight.set(marginService.submitTrade("PIPE_CLIENT", "AAPL", 3, new BigDecimal("100.00")));
+                Thread.sleep(200);
+                throw new IllegalStateException("disk full");
+            }
+            // The spy wraps a repository proxy; its default answer delegates to it
+            return Mockito.mockingDetails(tradeRepository).getMockCreationSettings().getDefaultAnswer().answer(invocation);
+        }).when(tradeRepository).saveAll(any());
+
+        // Act
+        CompletableFuture<Trade> first = marginService.submitTrade("PIPE_CLIENT", "AAPL", 3, new BigDecimal("100.00"));
+        CompletionException firstError = assertThrows(CompletionException.class, first::join);
+        CompletionException inFlightError = assertThrows(CompletionException.class, () -> inFlight.get().join());
+        Trade after = marginService.processTrade("PIPE_CLIENT", "AAPL", 3, new BigDecimal("100.00"));
+
+        // Assert
+        assertTrue(firstError.getCause().getMessage().startsWith("Trade could not be persisted"));
+        assertTrue(inFlightError.getCause().getMessage().contains("rolled back by an earlier failed batch"));
+        assertEquals(Trade.TradeStatus.CLEARED, after.getStatus());
+        assertEquals(1, tradeRepository.count());
+        assertEquals(new BigDecimal("970.00"), accountRepository.findByClientId("PIPE_CLIENT").orElseThrow().getBalance());
+    }
+
+    /**
+     * Test that the simulation publishes into the pipeline and every trade completes
+     */
+    @Test
+    void testRunSimulation_PublishesIntoPipeline() {
+        // Arrange
+        simulationService.initializeAccounts(10);
+        SimulationRequestDTO profile = new SimulationRequestDTO();
+        profile.setTrades(500);
+
+        // Act
+        SimulationService.SimulationResult result = simulationService.runSimulation(profile);
+
+        // Assert
+        assertEquals(500, result.totalTrades());
+        assertEquals(500, result.successCount() + result.failureCount());
+        assertEquals(500, tradeRepository.count());
+    }
+}
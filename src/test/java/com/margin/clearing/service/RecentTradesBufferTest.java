@@ -0,0 +1,80 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentTradesBufferTest {
+
+    private static Trade trade(long id) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        return trade;
+    }
+
+    /**
+     * Test that trades come back newest first and old ones are overwritten
+     */
+    @Test
+    void testLatest_NewestFirstAfterWrap() {
+        RecentTradesBuffer buffer = new RecentTradesBuffer(5);
+        for (long id = 1; id <= 12; id++) {
+            buffer.onTradeProcessed(trade(id));
+        }
+
+        List<Trade> latest = buffer.latest(3);
+        assertEquals(List.of(12L, 11L, 10L), latest.stream().map(Trade::getId).toList());
+        assertEquals(5, buffer.latest(20).size());
+        assertEquals(8L, buffer.latest(20).get(4).getId());
+    }
+
+    /**
+     * Edge Case Test: empty and partially filled buffers
+     */
+    @Test
+    void testLatest_FewerTradesThanLimit() {
+        RecentTradesBuffer buffer = new RecentTradesBuffer(100);
+        assertTrue(buffer.latest(20).isEmpty());
+        assertTrue(buffer.latest(-1).isEmpty());
+
+        buffer.onTradeProcessed(trade(1));
+        buffer.onTradeProcessed(trade(2));
+        assertEquals(List.of(2L, 1L), buffer.latest(20).stream().map(Trade::getId).toList());
+        assertTrue(buffer.latest(-1).isEmpty());
+    }
+
+    /**
+     * Test that concurrent writers never expose null or duplicate entries
+     */
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        RecentTradesBuffer buffer = new RecentTradesBuffer(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int w = 0; w < 4; w++) {
+            long base = w * 100_000L;
+            executor.execute(() -> {
+                for (long i = 0; i < 10_000; i++) {
+                    buffer.onTradeProcessed(trade(base + i));
+                }
+                done.countDown();
+            });
+        }
+        while (done.getCount() > 0) {
+            List<Trade> latest = buffer.latest(20);
+            assertTrue(latest.size() <= 20);
+            assertEquals(latest.size(), latest.stream().map(Trade::getId).distinct().count());
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(20, buffer.latest(20).size());
+    }
+}
@@ -0,0 +1,157 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.SettlementRecord;
+import com.margin.clearing.entity.SettlementRun;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.SettlementRecordRepository;
+import com.margin.clearing.repository.SettlementRunRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.SettlementService.SettlementReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "clearing.settlement.chunk-size=7",
+        "spring.datasource.url=jdbc:h2:mem:settlement"
+})
+class SettlementServiceTest {
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private SettlementRunRepository runRepository;
+
+    @Autowired
+    private SettlementRecordRepository recordRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        recordRepository.deleteAll();
+        runRepository.deleteAll();
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("SETTLE_A", new BigDecimal("1000.00")));
+        accountRepository.save(new Account("SETTLE_B", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+    }
+
+    private List<Trade> trade(int count) {
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            trades.add(marginService.processTrade(i % 2 == 0 ? "SETTLE_A" : "SETTLE_B", "AAPL", 1, new BigDecimal("100.00")));
+        }
+        return trades;
+    }
+
+    private BigDecimal balance(String clientId) {
+        return accountRepository.findByClientId(clientId).orElseThrow().getBalance();
+    }
+
+    /**
+     * Test that settlement releases the margin of every cleared trade across several chunks
+     */
+    @Test
+    void testRunSettlement_ReleasesMarginOfClearedTrades() {
+        // Arrange: 20 trades of 10.00 margin each, split evenly
+        trade(20);
+        marginService.processTrade("SETTLE_A", "AAPL", 1000, new BigDecimal("100.00")); // rejected, nothing to release
+        assertEquals(new BigDecimal("900.00"), balance("SETTLE_A"));
+
+        // Act
+        SettlementReport report = settlementService.runSettlement();
+        SettlementReport again = settlementService.runSettlement();
+
+        // Assert
+        assertFalse(report.resumed());
+        assertEquals(20, report.tradesSettled());
+        assertEquals(new BigDecimal("200.00"), report.marginReleased());
+        assertEquals(new BigDecimal("1000.00"), balance("SETTLE_A"));
+        assertEquals(new BigDecimal("1000.00"), balance("SETTLE_B"));
+        List<SettlementRecord> records = recordRepository.findByRunIdAndClientId(report.runId(), "SETTLE_A");
+        assertEquals(10, records.stream().mapToInt(SettlementRecord::getTradeCount).sum());
+        assertEquals(new BigDecimal("1000.00"), records.stream().map(SettlementRecord::getNotional).reduce(BigDecimal.ZERO, BigDecimal::add));
+        assertEquals(SettlementRun.Status.COMPLETED, runRepository.findById(report.runId()).orElseThrow().getStatus());
+        assertEquals(0, again.tradesSettled());
+        assertEquals(new BigDecimal("1000.00"), balance("SETTLE_A"));
+    }
+
+    /**
+     * Edge Case Test: an interrupted run resumes after its checkpoint instead of settling trades twice
+     */
+    @Test
+    void testRunSettlement_ResumesFromCheckpoint() {
+        // Arrange: a run that committed the first 6 trades and then stopped
+        List<Trade> trades = trade(12);
+        SettlementRun interrupted = new SettlementRun(0, trades.get(11).getId());
+        interrupted.setLastSettledTradeId(trades.get(5).getId());
+        interrupted.setTradesSettled(6L);
+        interrupted.setMarginReleased(new BigDecimal("60.00"));
+        interrupted.setStatus(SettlementRun.Status.FAILED);
+        interrupted = runRepository.save(interrupted);
+        jdbcTemplate.update("UPDATE trades SET settlement_run_id = ? WHERE id <= ?", interrupted.getId(), trades.get(5).getId());
+
+        // Act
+        SettlementReport report = settlementService.runSettlement();
+
+        // Assert: only trades 7..12 were released now
+        assertTrue(report.resumed());
+        assertEquals(interrupted.getId(), report.runId());
+        assertEquals(6, report.tradesSettled());
+        assertEquals(12, report.totalTradesSettled());
+        assertEquals(new BigDecimal("120.00"), report.marginReleased());
+        assertEquals(new BigDecimal("970.00"), balance("SETTLE_A"));
+        assertEquals(new BigDecimal("970.00"), balance("SETTLE_B"));
+    }
+
+    /**
+     * Edge Case Test: a trade that commits with an id below a finished run's bound is settled by the next run, once
+     */
+    @Test
+    void testRunSettlement_SettlesTradeCommittedBelowEarlierRun() {
+        // Arrange: a run settles 4 trades, then a trade holding an id from before them commits
+        List<Trade> trades = trade(4);
+        SettlementReport first = settlementService.runSettlement();
+        long lateId = trades.get(0).getId() - 1;
+        jdbcTemplate.update("INSERT INTO trades (id, client_id, symbol, quantity, price, margin_required, status, created_at)"
+                + " VALUES (?, 'SETTLE_A', 'AAPL', 1, 100.00, 10.00, 'CLEARED', CURRENT_TIMESTAMP)", lateId);
+        jdbcTemplate.update("UPDATE accounts SET balance = balance - 10.00 WHERE client_id = 'SETTLE_A'");
+        marginService.resetLedgerState();
+
+        // Act
+        SettlementReport second = settlementService.runSettlement();
+        SettlementReport third = settlementService.runSettlement();
+
+        // Assert
+        assertEquals(4, first.tradesSettled());
+        assertEquals(1, second.tradesSettled());
+        assertEquals(new BigDecimal("10.00"), second.marginReleased());
+        assertEquals(second.runId(), tradeRepository.findById(lateId).orElseThrow().getSettlementRunId());
+        assertEquals(0, third.tradesSettled());
+        assertEquals(new BigDecimal("1000.00"), balance("SETTLE_A"));
+        assertEquals(new BigDecimal("1000.00"), balance("SETTLE_B"));
+    }
+}
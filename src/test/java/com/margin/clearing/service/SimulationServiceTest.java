@@ -1,9 +1,11 @@
 package com.margin.clearing.service;
 
+import com.margin.clearing.dto.SimulationRequestDTO;
 import com.margin.clearing.entity.Account;
 import com.margin.clearing.entity.Trade;
 import com.margin.clearing.repository.AccountRepository;
 import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.simulation.ThroughputSeries;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -132,4 +134,56 @@ class SimulationServiceTest {
         
         assertEquals(result.successCount(), clearedTrades.size());
     }
+
+    /**
+     * Test that an open-loop run reports ordered latency percentiles and a complete throughput series
+     */
+    @Test
+    void testRunSimulation_OpenLoopReportsPercentiles() {
+        // Arrange
+        simulationService.initializeAccounts(5);
+        SimulationRequestDTO profile = new SimulationRequestDTO();
+        profile.setClients(5);
+        profile.setTrades(200);
+        profile.setRatePerSecond(1000);
+        profile.setZipfExponent(1.2);
+        profile.setSampleIntervalMs(50);
+
+        // Act
+        SimulationService.SimulationResult result = simulationService.runSimulation(profile);
+
+        // Assert
+        assertEquals(200, result.totalTrades());
+        assertEquals(200, result.successCount() + result.failureCount());
+        SimulationService.LatencySummary latency = result.latency();
+        assertTrue(latency.p50Ms() > 0);
+        assertTrue(latency.p50Ms() <= latency.p90Ms());
+        assertTrue(latency.p90Ms() <= latency.p99Ms());
+        assertTrue(latency.p99Ms() <= latency.p999Ms());
+        assertTrue(latency.p999Ms() <= latency.maxMs());
+        // 200 arrivals at 1000/s take at least 199ms to issue
+        assertTrue(result.totalTimeMs() >= 199);
+        assertEquals(200, result.throughput().stream().mapToLong(ThroughputSeries.Sample::completed).sum());
+        assertEquals(200, tradeRepository.count());
+    }
+
+    /**
+     * Edge Case Test: the duration limit stops issuing before the trade count is reached
+     */
+    @Test
+    void testRunSimulation_StopsAtDuration() {
+        // Arrange
+        simulationService.initializeAccounts();
+        SimulationRequestDTO profile = new SimulationRequestDTO();
+        profile.setTrades(10_000);
+        profile.setRatePerSecond(100);
+        profile.setDurationSeconds(0.5);
+
+        // Act
+        SimulationService.SimulationResult result = simulationService.runSimulation(profile);
+
+        // Assert
+        assertEquals(50, result.totalTrades());
+        assertEquals(50, tradeRepository.count());
+    }
 }
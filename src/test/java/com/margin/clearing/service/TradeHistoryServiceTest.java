@@ -0,0 +1,115 @@
+package com.margin.clearing.service;
+
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:history")
+class TradeHistoryServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 2, 9, 30);
+
+    @Autowired
+    private TradeHistoryService tradeHistoryService;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+    }
+
+    private static Trade trade(String clientId, LocalDateTime createdAt) {
+        return new Trade(null, clientId, "AAPL", 1, new BigDecimal("10.00"), new BigDecimal("1.00"),
+                Trade.TradeStatus.CLEARED, createdAt);
+    }
+
+    /**
+     * Test that walking the cursors returns every trade once, newest first, including trades with equal timestamps
+     */
+    @Test
+    void testGetTrades_PagesThroughHistory() {
+        // Arrange - 25 trades in 13 distinct timestamps (pairs share one), plus another client's trades
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            trades.add(trade("HISTORY_A", T0.plusSeconds(i / 2)));
+            trades.add(trade("HISTORY_B", T0.plusSeconds(i)));
+        }
+        tradeRepository.saveAll(trades);
+
+        // Act
+        List<Trade> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            TradeHistoryService.TradePage page = tradeHistoryService.getTrades("HISTORY_A", cursor, 10);
+            seen.addAll(page.trades());
+            pageSizes.add(page.trades().size());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        // Assert
+        assertEquals(List.of(10, 10, 5), pageSizes);
+        assertEquals(25, seen.stream().map(Trade::getId).distinct().count());
+        assertTrue(seen.stream().allMatch(t -> t.getClientId().equals("HISTORY_A")));
+        for (int i = 1; i < seen.size(); i++) {
+            Trade newer = seen.get(i - 1);
+            Trade older = seen.get(i);
+            int byTime = newer.getCreatedAt().compareTo(older.getCreatedAt());
+            assertTrue(byTime > 0 || (byTime == 0 && newer.getId() > older.getId()));
+        }
+    }
+
+    /**
+     * Test that a deep keyset page seeks into the composite index and reads only the rows it returns
+     */
+    @Test
+    void testKeysetQuery_ReadsOnlyOnePage() {
+        // Arrange
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            trades.add(trade("HISTORY_A", T0.plusSeconds(i)));
+        }
+        tradeRepository.saveAll(trades);
+
+        // Act - same shape as TradeRepository.findByClientIdBefore, positioned halfway through the history
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN ANALYZE SELECT * FROM trades t WHERE t.client_id = ? AND t.created_at <= ?"
+                        + " AND (t.created_at < ? OR t.id < ?) ORDER BY t.client_id, t.created_at DESC, t.id DESC"
+                        + " FETCH FIRST 11 ROWS ONLY",
+                String.class, "HISTORY_A", T0.plusSeconds(500), T0.plusSeconds(500), Long.MAX_VALUE);
+
+        // Assert
+        assertNotNull(plan);
+        assertTrue(plan.toUpperCase().contains("IDX_TRADES_CLIENT_CREATED_ID"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+        // The page plus at most the cursor row, not the 500 older trades
+        assertTrue(plan.matches("(?s).*scanCount: 1[12] .*"), plan);
+    }
+
+    /**
+     * Edge Case Test: malformed cursors and out-of-range page sizes are rejected
+     */
+    @Test
+    void testGetTrades_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> tradeHistoryService.getTrades("HISTORY_A", "not-a-cursor", 10));
+        assertThrows(IllegalArgumentException.class, () -> tradeHistoryService.getTrades("HISTORY_A", null, 0));
+        assertThrows(IllegalArgumentException.class, () -> tradeHistoryService.getTrades("HISTORY_A", null, 1001));
+        assertTrue(tradeHistoryService.getTrades("NOBODY", null, null).trades().isEmpty());
+    }
+}
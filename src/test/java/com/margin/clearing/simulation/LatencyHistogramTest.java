@@ -0,0 +1,59 @@
+package com.margin.clearing.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Test that percentiles of 1..100000 are within the histogram's 1/64 precision
+     */
+    @Test
+    void testPercentiles_WithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100_000, histogram.getTotalCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 / 64.0);
+        assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 / 64.0);
+        assertEquals(99_900, histogram.getValueAtPercentile(99.9), 99_900 / 64.0);
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Test that a single outlier shows up at the tail but not the median
+     */
+    @Test
+    void testPercentiles_TailOutlier() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) {
+            histogram.record(1_000_000);
+        }
+        histogram.record(5_000_000_000L);
+
+        assertEquals(1_000_000, histogram.getValueAtPercentile(50), 1_000_000 / 64.0);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(99.9), 1_000_000 / 64.0);
+        assertEquals(5_000_000_000L, histogram.getValueAtPercentile(99.95));
+    }
+
+    /**
+     * Edge Case Test: bucket bounds always contain the value that mapped to them
+     */
+    @Test
+    void testBuckets_ContainValues() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueAt(index - 1) < value);
+        }
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,35 @@
+package com.margin.clearing.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfDistributionTest {
+
+    private static int[] histogram(ZipfDistribution zipf, int samples) {
+        SplittableRandom random = new SplittableRandom(7);
+        int[] counts = new int[zipf.size()];
+        for (int i = 0; i < samples; i++) {
+            counts[zipf.sample(random)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Test that exponent 0 is uniform and exponent 1 concentrates draws on the first ranks
+     */
+    @Test
+    void testSample_SkewFollowsExponent() {
+        int[] uniform = histogram(new ZipfDistribution(10, 0), 100_000);
+        for (int count : uniform) {
+            assertEquals(10_000, count, 500);
+        }
+
+        int[] skewed = histogram(new ZipfDistribution(10, 1.0), 100_000);
+        // P(rank 0) = 1 / H(10) ~= 0.341, and rank 0 is drawn twice as often as rank 1
+        assertEquals(34_100, skewed[0], 1_000);
+        assertEquals(2.0, (double) skewed[0] / skewed[1], 0.1);
+    }
+}
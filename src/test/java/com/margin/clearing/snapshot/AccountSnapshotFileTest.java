@@ -0,0 +1,90 @@
+package com.margin.clearing.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(long journalSeq, String... clientIds) throws IOException {
+        try (AccountSnapshotFile.Writer writer = AccountSnapshotFile.writer(dir, journalSeq)) {
+            for (int i = 0; i < clientIds.length; i++) {
+                writer.add(clientIds[i], 1_000_00L * (i + 1), i + 1);
+            }
+            return writer.commit();
+        }
+    }
+
+    /**
+     * Test that a committed snapshot reads back account for account
+     */
+    @Test
+    void testWriteAndOpen_RoundTrip() throws IOException {
+        // Arrange
+        Path file = write(42, "CLIENT_001", "CLIENT_ÄÖ", "CLIENT_003");
+
+        // Act
+        AccountSnapshotFile snapshot = AccountSnapshotFile.open(file);
+        List<String> accounts = new ArrayList<>();
+        snapshot.forEach((clientId, cents, version) -> accounts.add(clientId + ":" + cents + ":" + version));
+
+        // Assert
+        assertEquals(42, snapshot.getJournalSeq());
+        assertEquals(3, snapshot.getAccountCount());
+        assertEquals(List.of("CLIENT_001:100000:1", "CLIENT_ÄÖ:200000:2", "CLIENT_003:300000:3"), accounts);
+        assertEquals(List.of(file), AccountSnapshotFile.list(dir));
+    }
+
+    /**
+     * Edge Case Test: a flipped byte is caught by the checksum before any record is used
+     */
+    @Test
+    void testOpen_RejectsCorruptedFile() throws IOException {
+        // Arrange
+        Path file = write(7, "CLIENT_001", "CLIENT_002");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), 30);
+        }
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> AccountSnapshotFile.open(file));
+    }
+
+    /**
+     * Edge Case Test: an uncommitted writer leaves nothing behind, and pruning keeps the newest snapshots
+     */
+    @Test
+    void testWriterAndPrune_OnlyCommittedSnapshotsAreKept() throws IOException {
+        // Arrange
+        write(1, "CLIENT_001");
+        write(20, "CLIENT_001");
+        Path newest = write(300, "CLIENT_001");
+        try (AccountSnapshotFile.Writer abandoned = AccountSnapshotFile.writer(dir, 400)) {
+            abandoned.add("CLIENT_001", 1, 1);
+        }
+
+        // Act
+        AccountSnapshotFile.prune(dir, 2);
+
+        // Assert
+        List<Path> remaining = AccountSnapshotFile.list(dir);
+        assertEquals(2, remaining.size());
+        assertEquals(newest, remaining.get(0));
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+}
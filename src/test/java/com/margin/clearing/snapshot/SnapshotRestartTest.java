@@ -0,0 +1,169 @@
+package com.margin.clearing.snapshot;
+
+import com.margin.clearing.MarginClearingApplication;
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.journal.TradeJournal;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restarts the application over the same snapshot directory and journal, each time with a fresh in-memory database
+ */
+class SnapshotRestartTest {
+
+    @TempDir
+    Path dir;
+
+    private ConfigurableApplicationContext start(String databaseName, Path dataDir) {
+        return new SpringApplicationBuilder(MarginClearingApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + databaseName,
+                        "--clearing.journal.enabled=true",
+                        "--clearing.journal.path=" + dataDir.resolve("journal.dat"),
+                        "--clearing.journal.capacity=1024",
+                        "--clearing.journal.fsync=ALWAYS",
+                        "--clearing.snapshot.enabled=true",
+                        "--clearing.snapshot.dir=" + dataDir.resolve("snapshots"),
+                        "--clearing.snapshot.interval-ms=0");
+    }
+
+    /**
+     * Snapshots A and B, then clears trades for A and for C (created after the snapshot) that only the journal holds
+     */
+    private void tradeAfterSnapshot(ConfigurableApplicationContext context) {
+        AccountRepository accounts = context.getBean(AccountRepository.class);
+        MarginService marginService = context.getBean(MarginService.class);
+        accounts.save(new Account("SNAP_A", new BigDecimal("1000.00")));
+        accounts.save(new Account("SNAP_B", new BigDecimal("1000.00")));
+        marginService.resetLedgerState();
+        context.getBean(SnapshotService.class).takeSnapshot();
+
+        accounts.save(new Account("SNAP_C", new BigDecimal("500.00")));
+        marginService.resetLedgerState();
+        assertEquals(Trade.TradeStatus.CLEARED, marginService.processTrade("SNAP_A", "AAPL", 10, new BigDecimal("100.00")).getStatus());
+        assertEquals(Trade.TradeStatus.CLEARED, marginService.processTrade("SNAP_A", "AAPL", 5, new BigDecimal("100.00")).getStatus());
+        assertEquals(Trade.TradeStatus.CLEARED, marginService.processTrade("SNAP_C", "MSFT", 10, new BigDecimal("100.00")).getStatus());
+        marginService.awaitPersistence();
+    }
+
+    private static void assertBalance(AccountRepository accounts, String clientId, String balance, long version) {
+        Account account = accounts.findByClientId(clientId).orElseThrow();
+        assertEquals(new BigDecimal(balance), account.getBalance());
+        assertEquals(version, account.getVersion());
+    }
+
+    /**
+     * Test that a crash after the snapshot loses nothing: the journal tail is replayed over the snapshot
+     */
+    @Test
+    void testRestart_AfterCrash_ReplaysJournalOverSnapshot() throws IOException {
+        // Arrange: copy the files as a crash would leave them, before the shutdown snapshot
+        Path crashed = dir.resolve("crashed");
+        try (ConfigurableApplicationContext first = start("snapshot_first", dir)) {
+            tradeAfterSnapshot(first);
+            first.getBean(TradeJournal.class).force();
+            copy(dir, crashed);
+        }
+
+        // Act
+        try (ConfigurableApplicationContext second = start("snapshot_crashed", crashed)) {
+            // Assert
+            AccountRepository accounts = second.getBean(AccountRepository.class);
+            assertEquals(3, accounts.count());
+            assertBalance(accounts, "SNAP_A", "850.00", 2);
+            assertBalance(accounts, "SNAP_B", "1000.00", 0);
+            assertBalance(accounts, "SNAP_C", "400.00", 1);
+
+            // Clearing carries on from the restored balances
+            MarginService marginService = second.getBean(MarginService.class);
+            marginService.processTrade("SNAP_A", "AAPL", 10, new BigDecimal("100.00"));
+            assertBalance(accounts, "SNAP_A", "750.00", 3);
+        }
+    }
+
+    /**
+     * Test that a clean shutdown writes a final snapshot that restores every account on its own
+     */
+    @Test
+    void testRestart_AfterShutdown_RestoresFinalSnapshot() throws IOException {
+        // Arrange
+        try (ConfigurableApplicationContext first = start("snapshot_clean_first", dir)) {
+            tradeAfterSnapshot(first);
+        }
+        AccountSnapshotFile finalSnapshot = AccountSnapshotFile.open(AccountSnapshotFile.list(dir.resolve("snapshots")).get(0));
+        assertEquals(3, finalSnapshot.getAccountCount());
+
+        // Act
+        try (ConfigurableApplicationContext second = start("snapshot_clean_second", dir)) {
+            // Assert
+            AccountRepository accounts = second.getBean(AccountRepository.class);
+            assertBalance(accounts, "SNAP_A", "850.00", 2);
+            assertBalance(accounts, "SNAP_B", "1000.00", 0);
+            assertBalance(accounts, "SNAP_C", "400.00", 1);
+        }
+        assertEquals(2, AccountSnapshotFile.list(dir.resolve("snapshots")).size());
+    }
+
+    /**
+     * Edge Case Test: a trade rolled back after it was journaled is not replayed over the snapshot, even though the
+     * committed trade after it carries the same account version
+     */
+    @Test
+    void testRestart_AfterCrash_IgnoresRolledBackTrade() throws IOException {
+        // Arrange
+        Path crashed = dir.resolve("crashed");
+        try (ConfigurableApplicationContext first = start("snapshot_rollback_first", dir)) {
+            AccountRepository accounts = first.getBean(AccountRepository.class);
+            MarginService marginService = first.getBean(MarginService.class);
+            accounts.save(new Account("SNAP_R", new BigDecimal("1000.00")));
+            marginService.resetLedgerState();
+            first.getBean(SnapshotService.class).takeSnapshot();
+
+            new TransactionTemplate(first.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+                marginService.processTrade("SNAP_R", "AAPL", 50, new BigDecimal("100.00"));
+                status.setRollbackOnly();
+            });
+            marginService.processTrade("SNAP_R", "AAPL", 10, new BigDecimal("100.00"));
+            marginService.awaitPersistence();
+            first.getBean(TradeJournal.class).force();
+            copy(dir, crashed);
+        }
+
+        // Act
+        try (ConfigurableApplicationContext second = start("snapshot_rollback_crashed", crashed)) {
+            // Assert
+            assertBalance(second.getBean(AccountRepository.class), "SNAP_R", "900.00", 1);
+        }
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path file : files.filter(file -> !file.startsWith(to)).toList()) {
+                Path target = to.resolve(from.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.margin.clearing.store;
+
+import com.margin.clearing.controller.TradeController;
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.entity.Trade;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.service.MarginService;
+import com.margin.clearing.service.TradeHistoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:tradestore",
+        "clearing.trade-store.enabled=true",
+        "clearing.trade-store.segment-records=256"
+})
+class TradeStoreHistoryTest {
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeHistoryService tradeHistoryService;
+
+    @Autowired
+    private TradeController tradeController;
+
+    @Autowired
+    private TradeStore tradeStore;
+
+    /**
+     * Test that cleared and rejected trades are served from the store by client history and the recent-trades view
+     */
+    @Test
+    void testHistoryAndRecentTrades_ServedFromStore() {
+        // Arrange
+        accountRepository.save(new Account("STORE_A", new BigDecimal("100000.00")));
+        accountRepository.save(new Account("STORE_B", new BigDecimal("10.00")));
+        marginService.resetLedgerState();
+        List<Long> clearedIds = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            clearedIds.add(marginService.processTrade("STORE_A", "AAPL", 1, new BigDecimal("10.00")).getId());
+            marginService.processTrade("STORE_B", "MSFT", 100, new BigDecimal("10.00"));
+        }
+        tradeStore.awaitSealed();
+
+        // Act
+        List<Trade> history = new ArrayList<>();
+        String cursor = null;
+        do {
+            TradeHistoryService.TradePage page = tradeHistoryService.getTrades("STORE_A", cursor, 100);
+            history.addAll(page.trades());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        List<Trade> recent = tradeController.getLast20Trades(4).getBody();
+
+        // Assert
+        assertTrue(tradeStore.getSegmentCount() >= 3);
+        assertEquals(300, history.size());
+        assertEquals(clearedIds.reversed(), history.stream().map(Trade::getId).toList());
+        assertTrue(history.stream().allMatch(t -> t.getStatus() == Trade.TradeStatus.CLEARED));
+        assertNotNull(recent);
+        assertEquals(4, recent.size());
+        assertEquals("STORE_B", recent.get(0).getClientId());
+        assertEquals(Trade.TradeStatus.REJECTED, recent.get(0).getStatus());
+        assertEquals(clearedIds.get(299), recent.get(1).getId());
+        assertThrows(IllegalArgumentException.class, () -> tradeHistoryService.getTrades("STORE_A", "not-a-cursor", 10));
+        assertEquals(HttpStatus.BAD_REQUEST, tradeController.getLast20Trades(-1).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, tradeController.getLast20Trades(0).getStatusCode());
+    }
+}
@@ -0,0 +1,158 @@
+package com.margin.clearing.store;
+
+import com.margin.clearing.entity.Trade;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 2, 9, 30, 0, 123_456_789);
+
+    private TradeStore store;
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    /**
+     * Appends trades 1..count round-robin over the given clients, trade i at T0 + i seconds
+     */
+    private void append(int count, String... clients) {
+        for (int i = 1; i <= count; i++) {
+            store.append(i, clients[i % clients.length], i % 2 == 0 ? "AAPL" : "MSFT", "ORDER-" + i, i, 100_00L + i,
+                    10_00L + i, i % 7 == 0 ? Trade.TradeStatus.REJECTED : Trade.TradeStatus.CLEARED, T0.plusSeconds(i));
+        }
+    }
+
+    /**
+     * Test that a client's history pages back newest first across rolled, sealed and compressed segments
+     */
+    @Test
+    void testReadClient_PagesAcrossCompressedSegments() {
+        // Arrange
+        store = new TradeStore(256, 0, true);
+        append(2000, "CLIENT_A", "CLIENT_B", "CLIENT_C", "CLIENT_D");
+        store.awaitSealed();
+
+        // Act
+        List<Trade> seen = new ArrayList<>();
+        long position = -1;
+        int pages = 0;
+        do {
+            position = store.readClient("CLIENT_B", position, 128, seen);
+            pages++;
+        } while (position >= 0);
+
+        // Assert
+        assertEquals(8, store.getSegmentCount());
+        assertEquals(500, seen.size());
+        assertEquals(4, pages);
+        for (int i = 0; i < seen.size(); i++) {
+            long id = 1997 - 4L * i;
+            Trade trade = seen.get(i);
+            assertEquals(id, trade.getId());
+            assertEquals("CLIENT_B", trade.getClientId());
+            assertEquals(id % 2 == 0 ? "AAPL" : "MSFT", trade.getSymbol());
+            assertEquals("ORDER-" + id, trade.getOrderId());
+            assertEquals((int) id, trade.getQuantity());
+            assertEquals(BigDecimal.valueOf(100_00L + id, 2), trade.getPrice());
+            assertEquals(10_00L + id, trade.getMarginRequiredCents());
+            assertEquals(id % 7 == 0 ? Trade.TradeStatus.REJECTED : Trade.TradeStatus.CLEARED, trade.getStatus());
+            assertEquals(T0.plusSeconds(id), trade.getCreatedAt());
+        }
+    }
+
+    /**
+     * Test that sealed segments are compressed well below their raw size
+     */
+    @Test
+    void testAwaitSealed_CompressesSealedSegments() {
+        // Arrange
+        store = new TradeStore(1024, 0, true);
+        long raw = 4L * 1024 * TradeSegment.RECORD_SIZE;
+
+        // Act
+        append(4096, "CLIENT_A", "CLIENT_B");
+        store.awaitSealed();
+
+        // Assert
+        long compressed = store.getOffHeapBytes();
+        assertTrue(compressed < raw / 2, "raw " + raw + " bytes, compressed " + compressed + " bytes");
+        assertEquals(List.of(4096L, 4095L, 4094L), store.latest(3).stream().map(Trade::getId).toList());
+    }
+
+    /**
+     * Edge Case Test: dropping the oldest segments ends each chain at the retained history
+     */
+    @Test
+    void testAppend_MaxSegmentsDropsOldest() {
+        // Arrange
+        store = new TradeStore(256, 2, false);
+
+        // Act
+        append(1024, "CLIENT_A", "CLIENT_B");
+
+        // Assert
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(512, store.getRecordCount());
+        List<Trade> trades = new ArrayList<>();
+        assertEquals(-1, store.readClient("CLIENT_A", -1, 1000, trades));
+        assertEquals(256, trades.size());
+        assertEquals(514, trades.get(trades.size() - 1).getId());
+        assertEquals(512, store.latest(5000).size());
+    }
+
+    /**
+     * Edge Case Test: unknown clients read nothing, and another client's position is refused as a cursor
+     */
+    @Test
+    void testReadClient_UnknownClientAndForeignCursor() {
+        // Arrange
+        store = new TradeStore(256, 0, false);
+        store.append(1, "CLIENT_A", "AAPL", null, 1, 100, 10, Trade.TradeStatus.CLEARED, T0);
+        store.append(2, "CLIENT_B", "AAPL", null, 1, 100, 10, Trade.TradeStatus.CLEARED, T0);
+        List<Trade> trades = new ArrayList<>();
+
+        // Act & Assert
+        assertEquals(-1, store.readClient("CLIENT_X", -1, 10, trades));
+        assertTrue(trades.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> store.readClient("CLIENT_A", 1, 10, trades));
+        assertThrows(IllegalArgumentException.class, () -> store.readClient("CLIENT_A", 99, 10, trades));
+        store.readClient("CLIENT_A", -1, 10, trades);
+        assertEquals(1, trades.get(0).getId());
+        assertNull(trades.get(0).getOrderId());
+    }
+
+    /**
+     * Edge Case Test: a trade acknowledged before it has an id is stored only once it is persisted, with that id
+     */
+    @Test
+    void testOnTradeProcessed_StoresTradeOnceItHasAnId() {
+        // Arrange
+        store = new TradeStore(256, 0, false);
+        Trade trade = new Trade(null, "CLIENT_A", "AAPL", 1, new BigDecimal("100.00"), null,
+                Trade.TradeStatus.CLEARED, T0);
+        trade.setMarginRequiredCents(10_00L);
+
+        // Act
+        store.onTradeProcessed(trade);
+        long beforePersist = store.getRecordCount();
+        trade.setId(42L);
+        store.onTradesPersisted(List.of(trade));
+
+        // Assert
+        assertEquals(0, beforePersist);
+        List<Trade> trades = new ArrayList<>();
+        store.readClient("CLIENT_A", -1, 10, trades);
+        assertEquals(1, trades.size());
+        assertEquals(42L, trades.get(0).getId());
+    }
+}
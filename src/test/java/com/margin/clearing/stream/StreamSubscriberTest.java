@@ -0,0 +1,84 @@
+package com.margin.clearing.stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamSubscriberTest {
+
+    private static StreamEvent trade(String clientId, String data) {
+        return new StreamEvent(StreamEvent.TRADE, clientId, 0, data);
+    }
+
+    private static StreamEvent balance(String clientId, long version) {
+        return new StreamEvent(StreamEvent.BALANCE, clientId, version, clientId + "@" + version);
+    }
+
+    private static List<String> data(List<StreamEvent> events) {
+        return events.stream().map(StreamEvent::data).toList();
+    }
+
+    /**
+     * Test that a full DROP_OLDEST buffer evicts the oldest events and reports how many were lost
+     */
+    @Test
+    void testDropOldest_ReportsDropped() {
+        StreamSubscriber subscriber = new StreamSubscriber(new SseEmitter(), Set.of(), OverflowPolicy.DROP_OLDEST, 3);
+        assertTrue(subscriber.offer(trade("A", "t1")));
+        for (int i = 2; i <= 5; i++) {
+            assertFalse(subscriber.offer(trade("A", "t" + i)));
+        }
+
+        List<StreamEvent> events = subscriber.drain(10);
+        assertEquals(StreamEvent.DROPPED, events.get(0).name());
+        assertEquals("2", events.get(0).data());
+        assertEquals(List.of("t3", "t4", "t5"), data(events.subList(1, events.size())));
+        assertFalse(subscriber.finishSending());
+    }
+
+    /**
+     * Test that a full DROP_NEWEST buffer keeps what it already has
+     */
+    @Test
+    void testDropNewest_KeepsBuffered() {
+        StreamSubscriber subscriber = new StreamSubscriber(new SseEmitter(), Set.of(), OverflowPolicy.DROP_NEWEST, 2);
+        for (int i = 1; i <= 4; i++) {
+            subscriber.offer(trade("A", "t" + i));
+        }
+
+        List<StreamEvent> events = subscriber.drain(10);
+        assertEquals(StreamEvent.DROPPED, events.get(0).name());
+        assertEquals(List.of("t1", "t2"), data(events.subList(1, events.size())));
+    }
+
+    /**
+     * Test that COALESCE keeps one balance per client at its first position with the newest version
+     */
+    @Test
+    void testCoalesce_LatestBalancePerClient() {
+        StreamSubscriber subscriber = new StreamSubscriber(new SseEmitter(), Set.of(), OverflowPolicy.COALESCE, 10);
+        subscriber.offer(balance("A", 1));
+        subscriber.offer(trade("A", "t1"));
+        subscriber.offer(balance("B", 1));
+        subscriber.offer(balance("A", 3));
+        subscriber.offer(balance("A", 2)); // stale, ignored
+
+        assertEquals(List.of("A@3", "t1", "B@1"), data(subscriber.drain(10)));
+    }
+
+    /**
+     * Edge Case Test: the clientId filter passes only matching events
+     */
+    @Test
+    void testFilter_ByClientId() {
+        StreamSubscriber subscriber = new StreamSubscriber(new SseEmitter(), Set.of("A"), OverflowPolicy.DROP_OLDEST, 10);
+
+        assertTrue(subscriber.accepts(trade("A", "1")));
+        assertFalse(subscriber.accepts(trade("B", "2")));
+        assertTrue(new StreamSubscriber(new SseEmitter(), Set.of(), OverflowPolicy.DROP_OLDEST, 10).accepts(trade("B", "2")));
+    }
+}
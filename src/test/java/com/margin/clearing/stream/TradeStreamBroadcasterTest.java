@@ -0,0 +1,92 @@
+package com.margin.clearing.stream;
+
+import com.margin.clearing.entity.Account;
+import com.margin.clearing.repository.AccountRepository;
+import com.margin.clearing.repository.TradeRepository;
+import com.margin.clearing.service.MarginService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:stream")
+class TradeStreamBroadcasterTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MarginService marginService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private TradeStreamBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        accountRepository.deleteAll();
+        accountRepository.save(new Account("STREAM_A", new BigDecimal("1000.00")));
+        accountRepository.save(new Account("STREAM_B", new BigDecimal("1000.00")));
+    }
+
+    /**
+     * Test that a filtered subscriber receives its client's trade and balance events and nothing else
+     */
+    @Test
+    void testStream_FilteredTradeAndBalanceEvents() throws Exception {
+        // Arrange
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/trades/stream?clientId=STREAM_A"))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (broadcaster.getSubscriberCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Act
+        marginService.processTrade("STREAM_B", "MSFT", 10, new BigDecimal("100.00"));
+        marginService.processTrade("STREAM_A", "AAPL", 10, new BigDecimal("150.00"));
+
+        // Assert
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while (lines.stream().filter(l -> l.startsWith("data:")).count() < 2 && (line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+        }
+        assertEquals(List.of("event:balance", "event:trade"),
+                lines.stream().filter(l -> l.startsWith("event:")).sorted().toList());
+        assertTrue(lines.stream().noneMatch(l -> l.contains("STREAM_B")));
+        assertTrue(lines.stream().anyMatch(l -> l.contains("\"balance\":850.00")));
+        assertTrue(lines.stream().anyMatch(l -> l.contains("\"symbol\":\"AAPL\"") && l.contains("\"status\":\"CLEARED\"")));
+    }
+}